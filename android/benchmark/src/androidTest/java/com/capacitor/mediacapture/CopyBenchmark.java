@@ -0,0 +1,81 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.net.Uri;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Measures the audio copy loop over the fixture sizes, with and without a
+ * fused checksum.
+ */
+@RunWith(Parameterized.class)
+public class CopyBenchmark {
+
+    @Parameterized.Parameters(name = "size={0}")
+    public static Collection<Object[]> sizes() {
+        List<Object[]> sizes = new ArrayList<>();
+        for (Long size : Fixtures.getSizes()) {
+            sizes.add(new Object[] { size });
+        }
+        return sizes;
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final long size;
+
+    public CopyBenchmark(long size) {
+        this.size = size;
+    }
+
+    @Test
+    public void copy() throws Exception {
+        copy(null);
+    }
+
+    @Test
+    public void copyWithSha256() throws Exception {
+        copy(Checksum.SHA256);
+    }
+
+    private void copy(String algorithm) throws Exception {
+        Uri source = Uri.fromFile(Fixtures.binary(size));
+        File destination = new File(Fixtures.getDirectory(), "copy-" + size + ".bin");
+        BenchmarkState state = benchmarkRule.getState();
+        try {
+            while (state.keepRunning()) {
+                Checksum checksum = algorithm != null ? Checksum.create(algorithm) : null;
+                FileHelper.copy(Fixtures.getContext().getContentResolver(), source, destination, checksum);
+            }
+        } finally {
+            destination.delete();
+        }
+    }
+}
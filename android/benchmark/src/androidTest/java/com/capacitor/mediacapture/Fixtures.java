@@ -0,0 +1,204 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Bundle;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the benchmark fixture corpus in the test app's cache directory.
+ *
+ * Sizes of the copy fixtures are read from the "fixtureSizes" instrumentation
+ * argument (comma separated byte counts), so the gigabyte range can be
+ * enabled on devices with enough free storage.
+ */
+final class Fixtures {
+
+    private static final String DEFAULT_SIZES = "4096,1048576,67108864";
+
+    private Fixtures() {}
+
+    static Context getContext() {
+        return InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    static File getDirectory() {
+        File directory = new File(getContext().getCacheDir(), "benchmark-fixtures");
+        directory.mkdirs();
+        return directory;
+    }
+
+    static List<Long> getSizes() {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String sizes = arguments.getString("fixtureSizes", DEFAULT_SIZES);
+        List<Long> result = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            result.add(Long.parseLong(size.trim()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a file of the given size filled with a repeating pattern.
+     */
+    static File binary(long size) throws IOException {
+        File file = new File(getDirectory(), "binary-" + size + ".bin");
+        if (file.length() == size) {
+            return file;
+        }
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) i;
+        }
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            long written = 0;
+            while (written < size) {
+                int length = (int) Math.min(block.length, size - written);
+                out.write(block, 0, length);
+                written += length;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns a directory of the given number of files cycling through small
+     * and large JPEGs, AAC recordings and unrecognized binaries, like the
+     * mixed batches apps pass to getFormatDataBatch. Every entry is its own
+     * file so the probes do not share a path.
+     */
+    static List<File> corpus(int count) throws IOException {
+        File[] sources = { jpeg(640, 480), jpeg(4000, 3000), m4a(5), m4a(30), binary(4096) };
+        File directory = new File(getDirectory(), "corpus");
+        directory.mkdirs();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File source = sources[i % sources.length];
+            File file = new File(directory, i + "-" + source.getName());
+            if (file.length() != source.length()) {
+                try (
+                    FileChannel input = new FileInputStream(source).getChannel();
+                    FileChannel output = new FileOutputStream(file).getChannel()
+                ) {
+                    input.transferTo(0, input.size(), output);
+                }
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Returns a JPEG of the given dimensions.
+     */
+    static File jpeg(int width, int height) throws IOException {
+        File file = new File(getDirectory(), "image-" + width + "x" + height + ".jpg");
+        if (file.exists()) {
+            return file;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawColor(Color.rgb(40, 120, 200));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        } finally {
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    /**
+     * Returns an MP4 container with the given seconds of AAC encoded silence.
+     */
+    static File m4a(int seconds) throws IOException {
+        File file = new File(getDirectory(), "audio-" + seconds + "s.m4a");
+        if (file.exists()) {
+            return file;
+        }
+
+        int sampleRate = 44100;
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, 64000);
+
+        MediaCodec encoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        MediaMuxer muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        try {
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            encoder.start();
+
+            long totalSamples = (long) sampleRate * seconds;
+            long samplesQueued = 0;
+            boolean inputDone = false;
+            int track = -1;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            while (true) {
+                if (!inputDone) {
+                    int index = encoder.dequeueInputBuffer(10000);
+                    if (index >= 0) {
+                        ByteBuffer input = encoder.getInputBuffer(index);
+                        int samples = (int) Math.min(input.capacity() / 2, totalSamples - samplesQueued);
+                        input.clear();
+                        input.put(new byte[samples * 2]);
+                        long presentationUs = samplesQueued * 1000000L / sampleRate;
+                        samplesQueued += samples;
+                        inputDone = samplesQueued >= totalSamples;
+                        encoder.queueInputBuffer(index, 0, samples * 2, presentationUs, inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+                    }
+                }
+
+                int index = encoder.dequeueOutputBuffer(info, 10000);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    track = muxer.addTrack(encoder.getOutputFormat());
+                    muxer.start();
+                } else if (index >= 0) {
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                        muxer.writeSampleData(track, encoder.getOutputBuffer(index), info);
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        break;
+                    }
+                }
+            }
+            muxer.stop();
+        } finally {
+            encoder.release();
+            muxer.release();
+        }
+        return file;
+    }
+}
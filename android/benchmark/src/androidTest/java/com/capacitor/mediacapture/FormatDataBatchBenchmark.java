@@ -0,0 +1,103 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Measures how getFormatDataBatch scales with the size of the probe pool:
+ * every iteration fans a mixed corpus out over 1 to 8 workers the way the
+ * plugin does and waits for the last result. The format data cache is
+ * bypassed so every iteration parses the headers again.
+ */
+@RunWith(Parameterized.class)
+public class FormatDataBatchBenchmark {
+
+    private static final int CORPUS_SIZE = 300;
+
+    @Parameterized.Parameters(name = "workers={0}")
+    public static Collection<Object[]> workers() {
+        List<Object[]> workers = new ArrayList<>();
+        for (int count : new int[] { 1, 2, 4, 8 }) {
+            workers.add(new Object[] { count });
+        }
+        return workers;
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int workers;
+
+    public FormatDataBatchBenchmark(int workers) {
+        this.workers = workers;
+    }
+
+    @Test
+    public void probeBatch() throws Exception {
+        List<File> files = Fixtures.corpus(CORPUS_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        BenchmarkState state = benchmarkRule.getState();
+        try {
+            while (state.keepRunning()) {
+                CountDownLatch remaining = new CountDownLatch(files.size());
+                for (File file : files) {
+                    executor.execute(() -> {
+                        try {
+                            probe(file);
+                        } catch (Exception e) {
+                            // Counted as a per-file error by the plugin, the batch carries on
+                        } finally {
+                            remaining.countDown();
+                        }
+                    });
+                }
+                Assert.assertTrue(remaining.await(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Mirrors the probe getFormatDataBatch runs for every file on a cache miss.
+     */
+    private static void probe(File file) throws Exception {
+        JSObject obj = new JSObject();
+        FormatDetector.Result detected = FormatDetector.detect(file, obj);
+        if (!detected.parsed && detected.mimeType != null && detected.mimeType.startsWith("audio/")) {
+            MediaProbe.probe(file.getAbsolutePath(), obj, false);
+        }
+    }
+}
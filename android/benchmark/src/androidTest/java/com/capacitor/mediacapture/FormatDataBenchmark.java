@@ -0,0 +1,111 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the building blocks run for every capture result and every
+ * getFormatData call, comparing the FormatDetector header parsers with the
+ * platform decoder paths they replace. Each detector benchmark first checks
+ * that both paths agree on the fixture.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FormatDataBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void createMediaFileFields() throws Exception {
+        // Mirrors the fields createMediaFile collects for a capture
+        File file = Fixtures.jpeg(640, 480);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            JSObject obj = new JSObject();
+            obj.put("name", file.getName());
+            obj.put("fullPath", "file://" + file.getAbsolutePath());
+            obj.put("type", FileHelper.getMimeType(Uri.fromFile(file), Fixtures.getContext()));
+            obj.put("lastModifiedDate", file.lastModified());
+            obj.put("size", file.length());
+        }
+    }
+
+    @Test
+    public void decodeJpegBounds12MP() throws Exception {
+        String path = Fixtures.jpeg(4000, 3000).getAbsolutePath();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ImageProcessor.decodeBounds(path);
+        }
+    }
+
+    @Test
+    public void probeContainer() throws Exception {
+        String path = Fixtures.m4a(30).getAbsolutePath();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            MediaProbe.probe(path, new JSObject(), false);
+        }
+    }
+
+    @Test
+    public void detectJpeg12MP() throws Exception {
+        File file = Fixtures.jpeg(4000, 3000);
+        BitmapFactory.Options bounds = ImageProcessor.decodeBounds(file.getAbsolutePath());
+        JSObject detected = detect(file);
+        Assert.assertEquals(bounds.outWidth, detected.getInt("width"));
+        Assert.assertEquals(bounds.outHeight, detected.getInt("height"));
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            FormatDetector.detect(file, new JSObject());
+        }
+    }
+
+    @Test
+    public void detectContainer() throws Exception {
+        File file = Fixtures.m4a(30);
+        JSObject probed = MediaProbe.probe(file.getAbsolutePath(), new JSObject(), false);
+        JSObject detected = detect(file);
+        Assert.assertEquals(probed.getLong("duration"), detected.getLong("duration"));
+        Assert.assertEquals(probed.getString("codecs"), detected.getString("codecs"));
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            FormatDetector.detect(file, new JSObject());
+        }
+    }
+
+    private static JSObject detect(File file) throws Exception {
+        JSObject obj = new JSObject();
+        Assert.assertTrue(FormatDetector.detect(file, obj).parsed);
+        return obj;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.webkit.MimeTypeMap;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares MimeTypes against the substring, toLowerCase and MimeTypeMap
+ * lookup it replaced. The allocationCount metric of the extension and
+ * header benchmarks is expected to be zero.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MimeTypeBenchmark {
+
+    private static final String[] PATHS = new String[] {
+        "/data/user/0/app/cache/com.capacitor.mediacapture/cdv_media_capture_image_20250101120000000.jpg",
+        "/data/user/0/app/cache/com.capacitor.mediacapture/cdv_media_capture_video_20250101120000000.MP4",
+        "/data/user/0/app/cache/com.capacitor.mediacapture/cdv_media_capture_audio_20250101120000000.m4a",
+        "/sdcard/Recordings/voice.3ga",
+        "/sdcard/Download/no_extension"
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void getMimeTypeForExtension() {
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            FileHelper.getMimeTypeForExtension(PATHS[i++ % PATHS.length]);
+        }
+    }
+
+    @Test
+    public void extensionTable() {
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            MimeTypes.fromPath(PATHS[i++ % PATHS.length]);
+        }
+    }
+
+    @Test
+    public void mimeTypeMap() {
+        MimeTypeMap map = MimeTypeMap.getSingleton();
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            String extension = PATHS[i++ % PATHS.length];
+            int lastDot = extension.lastIndexOf('.');
+            if (lastDot != -1) {
+                extension = extension.substring(lastDot + 1);
+            }
+            map.getMimeTypeFromExtension(extension.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    @Test
+    public void sniffHeader() throws Exception {
+        byte[][] headers = new byte[][] { header(Fixtures.jpeg(640, 480)), header(Fixtures.m4a(1)) };
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            MimeTypes.sniff(headers[i++ & 1], MimeTypes.SNIFF_LENGTH);
+        }
+    }
+
+    @Test
+    public void sniffFile() throws Exception {
+        File file = Fixtures.m4a(1);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            MimeTypes.sniff(file);
+        }
+    }
+
+    private static byte[] header(File file) throws Exception {
+        byte[] header = new byte[MimeTypes.SNIFF_LENGTH];
+        try (InputStream in = new FileInputStream(file)) {
+            int length = 0;
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        }
+        return header;
+    }
+}
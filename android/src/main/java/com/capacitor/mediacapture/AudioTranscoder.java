@@ -0,0 +1,520 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Re-encodes recorded audio to AAC in MP4 or Opus in Ogg.
+ *
+ * The source is streamed through MediaExtractor, a decoder, a filtering
+ * linear resampler and an encoder into MediaMuxer one codec buffer at a
+ * time, so memory use does not depend on the length of the recording.
+ * Decoded PCM is expected as 16-bit samples, which is what the platform
+ * decoders produce unless asked otherwise.
+ */
+public class AudioTranscoder {
+
+    private static final String TAG = "MediaCapture";
+    private static final long TIMEOUT_US = 10000;
+
+    public static final String FORMAT_AAC = "aac";
+    public static final String FORMAT_OPUS = "opus";
+    public static final int DEFAULT_BITRATE = 64000;
+    private static final int OPUS_SAMPLE_RATE = 48000;
+    private static final int[] OPUS_SAMPLE_RATES = { 8000, 12000, 16000, 24000, 48000 };
+
+    public static class Options {
+
+        final String format;
+        final int bitrate;
+        final int sampleRate;
+        final int channels;
+
+        /**
+         * @param format {@link #FORMAT_AAC} or {@link #FORMAT_OPUS}
+         * @param bitrate the target bitrate in bits per second
+         * @param sampleRate the output sample rate, or 0 to keep the source rate
+         * @param channels the output channel count (1 or 2), or 0 to keep the source layout
+         * @throws IllegalArgumentException if the options are not supported on this device
+         */
+        public Options(String format, int bitrate, int sampleRate, int channels) {
+            if (!FORMAT_AAC.equals(format) && !FORMAT_OPUS.equals(format)) {
+                throw new IllegalArgumentException("Unsupported audio format: " + format);
+            }
+            if (FORMAT_OPUS.equals(format) && Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+                throw new IllegalArgumentException("Opus encoding requires Android 10 or later");
+            }
+            if (bitrate <= 0) {
+                throw new IllegalArgumentException("Bitrate must be positive");
+            }
+            if (sampleRate < 0 || (FORMAT_OPUS.equals(format) && sampleRate > 0 && !isOpusSampleRate(sampleRate))) {
+                throw new IllegalArgumentException("Unsupported sample rate: " + sampleRate);
+            }
+            if (channels < 0 || channels > 2) {
+                throw new IllegalArgumentException("Channels must be 1 or 2");
+            }
+            this.format = format;
+            this.bitrate = bitrate;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+        }
+
+        public String getExtension() {
+            return FORMAT_OPUS.equals(format) ? ".ogg" : ".m4a";
+        }
+
+        String getMimeType() {
+            return FORMAT_OPUS.equals(format) ? MediaFormat.MIMETYPE_AUDIO_OPUS : MediaFormat.MIMETYPE_AUDIO_AAC;
+        }
+
+        int getMuxerFormat() {
+            return FORMAT_OPUS.equals(format) ? MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG : MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+        }
+
+        private static boolean isOpusSampleRate(int sampleRate) {
+            for (int rate : OPUS_SAMPLE_RATES) {
+                if (rate == sampleRate) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Converts interleaved 16-bit PCM between sample rates and channel
+     * layouts by linear interpolation. When the rate goes down, a low-pass
+     * filter first removes what the output rate cannot represent, so it does
+     * not fold back as aliasing. The filter history and the last frame of
+     * each chunk are kept so both continue seamlessly into the next one.
+     */
+    static final class Resampler {
+
+        // Filter taps per side for each input frame per output frame
+        private static final int TAPS_PER_STEP = 24;
+        // Cutoff as a fraction of the output Nyquist frequency, leaving room for the transition band
+        private static final double CUTOFF = 0.9;
+
+        private final int inChannels;
+        private final int outChannels;
+        private final double step;
+        private final boolean passthrough;
+        private final double[] filter;
+        // Frames of mixed input the filter looks back on
+        private final int history;
+        private final double[] previous;
+        // The history followed by the current chunk, mixed to the output layout
+        private double[] mixed = new double[0];
+        private double[] filtered = new double[0];
+        private int lastFrames = 0;
+        // Input frame of the next output frame, relative to the current chunk; -1 is the kept frame
+        private double position = 0;
+
+        Resampler(int inRate, int inChannels, int outRate, int outChannels) {
+            this.inChannels = inChannels;
+            this.outChannels = outChannels;
+            this.step = (double) inRate / outRate;
+            this.passthrough = inRate == outRate && inChannels == outChannels;
+            this.filter = outRate < inRate ? lowPass(step) : null;
+            this.history = filter != null ? filter.length - 1 : 0;
+            this.previous = new double[outChannels];
+        }
+
+        /**
+         * Designs a Blackman-windowed sinc filter with unity gain at DC. The
+         * filter is symmetric, so it delays the signal by half its length,
+         * a few milliseconds at most.
+         */
+        private static double[] lowPass(double step) {
+            int half = (int) Math.ceil(TAPS_PER_STEP * step);
+            double cutoff = CUTOFF * 0.5 / step;
+            double[] taps = new double[2 * half + 1];
+            double sum = 0;
+            for (int i = 0; i < taps.length; i++) {
+                int n = i - half;
+                double sinc = n == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * n) / (Math.PI * n);
+                double window =
+                    0.42 - 0.5 * Math.cos(2 * Math.PI * i / (taps.length - 1)) + 0.08 * Math.cos(4 * Math.PI * i / (taps.length - 1));
+                taps[i] = sinc * window;
+                sum += taps[i];
+            }
+            for (int i = 0; i < taps.length; i++) {
+                taps[i] /= sum;
+            }
+            return taps;
+        }
+
+        /**
+         * Returns the most samples {@link #process} can write for a chunk of the given number of frames.
+         */
+        int getMaxOutput(int frames) {
+            return ((int) Math.ceil((frames + 1) / step) + 1) * outChannels;
+        }
+
+        /**
+         * Resamples one chunk.
+         *
+         * @param in the interleaved input samples
+         * @param frames the number of input frames
+         * @param out the array receiving the output samples
+         * @return the number of output samples written
+         */
+        int process(short[] in, int frames, short[] out) {
+            if (passthrough) {
+                System.arraycopy(in, 0, out, 0, frames * inChannels);
+                return frames * inChannels;
+            }
+
+            mix(in, frames);
+            double[] source = filter != null ? filter(frames) : mixed;
+
+            int written = 0;
+            while (true) {
+                int index = (int) Math.floor(position);
+                if (index + 1 >= frames) {
+                    break;
+                }
+                double fraction = position - index;
+                for (int channel = 0; channel < outChannels; channel++) {
+                    double a = index < 0 ? previous[channel] : source[index * outChannels + channel];
+                    double b = source[(index + 1) * outChannels + channel];
+                    out[written++] = clip(a + (b - a) * fraction);
+                }
+                position += step;
+            }
+            if (frames > 0) {
+                System.arraycopy(source, (frames - 1) * outChannels, previous, 0, outChannels);
+                position -= frames;
+            }
+            return written;
+        }
+
+        /**
+         * Mixes the chunk to the output layout after the kept history,
+         * moving the end of the previous chunk into the history first.
+         */
+        private void mix(short[] in, int frames) {
+            int length = (history + frames) * outChannels;
+            if (mixed.length < length) {
+                double[] grown = new double[length];
+                System.arraycopy(mixed, 0, grown, 0, mixed.length);
+                mixed = grown;
+            }
+            if (history > 0) {
+                // The history always holds the last frames seen, across short chunks too
+                System.arraycopy(mixed, lastFrames * outChannels, mixed, 0, history * outChannels);
+            }
+            for (int frame = 0; frame < frames; frame++) {
+                for (int channel = 0; channel < outChannels; channel++) {
+                    mixed[(history + frame) * outChannels + channel] = sample(in, frame, channel);
+                }
+            }
+            lastFrames = frames;
+        }
+
+        private double[] filter(int frames) {
+            if (filtered.length < frames * outChannels) {
+                filtered = new double[frames * outChannels];
+            }
+            for (int frame = 0; frame < frames; frame++) {
+                for (int channel = 0; channel < outChannels; channel++) {
+                    double sum = 0;
+                    // Tap i weighs the frame i frames before this one
+                    int newest = (history + frame) * outChannels + channel;
+                    for (int i = 0; i < filter.length; i++) {
+                        sum += filter[i] * mixed[newest - i * outChannels];
+                    }
+                    filtered[frame * outChannels + channel] = sum;
+                }
+            }
+            return filtered;
+        }
+
+        private static short clip(double value) {
+            return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+
+        private double sample(short[] in, int frame, int channel) {
+            if (outChannels == 1 && inChannels > 1) {
+                // Downmix to mono
+                double sum = 0;
+                for (int c = 0; c < inChannels; c++) {
+                    sum += at(in, frame, c);
+                }
+                return sum / inChannels;
+            }
+            if (outChannels == 2 && inChannels > 2) {
+                // Downmix to stereo: the front pair keeps its side, every other
+                // channel goes to both sides at half weight, scaled so the mix cannot clip
+                double sum = at(in, frame, channel);
+                for (int c = 2; c < inChannels; c++) {
+                    sum += 0.5 * at(in, frame, c);
+                }
+                return sum / (1 + 0.5 * (inChannels - 2));
+            }
+            return at(in, frame, Math.min(channel, inChannels - 1));
+        }
+
+        private double at(short[] in, int frame, int channel) {
+            return in[frame * inChannels + channel];
+        }
+    }
+
+    private AudioTranscoder() {}
+
+    /**
+     * Transcodes the first audio track of a file.
+     *
+     * @param source the recorded file
+     * @param output the file to write
+     * @param options the target format
+     * @return the sizes and the time taken
+     * @throws IOException if the source cannot be decoded or the output cannot be written
+     */
+    public static TranscodeResult transcode(File source, File output, Options options) throws IOException {
+        long start = System.nanoTime();
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        MediaMuxer muxer = null;
+        boolean muxing = false;
+        try {
+            extractor.setDataSource(source.getAbsolutePath());
+            MediaFormat inputFormat = selectAudioTrack(extractor);
+            if (inputFormat == null) {
+                throw new IOException("No audio track in " + source);
+            }
+            int inRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int inChannels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            int outRate = options.sampleRate > 0
+                ? options.sampleRate
+                : FORMAT_OPUS.equals(options.format) ? OPUS_SAMPLE_RATE : inRate;
+            int outChannels = options.channels > 0 ? options.channels : Math.min(2, inChannels);
+
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, null, null, 0);
+            decoder.start();
+
+            MediaFormat outputFormat = MediaFormat.createAudioFormat(options.getMimeType(), outRate, outChannels);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, options.bitrate);
+            if (FORMAT_AAC.equals(options.format)) {
+                outputFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            }
+            encoder = MediaCodec.createEncoderByType(options.getMimeType());
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            encoder.start();
+
+            muxer = new MediaMuxer(output.getAbsolutePath(), options.getMuxerFormat());
+            Resampler resampler = new Resampler(inRate, inChannels, outRate, outChannels);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            short[] decoded = new short[0];
+            short[] pending = new short[0];
+            int pendingOffset = 0;
+            int pendingLength = 0;
+            long framesQueued = 0;
+            int track = -1;
+            boolean extractorDone = false;
+            boolean decoderDone = false;
+            boolean encoderInputDone = false;
+            boolean encoderDone = false;
+            int idle = 0;
+
+            while (!encoderDone) {
+                boolean moved = false;
+                // Compressed samples into the decoder
+                if (!extractorDone) {
+                    int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+                    if (index >= 0) {
+                        moved = true;
+                        ByteBuffer buffer = decoder.getInputBuffer(index);
+                        int size = extractor.readSampleData(buffer, 0);
+                        if (size < 0) {
+                            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            extractorDone = true;
+                        } else {
+                            decoder.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                // Decoded PCM into the resampler, once the previous chunk was handed to the encoder
+                if (!decoderDone && pendingOffset == pendingLength) {
+                    int index = decoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                    if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED || index >= 0) {
+                        moved = true;
+                    }
+                    if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                        MediaFormat format = decoder.getOutputFormat();
+                        checkPcmEncoding(format);
+                        inRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                        inChannels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                        resampler = new Resampler(inRate, inChannels, outRate, outChannels);
+                    } else if (index >= 0) {
+                        if (info.size > 0) {
+                            ByteBuffer buffer = decoder.getOutputBuffer(index);
+                            buffer.position(info.offset);
+                            buffer.limit(info.offset + info.size);
+                            ShortBuffer samples = buffer.slice().order(ByteOrder.nativeOrder()).asShortBuffer();
+                            int count = samples.remaining();
+                            if (decoded.length < count) {
+                                decoded = new short[count];
+                            }
+                            samples.get(decoded, 0, count);
+                            int frames = count / inChannels;
+                            int maxOutput = resampler.getMaxOutput(frames);
+                            if (pending.length < maxOutput) {
+                                pending = new short[maxOutput];
+                            }
+                            pendingOffset = 0;
+                            pendingLength = resampler.process(decoded, frames, pending);
+                        }
+                        decoder.releaseOutputBuffer(index, false);
+                        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                            decoderDone = true;
+                        }
+                    }
+                }
+
+                // Resampled PCM into the encoder
+                if (!encoderInputDone && (pendingOffset < pendingLength || decoderDone)) {
+                    int index = encoder.dequeueInputBuffer(TIMEOUT_US);
+                    if (index >= 0) {
+                        moved = true;
+                        long presentationUs = framesQueued * 1000000L / outRate;
+                        if (pendingOffset < pendingLength) {
+                            ByteBuffer buffer = encoder.getInputBuffer(index);
+                            buffer.clear();
+                            int count = Math.min(pendingLength - pendingOffset, buffer.remaining() / 2);
+                            count -= count % outChannels;
+                            buffer.order(ByteOrder.nativeOrder()).asShortBuffer().put(pending, pendingOffset, count);
+                            pendingOffset += count;
+                            framesQueued += count / outChannels;
+                            encoder.queueInputBuffer(index, 0, count * 2, presentationUs, 0);
+                        } else {
+                            encoder.queueInputBuffer(index, 0, 0, presentationUs, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            encoderInputDone = true;
+                        }
+                    }
+                }
+
+                // Encoded frames into the muxer
+                int index = encoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED || index >= 0) {
+                    moved = true;
+                }
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    track = muxer.addTrack(encoder.getOutputFormat());
+                    muxer.start();
+                    muxing = true;
+                } else if (index >= 0) {
+                    boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                    if (muxing && !config && info.size > 0) {
+                        muxer.writeSampleData(track, encoder.getOutputBuffer(index), info);
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        encoderDone = true;
+                    }
+                }
+
+                idle = moved ? 0 : idle + 1;
+                if (idle > TranscodeGraph.MAX_IDLE_PASSES) {
+                    // A codec that stops handing out buffers would otherwise spin forever
+                    throw new IOException("Transcode stalled");
+                }
+            }
+
+            if (!muxing) {
+                throw new IOException("The encoder produced no output");
+            }
+            muxer.stop();
+            muxing = false;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // MediaCodec and MediaMuxer report most failures as runtime exceptions
+            throw new IOException("Error transcoding " + source, e);
+        } finally {
+            release(extractor, decoder, encoder, muxer, muxing);
+        }
+        return new TranscodeResult(source.length(), output.length(), (System.nanoTime() - start) / 1000000);
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static void checkPcmEncoding(MediaFormat format) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && format.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+            int encoding = format.getInteger(MediaFormat.KEY_PCM_ENCODING);
+            if (encoding != AudioFormat.ENCODING_PCM_16BIT) {
+                throw new IOException("Unsupported PCM encoding: " + encoding);
+            }
+        }
+    }
+
+    private static void release(MediaExtractor extractor, MediaCodec decoder, MediaCodec encoder, MediaMuxer muxer, boolean muxing) {
+        extractor.release();
+        if (decoder != null) {
+            releaseCodec(decoder);
+        }
+        if (encoder != null) {
+            releaseCodec(encoder);
+        }
+        if (muxer != null) {
+            try {
+                if (muxing) {
+                    muxer.stop();
+                }
+            } catch (RuntimeException e) {
+                Log.d(TAG, "Error stopping muxer", e);
+            }
+            muxer.release();
+        }
+    }
+
+    private static void releaseCodec(MediaCodec codec) {
+        try {
+            codec.stop();
+        } catch (RuntimeException e) {
+            Log.d(TAG, "Error stopping codec", e);
+        }
+        codec.release();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.UseCase;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.video.FileOutputOptions;
+import androidx.camera.video.PendingRecording;
+import androidx.camera.video.Quality;
+import androidx.camera.video.QualitySelector;
+import androidx.camera.video.Recorder;
+import androidx.camera.video.Recording;
+import androidx.camera.video.VideoCapture;
+import androidx.camera.video.VideoRecordEvent;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * CameraX implementation of the capture engine camera.
+ *
+ * Binds a single ImageCapture or VideoCapture use case to the activity
+ * lifecycle for the whole session, so consecutive captures reuse the open
+ * camera instead of reinitializing it.
+ */
+public class CameraXBackend implements CaptureEngine.Camera {
+
+    private final Context context;
+    private final LifecycleOwner owner;
+    private final boolean video;
+    private final int quality;
+    private final boolean audio;
+    private final Executor executor;
+    private final Executor mainExecutor;
+
+    private ProcessCameraProvider provider;
+    private UseCase useCase;
+    private ImageCapture imageCapture;
+    private Recorder recorder;
+    private volatile Recording recording;
+    private boolean closed = false;
+
+    /**
+     * @param context the context
+     * @param owner the lifecycle the camera is bound to
+     * @param video whether to record clips rather than take stills
+     * @param quality the JPEG quality for stills, or 0 (low) / 1 (high) for clips
+     * @param audio whether clips record audio
+     * @param executor the executor capture callbacks run on
+     */
+    public CameraXBackend(Context context, LifecycleOwner owner, boolean video, int quality, boolean audio, Executor executor) {
+        this.context = context;
+        this.owner = owner;
+        this.video = video;
+        this.quality = quality;
+        this.audio = audio;
+        this.executor = executor;
+        this.mainExecutor = ContextCompat.getMainExecutor(context);
+    }
+
+    @Override
+    public void open(CaptureEngine.Callback<Void> callback) {
+        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(context);
+        // Use cases must be bound on the main thread
+        future.addListener(
+            () -> {
+                try {
+                    if (closed) {
+                        callback.onError(new IOException("Camera closed"));
+                        return;
+                    }
+                    provider = future.get();
+                    if (video) {
+                        recorder = new Recorder.Builder()
+                            .setQualitySelector(QualitySelector.from(quality == 0 ? Quality.LOWEST : Quality.HIGHEST))
+                            .build();
+                        useCase = VideoCapture.withOutput(recorder);
+                    } else {
+                        imageCapture = new ImageCapture.Builder()
+                            .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                            .setJpegQuality(Math.max(1, Math.min(100, quality)))
+                            .build();
+                        useCase = imageCapture;
+                    }
+                    provider.bindToLifecycle(owner, CameraSelector.DEFAULT_BACK_CAMERA, useCase);
+                    callback.onSuccess(null);
+                } catch (ExecutionException e) {
+                    callback.onError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    callback.onError(e);
+                } catch (RuntimeException e) {
+                    callback.onError(e);
+                }
+            },
+            mainExecutor
+        );
+    }
+
+    @Override
+    public void takePicture(CaptureEngine.Callback<CaptureEngine.Picture> callback) {
+        imageCapture.takePicture(
+            executor,
+            new ImageCapture.OnImageCapturedCallback() {
+                @Override
+                public void onCaptureSuccess(@NonNull ImageProxy image) {
+                    CaptureEngine.Picture picture;
+                    try {
+                        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                        byte[] data = new byte[buffer.remaining()];
+                        buffer.get(data);
+                        picture = new CaptureEngine.Picture(data, image.getImageInfo().getRotationDegrees());
+                    } finally {
+                        // Free the image before the next shot is requested
+                        image.close();
+                    }
+                    callback.onSuccess(picture);
+                }
+
+                @Override
+                public void onError(@NonNull ImageCaptureException e) {
+                    callback.onError(e);
+                }
+            }
+        );
+    }
+
+    // The plugin requests the microphone permission before starting a session with audio
+    @SuppressLint("MissingPermission")
+    @Override
+    public void record(File output, long durationMs, CaptureEngine.Callback<Void> callback) {
+        FileOutputOptions options = new FileOutputOptions.Builder(output).setDurationLimitMillis(durationMs).build();
+        PendingRecording pending = recorder.prepareRecording(context, options);
+        if (audio) {
+            pending = pending.withAudioEnabled();
+        }
+        recording = pending.start(executor, event -> {
+            if (!(event instanceof VideoRecordEvent.Finalize)) {
+                return;
+            }
+            recording = null;
+            VideoRecordEvent.Finalize finalize = (VideoRecordEvent.Finalize) event;
+            int error = finalize.getError();
+            if (error == VideoRecordEvent.Finalize.ERROR_NONE || error == VideoRecordEvent.Finalize.ERROR_DURATION_LIMIT_REACHED) {
+                callback.onSuccess(null);
+            } else {
+                callback.onError(new IOException("Recording failed with error " + error, finalize.getCause()));
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        Recording active = recording;
+        if (active != null) {
+            active.stop();
+        }
+        mainExecutor.execute(() -> {
+            closed = true;
+            if (provider != null && useCase != null) {
+                provider.unbind(useCase);
+            }
+        });
+    }
+}
@@ -0,0 +1,341 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Captures a series of stills or clips from one open camera session.
+ *
+ * Each capture is handed to the worker executor, which writes and processes
+ * it while the camera takes the next one. At most MAX_IN_FLIGHT captures
+ * wait for the worker; beyond that, the next shot is held back so that
+ * buffered JPEGs cannot pile up in memory. The engine depends only on the
+ * Camera interface and plain Java, so it runs unchanged against fake
+ * camera and recorder backends.
+ *
+ * @param <T> the type of the processed result of one capture
+ */
+public class CaptureEngine<T> {
+
+    static final int MAX_IN_FLIGHT = 2;
+
+    public interface Callback<V> {
+        void onSuccess(V value);
+
+        void onError(Exception e);
+    }
+
+    public static class Picture {
+
+        public final byte[] data;
+        public final int rotationDegrees;
+
+        public Picture(byte[] data, int rotationDegrees) {
+            this.data = data;
+            this.rotationDegrees = rotationDegrees;
+        }
+    }
+
+    /**
+     * The camera backend. Callbacks may be invoked on any thread.
+     */
+    public interface Camera {
+        void open(Callback<Void> callback);
+
+        /**
+         * Takes a still and returns it as encoded JPEG bytes.
+         */
+        void takePicture(Callback<Picture> callback);
+
+        /**
+         * Records a clip of the given duration into the output file.
+         */
+        void record(File output, long durationMs, Callback<Void> callback);
+
+        void close();
+    }
+
+    public interface OutputFactory {
+        File newFile(int index) throws IOException;
+    }
+
+    public interface Processor<T> {
+        /**
+         * Turns a stored capture into its result. Runs on the worker executor.
+         */
+        T process(File file, int rotationDegrees) throws Exception;
+    }
+
+    public interface Listener<T> {
+        void onComplete(List<T> results);
+
+        /**
+         * Called once the captures in progress are drained after a failure.
+         *
+         * @param results the captures completed before the failure
+         */
+        void onError(Exception e, List<T> results);
+    }
+
+    private final Camera camera;
+    private final Executor worker;
+    private final OutputFactory outputs;
+    private final Processor<T> processor;
+    private final Listener<T> listener;
+
+    private final List<T> results = new ArrayList<>();
+    private boolean video;
+    private long durationMs;
+    private int count;
+    private int started = 0;
+    private int inFlight = 0;
+    private boolean capturing = false;
+    private boolean finished = false;
+    private Exception failure;
+
+    public CaptureEngine(Camera camera, Executor worker, OutputFactory outputs, Processor<T> processor, Listener<T> listener) {
+        this.camera = camera;
+        this.worker = worker;
+        this.outputs = outputs;
+        this.processor = processor;
+        this.listener = listener;
+    }
+
+    public void captureStills(int count) {
+        start(false, count, 0);
+    }
+
+    public void captureClips(int count, long durationMs) {
+        start(true, count, durationMs);
+    }
+
+    /**
+     * Releases the camera without notifying the listener.
+     */
+    public void close() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        camera.close();
+    }
+
+    /**
+     * Returns whether the session completed, failed or was closed.
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private void start(boolean video, int count, long durationMs) {
+        synchronized (this) {
+            if (this.count > 0) {
+                throw new IllegalStateException("Capture already started");
+            }
+            if (count <= 0) {
+                throw new IllegalArgumentException("Capture count must be positive");
+            }
+            this.video = video;
+            this.count = count;
+            this.durationMs = durationMs;
+            for (int i = 0; i < count; i++) {
+                results.add(null);
+            }
+            // Held until the camera is open
+            capturing = true;
+        }
+        camera.open(
+            new Callback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    onCaptureDone();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    onCaptureFailed(e);
+                }
+            }
+        );
+    }
+
+    /**
+     * Starts the next capture when the camera is idle and the worker has room.
+     */
+    private void next() {
+        final int index;
+        synchronized (this) {
+            if (finished || capturing) {
+                return;
+            }
+            if (failure != null || started >= count) {
+                if (inFlight == 0) {
+                    finished = true;
+                } else {
+                    return;
+                }
+                index = -1;
+            } else if (inFlight >= MAX_IN_FLIGHT) {
+                return;
+            } else {
+                index = started++;
+                capturing = true;
+            }
+        }
+        if (index < 0) {
+            finish();
+        } else if (video) {
+            recordClip(index);
+        } else {
+            takePicture(index);
+        }
+    }
+
+    private void takePicture(int index) {
+        camera.takePicture(
+            new Callback<Picture>() {
+                @Override
+                public void onSuccess(Picture picture) {
+                    synchronized (CaptureEngine.this) {
+                        inFlight++;
+                    }
+                    worker.execute(() -> {
+                        File output;
+                        try {
+                            output = outputs.newFile(index);
+                            write(output, picture.data);
+                        } catch (IOException e) {
+                            onProcessed(index, null, e);
+                            return;
+                        }
+                        process(index, output, picture.rotationDegrees);
+                    });
+                    onCaptureDone();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    onCaptureFailed(e);
+                }
+            }
+        );
+    }
+
+    private void recordClip(int index) {
+        File output;
+        try {
+            output = outputs.newFile(index);
+        } catch (IOException e) {
+            onCaptureFailed(e);
+            return;
+        }
+        camera.record(
+            output,
+            durationMs,
+            new Callback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    synchronized (CaptureEngine.this) {
+                        inFlight++;
+                    }
+                    worker.execute(() -> process(index, output, 0));
+                    onCaptureDone();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    onCaptureFailed(e);
+                }
+            }
+        );
+    }
+
+    private void process(int index, File output, int rotationDegrees) {
+        try {
+            onProcessed(index, processor.process(output, rotationDegrees), null);
+        } catch (Exception e) {
+            onProcessed(index, null, e);
+        }
+    }
+
+    private void onCaptureDone() {
+        synchronized (this) {
+            capturing = false;
+        }
+        next();
+    }
+
+    private void onCaptureFailed(Exception e) {
+        synchronized (this) {
+            capturing = false;
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        next();
+    }
+
+    private void onProcessed(int index, T result, Exception e) {
+        synchronized (this) {
+            inFlight--;
+            if (e != null) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } else {
+                results.set(index, result);
+            }
+        }
+        next();
+    }
+
+    private void finish() {
+        camera.close();
+        List<T> completed = new ArrayList<>();
+        Exception error;
+        synchronized (this) {
+            for (T result : results) {
+                if (result != null) {
+                    completed.add(result);
+                }
+            }
+            error = failure;
+        }
+        if (error != null) {
+            listener.onError(error, completed);
+        } else {
+            listener.onComplete(completed);
+        }
+    }
+
+    private static void write(File output, byte[] data) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(output)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+    }
+}
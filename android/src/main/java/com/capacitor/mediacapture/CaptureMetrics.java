@@ -0,0 +1,148 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms for the stages of a capture.
+ *
+ * Each stage has a fixed array of power-of-two microsecond buckets plus
+ * count, sum and max cells, all in one preallocated AtomicLongArray, so
+ * recording a sample never allocates and never locks.
+ */
+public class CaptureMetrics {
+
+    public enum Stage {
+        PERMISSION("permission"),
+        INTENT_LAUNCH("intentLaunch"),
+        EXTERNAL_ACTIVITY("externalActivity"),
+        ACTIVITY_CALLBACK("activityCallback"),
+        AUDIO_COPY("audioCopy"),
+        AUDIO_TRANSCODE("audioTranscode"),
+        VIDEO_COMPRESS("videoCompress"),
+        EXIF("exif"),
+        IMAGE_PROCESSING("imageProcessing"),
+        CHECKSUM("checksum"),
+        CREATE_MEDIA_FILE("createMediaFile"),
+        MIME_LOOKUP("mimeLookup"),
+        TOTAL("total");
+
+        final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+    }
+
+    public interface Listener {
+        void onSample(Stage stage, long micros);
+    }
+
+    // Bucket i holds samples in [2^(i-1), 2^i) microseconds, the last one everything above
+    private static final int BUCKETS = 40;
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+    private static final int SLOTS = BUCKETS + 3;
+
+    private final AtomicLongArray cells = new AtomicLongArray(Stage.values().length * SLOTS);
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Records the time elapsed since the given System.nanoTime() value.
+     */
+    public void record(Stage stage, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long micros = Math.max(0, (System.nanoTime() - startNanos) / 1000);
+        int base = stage.ordinal() * SLOTS;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        cells.incrementAndGet(base + bucket);
+        cells.incrementAndGet(base + COUNT);
+        cells.addAndGet(base + SUM, micros);
+        long max;
+        do {
+            max = cells.get(base + MAX);
+        } while (micros > max && !cells.compareAndSet(base + MAX, max, micros));
+
+        Listener current = listener;
+        if (current != null) {
+            current.onSample(stage, micros);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+
+    public JSObject toJSObject() {
+        JSObject metrics = new JSObject();
+        for (Stage stage : Stage.values()) {
+            int base = stage.ordinal() * SLOTS;
+            long count = cells.get(base + COUNT);
+            JSObject histogram = new JSObject();
+            histogram.put("count", count);
+            histogram.put("totalMs", cells.get(base + SUM) / 1000.0);
+            histogram.put("maxMs", cells.get(base + MAX) / 1000.0);
+            histogram.put("meanMs", count > 0 ? cells.get(base + SUM) / 1000.0 / count : 0);
+            histogram.put("p50Ms", percentile(base, count, 0.50));
+            histogram.put("p90Ms", percentile(base, count, 0.90));
+            histogram.put("p99Ms", percentile(base, count, 0.99));
+            JSArray buckets = new JSArray();
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.put(cells.get(base + i));
+            }
+            histogram.put("buckets", buckets);
+            metrics.put(stage.key, histogram);
+        }
+        return metrics;
+    }
+
+    public static String getKey(Stage stage) {
+        return stage.key;
+    }
+
+    /**
+     * Returns the upper bound in milliseconds of the bucket holding the given percentile.
+     */
+    private double percentile(int base, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += cells.get(base + i);
+            if (seen >= rank) {
+                return Math.min((1L << i), cells.get(base + MAX)) / 1000.0;
+            }
+        }
+        return cells.get(base + MAX) / 1000.0;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable state of one capture call, keyed by the call's callback ID.
+ *
+ * Every step of a session returns a new instance instead of updating
+ * shared fields, so the file path and results a step works with cannot be
+ * changed by another capture call or by a background thread.
+ */
+public final class CaptureSession {
+
+    public final String id;
+    public final int limit;
+    public final boolean streaming;
+    public final long startNanos;
+    /** The image processor of the session, used on the I/O thread only, or null. */
+    public final ImageProcessor imageProcessor;
+    /** The file of the capture in progress, or null between captures. */
+    public final String path;
+    /** When the external capture activity was launched, or 0. */
+    public final long launchNanos;
+
+    private final List<JSObject> results;
+    private final int count;
+
+    private CaptureSession(
+        String id,
+        int limit,
+        boolean streaming,
+        long startNanos,
+        ImageProcessor imageProcessor,
+        String path,
+        long launchNanos,
+        List<JSObject> results,
+        int count
+    ) {
+        this.id = id;
+        this.limit = limit;
+        this.streaming = streaming;
+        this.startNanos = startNanos;
+        this.imageProcessor = imageProcessor;
+        this.path = path;
+        this.launchNanos = launchNanos;
+        this.results = results;
+        this.count = count;
+    }
+
+    public static CaptureSession start(String id, int limit, boolean streaming, ImageProcessor imageProcessor) {
+        return new CaptureSession(
+            id,
+            Math.max(1, limit),
+            streaming,
+            System.nanoTime(),
+            imageProcessor,
+            null,
+            0,
+            Collections.<JSObject>emptyList(),
+            0
+        );
+    }
+
+    /**
+     * Returns the session with a capture into the given file in progress.
+     */
+    public CaptureSession withCapture(String path, long launchNanos) {
+        return new CaptureSession(id, limit, streaming, startNanos, imageProcessor, path, launchNanos, results, count);
+    }
+
+    /**
+     * Returns the session with one more completed file. Streamed files are
+     * only counted, the app already received them.
+     */
+    public CaptureSession withResult(JSObject mediaFile) {
+        List<JSObject> next = results;
+        if (!streaming) {
+            next = new ArrayList<>(results);
+            next.add(mediaFile);
+            next = Collections.unmodifiableList(next);
+        }
+        return new CaptureSession(id, limit, streaming, startNanos, imageProcessor, null, 0, next, count + 1);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isComplete() {
+        return count >= limit;
+    }
+
+    public JSArray getResults() {
+        JSArray array = new JSArray();
+        for (JSObject result : results) {
+            array.put(result);
+        }
+        return array;
+    }
+}
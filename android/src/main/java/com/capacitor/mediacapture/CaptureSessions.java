@@ -0,0 +1,192 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The capture calls in flight, keyed by their callback ID, and the format
+ * probes running beside them.
+ *
+ * Each step of a capture puts a new CaptureSession snapshot, so overlapping
+ * calls never see each other's files. The bridge is only reached through
+ * Host, so the bookkeeping runs unchanged against stub calls.
+ */
+public class CaptureSessions {
+
+    public interface Host {
+        void notifyListeners(String eventName, JSObject data);
+
+        /**
+         * Releases a call that was kept alive for streaming.
+         */
+        void releaseCall(PluginCall call);
+    }
+
+    /**
+     * Reads the format data of one file. Runs on the probe executor.
+     */
+    public interface Prober {
+        JSObject probe(String filePath, String mimeType) throws Exception;
+    }
+
+    private final Map<String, CaptureSession> sessions = new ConcurrentHashMap<>();
+    private final Executor ioExecutor;
+    private final Executor probeExecutor;
+    private final Host host;
+
+    /**
+     * @param ioExecutor the I/O thread, which owns the image processors
+     * @param probeExecutor runs format probes
+     * @param host the bridge side of the plugin
+     */
+    public CaptureSessions(Executor ioExecutor, Executor probeExecutor, Host host) {
+        this.ioExecutor = ioExecutor;
+        this.probeExecutor = probeExecutor;
+        this.host = host;
+    }
+
+    public CaptureSession start(PluginCall call, ImageProcessor imageProcessor) {
+        boolean streaming = call.getBoolean("stream", false);
+        CaptureSession session = CaptureSession.start(call.getCallbackId(), call.getInt("limit", 1), streaming, imageProcessor);
+        sessions.put(session.id, session);
+        if (streaming) {
+            // Keep the call across the per-item events until the summary is sent
+            call.setKeepAlive(true);
+        }
+        return session;
+    }
+
+    public CaptureSession get(PluginCall call) {
+        return call != null ? sessions.get(call.getCallbackId()) : null;
+    }
+
+    /**
+     * Records the file of the next capture in the call's session.
+     *
+     * @return the session with the capture in progress
+     */
+    public CaptureSession startCapture(PluginCall call, String path) {
+        CaptureSession capturing = get(call).withCapture(path, 0);
+        sessions.put(capturing.id, capturing);
+        return capturing;
+    }
+
+    /**
+     * Stamps the launch time of a capture, unless the session moved on in the meantime.
+     */
+    public void markLaunched(CaptureSession capturing, long launchNanos) {
+        sessions.replace(capturing.id, capturing, capturing.withCapture(capturing.path, launchNanos));
+    }
+
+    /**
+     * Hands a captured file to the app: as a mediaCaptured event right away
+     * when streaming, otherwise by collecting it for the final result.
+     *
+     * @return the session with the file added
+     */
+    public CaptureSession addResult(PluginCall call, CaptureSession session, JSObject mediaFile) {
+        if (session.streaming) {
+            emitMediaCaptured(call, session.getCount(), mediaFile);
+        }
+        CaptureSession next = session.withResult(mediaFile);
+        sessions.put(next.id, next);
+        return next;
+    }
+
+    public void emitMediaCaptured(PluginCall call, int index, JSObject mediaFile) {
+        JSObject event = new JSObject();
+        event.put("sessionId", call.getCallbackId());
+        // The session id only reaches JS with the result, this one is known up front
+        event.put("correlationId", call.getString("correlationId"));
+        event.put("index", index);
+        event.put("file", mediaFile);
+        host.notifyListeners("mediaCaptured", event);
+    }
+
+    /**
+     * Resolves the capture call. Streamed files were already delivered as
+     * events, so the summary only carries their count.
+     */
+    public void resolve(PluginCall call, CaptureSession session) {
+        JSObject ret = new JSObject();
+        ret.put("files", session.getResults());
+        ret.put("count", session.getCount());
+        if (session.streaming) {
+            ret.put("sessionId", session.id);
+            ret.put("correlationId", call.getString("correlationId"));
+        }
+        call.resolve(ret);
+        end(call);
+    }
+
+    public void reject(PluginCall call, String message) {
+        reject(call, message, null);
+    }
+
+    public void reject(PluginCall call, String message, Exception e) {
+        call.reject(message, e);
+        end(call);
+    }
+
+    public void end(PluginCall call) {
+        CaptureSession session = sessions.remove(call.getCallbackId());
+        if (session != null && session.imageProcessor != null) {
+            // The processor may still be in use by the I/O thread
+            ioExecutor.execute(session.imageProcessor::recycle);
+        }
+        if (call.isKeptAlive()) {
+            call.setKeepAlive(false);
+            host.releaseCall(call);
+        }
+    }
+
+    /**
+     * Returns the number of sessions in progress.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Resolves the call with the format data of its file, read on the probe executor.
+     */
+    public void getFormatData(PluginCall call, Prober prober) {
+        String filePath = call.getString("fullPath");
+        String mimeType = call.getString("type");
+
+        if (filePath == null) {
+            call.reject("File path is required");
+            return;
+        }
+
+        // Probes parse container headers, keep them off the plugin thread
+        probeExecutor.execute(() -> {
+            try {
+                call.resolve(prober.probe(filePath, mimeType));
+            } catch (Exception e) {
+                call.reject("Error getting format data", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the capture cache directory.
+ *
+ * Files are evicted on a background thread once they are older than the
+ * configured maximum age, then least recently modified first until the
+ * directory fits in the byte quota. Files handed out during the current
+ * session are never evicted.
+ */
+public class CaptureStore {
+
+    private static final String TAG = "MediaCapture";
+    private static final long SWEEP_INTERVAL_MINUTES = 60;
+
+    /**
+     * Receives the result of a store operation on the sweeper thread.
+     */
+    public interface Callback {
+        void onComplete(JSObject result);
+
+        void onError(Exception e);
+    }
+
+    private final File directory;
+    private final long quotaBytes;
+    private final long maxAgeMillis;
+    private final ScheduledExecutorService sweeper;
+    private final Set<String> protectedPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean directoryReady = false;
+    private String lastTimeStamp;
+    private int timeStampSequence = 0;
+
+    public CaptureStore(File directory, long quotaBytes, long maxAgeMillis, ScheduledExecutorService sweeper) {
+        this.directory = directory;
+        this.quotaBytes = quotaBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.sweeper = sweeper;
+        sweeper.scheduleWithFixedDelay(this::sweep, 0, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public File getDirectory() {
+        if (!directoryReady) {
+            directory.mkdirs();
+            directoryReady = true;
+        }
+        return directory;
+    }
+
+    /**
+     * Returns a new file in the store that is protected from eviction for
+     * the rest of the session.
+     */
+    public File newFile(String fileName) {
+        File file = new File(getDirectory(), fileName);
+        protectedPaths.add(file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Creates a uniquely named capture file. Captures started within the
+     * same millisecond get a sequence suffix.
+     */
+    public synchronized File newCaptureFile(String kind, String extension) {
+        String timeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
+        if (timeStamp.equals(lastTimeStamp)) {
+            timeStamp += "_" + (++timeStampSequence);
+        } else {
+            lastTimeStamp = timeStamp;
+            timeStampSequence = 0;
+        }
+        return newFile("cdv_media_capture_" + kind + "_" + timeStamp + extension);
+    }
+
+    /**
+     * Schedules an eviction pass, e.g. after a new capture was written.
+     */
+    public void requestSweep() {
+        sweeper.execute(this::sweep);
+    }
+
+    /**
+     * Evicts files on the sweeper thread until the store fits in the given
+     * number of bytes.
+     *
+     * @param targetBytes the size to trim to, or a negative value for the quota
+     * @param callback receives the trim result
+     */
+    public void trim(long targetBytes, Callback callback) {
+        run(() -> evict(targetBytes >= 0 ? targetBytes : quotaBytes), callback);
+    }
+
+    public void getStats(Callback callback) {
+        run(() -> {
+            long bytes = 0;
+            File[] files = listFiles();
+            for (File file : files) {
+                bytes += file.length();
+            }
+            JSObject stats = new JSObject();
+            stats.put("bytes", bytes);
+            stats.put("files", files.length);
+            stats.put("protectedFiles", protectedPaths.size());
+            stats.put("quotaBytes", quotaBytes);
+            stats.put("maxAge", maxAgeMillis / 1000);
+            return stats;
+        }, callback);
+    }
+
+    /**
+     * Runs a task on the sweeper thread and hands its result to the callback
+     * from there, so the caller never waits for a sweep in progress.
+     */
+    private void run(Callable<JSObject> task, Callback callback) {
+        sweeper.execute(() -> {
+            JSObject result;
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                callback.onError(e);
+                return;
+            }
+            callback.onComplete(result);
+        });
+    }
+
+    private void sweep() {
+        try {
+            evict(quotaBytes);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error sweeping capture cache", e);
+        }
+    }
+
+    private JSObject evict(long targetBytes) {
+        if (!directory.exists()) {
+            // The system cleared the cache, recreate the directory on next use
+            directoryReady = false;
+        }
+
+        File[] files = listFiles();
+        long[] lastModified = new long[files.length];
+        long bytes = 0;
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            bytes += files[i].length();
+        }
+
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+
+        long now = System.currentTimeMillis();
+        int deletedFiles = 0;
+        long freedBytes = 0;
+        for (int i : order) {
+            File file = files[i];
+            boolean expired = maxAgeMillis > 0 && now - lastModified[i] > maxAgeMillis;
+            if (!expired && bytes <= targetBytes) {
+                continue;
+            }
+            if (protectedPaths.contains(file.getAbsolutePath())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                bytes -= length;
+                freedBytes += length;
+                deletedFiles++;
+            }
+        }
+
+        if (deletedFiles > 0) {
+            Log.d(TAG, "Evicted " + deletedFiles + " cached captures (" + freedBytes + " bytes)");
+        }
+        JSObject result = new JSObject();
+        result.put("deletedFiles", deletedFiles);
+        result.put("freedBytes", freedBytes);
+        result.put("bytes", bytes);
+        return result;
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles(File::isFile);
+        return files != null ? files : new File[0];
+    }
+}
@@ -0,0 +1,125 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A streaming checksum over the bytes of a capture.
+ *
+ * Bytes are fed with update() while they are copied, so the digest costs no
+ * extra pass over the file.
+ */
+public class Checksum {
+
+    public static final String SHA256 = "sha256";
+    public static final String CRC32 = "crc32";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String algorithm;
+    private final MessageDigest digest;
+    private final java.util.zip.CRC32 crc;
+
+    private Checksum(String algorithm, MessageDigest digest, java.util.zip.CRC32 crc) {
+        this.algorithm = algorithm;
+        this.digest = digest;
+        this.crc = crc;
+    }
+
+    public static boolean isSupported(String algorithm) {
+        return SHA256.equals(algorithm) || CRC32.equals(algorithm);
+    }
+
+    /**
+     * Creates a checksum for the given algorithm.
+     *
+     * @param algorithm either "sha256" or "crc32"
+     * @return the checksum
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public static Checksum create(String algorithm) {
+        if (CRC32.equals(algorithm)) {
+            return new Checksum(algorithm, null, new java.util.zip.CRC32());
+        }
+        if (SHA256.equals(algorithm)) {
+            try {
+                return new Checksum(algorithm, MessageDigest.getInstance("SHA-256"), null);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported checksum: " + algorithm);
+    }
+
+    /**
+     * Reads the whole file once and returns its hex digest.
+     */
+    public static String compute(File file, String algorithm) throws IOException {
+        Checksum checksum = create(algorithm);
+        byte[] buffer = BufferPool.acquire();
+        try (InputStream input = new FileInputStream(file)) {
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                checksum.update(buffer, 0, bytesRead);
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+        return checksum.finish();
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        if (digest != null) {
+            digest.update(buffer, offset, length);
+        } else {
+            crc.update(buffer, offset, length);
+        }
+    }
+
+    /**
+     * Returns the lower-case hex digest. The checksum cannot be used afterwards.
+     */
+    public String finish() {
+        if (digest != null) {
+            return toHex(digest.digest());
+        }
+        long value = crc.getValue();
+        byte[] bytes = new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+        return toHex(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -18,24 +18,39 @@
 */
 package com.capacitor.mediacapture;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.webkit.MimeTypeMap;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Locale;
 
 public class FileHelper {
+    /**
+     * Returns the mime type for the extension of the given path.
+     *
+     * Extensions known to MimeTypes resolve without allocating, anything else
+     * falls back to the platform MimeTypeMap.
+     */
     public static String getMimeTypeForExtension(String path) {
-        String extension = path;
-        int lastDot = extension.lastIndexOf('.');
-        if (lastDot != -1) {
-            extension = extension.substring(lastDot + 1);
+        String mimeType = MimeTypes.fromPath(path);
+        if (mimeType != null) {
+            return mimeType;
         }
-        // Convert the URI string to lower case to ensure compatibility with MimeTypeMap
-        extension = extension.toLowerCase(Locale.getDefault());
-        if (extension.equals("3ga")) {
-            return "audio/3gpp";
+        int start = MimeTypes.extensionStart(path);
+        if (start < 0) {
+            return null;
         }
+        // MimeTypeMap expects lower case, use a fixed locale so the Turkish dotless i cannot leak in
+        String extension = path.substring(start).toLowerCase(Locale.ROOT);
         return MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
     }
 
@@ -52,8 +67,95 @@ public class FileHelper {
             mimeType = context.getContentResolver().getType(uri);
         } else {
             mimeType = getMimeTypeForExtension(uri.getPath());
+            if (mimeType == null && uri.getPath() != null) {
+                // No usable extension, identify the file from its content
+                mimeType = MimeTypes.sniff(new File(uri.getPath()));
+            }
         }
 
         return mimeType;
     }
+
+    /**
+     * Copies the data behind the given URI into a local file and syncs it to disk.
+     *
+     * When the source resolves to a regular file the bytes are moved with
+     * FileChannel.transferTo, otherwise they are streamed through a pooled buffer.
+     * A checksum forces the buffered path so the digest is computed in the same pass.
+     *
+     * @param resolver the content resolver used to open the source
+     * @param source the URI of the data to copy
+     * @param destination the file to write
+     * @param checksum the checksum to feed with the copied bytes, or null
+     * @return the number of bytes copied
+     */
+    public static long copy(ContentResolver resolver, Uri source, File destination, Checksum checksum) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(destination)) {
+            // Opened after the output so a failing destination cannot leak the descriptor
+            ParcelFileDescriptor descriptor = openDescriptor(resolver, source);
+            long copied;
+            if (descriptor != null && descriptor.getStatSize() >= 0 && checksum == null) {
+                try (FileInputStream input = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+                    copied = transfer(input.getChannel(), output.getChannel());
+                }
+            } else {
+                InputStream input = descriptor != null
+                    ? new ParcelFileDescriptor.AutoCloseInputStream(descriptor)
+                    : resolver.openInputStream(source);
+                if (input == null) {
+                    throw new FileNotFoundException("Unable to open " + source);
+                }
+                try (InputStream in = input) {
+                    copied = copy(in, output, checksum);
+                }
+            }
+            output.getFD().sync();
+            return copied;
+        }
+    }
+
+    private static ParcelFileDescriptor openDescriptor(ContentResolver resolver, Uri source) {
+        try {
+            return resolver.openFileDescriptor(source, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Transfers the whole of the input channel to the output channel.
+     *
+     * @return the number of bytes transferred, always the size of the input
+     * @throws IOException if the input ends before its reported size
+     */
+    static long transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        while (position < size) {
+            long transferred = in.transferTo(position, size - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Transfer stopped after " + position + " of " + size + " bytes");
+            }
+            position += transferred;
+        }
+        return position;
+    }
+
+    private static long copy(InputStream input, FileOutputStream output, Checksum checksum) throws IOException {
+        byte[] buffer = BufferPool.acquire();
+        try {
+            long copied = 0;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+                if (checksum != null) {
+                    checksum.update(buffer, 0, bytesRead);
+                }
+                copied += bytesRead;
+            }
+            return copied;
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
 }
@@ -0,0 +1,265 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * An LRU cache of format data keyed by (path, size, lastModified).
+ *
+ * Entries are kept in memory up to a byte budget and mirrored to an
+ * append-only journal on disk, so results survive an app restart. A file
+ * that is rewritten gets a new size or modification time and therefore
+ * misses the cache. The key is taken before probing, so data probed from
+ * a file that changed in the meantime is stored under the old attributes
+ * and never served for the new content.
+ */
+public class FormatDataCache {
+
+    private static final String TAG = "MediaCapture";
+    // First line of the journal, bump the version when the record layout changes
+    static final String JOURNAL_HEADER = "formatdata 1";
+
+    private final File journal;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private int journalLines = 0;
+    private Writer writer;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * The attributes identifying one version of a file.
+     */
+    public static class Key {
+
+        final String path;
+        final long size;
+        final long lastModified;
+
+        Key(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Reads the current attributes of a file. A missing file has a
+         * modification time of 0 and is never cached.
+         */
+        public static Key of(File file) {
+            return new Key(file.getAbsolutePath(), file.length(), file.lastModified());
+        }
+    }
+
+    private static class Entry {
+
+        final String path;
+        final long size;
+        final long lastModified;
+        final String data;
+
+        Entry(String path, long size, long lastModified, String data) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+
+        long weight() {
+            // Two bytes per char plus a rough per-entry overhead
+            return 2L * (path.length() + data.length()) + 64;
+        }
+    }
+
+    public FormatDataCache(File journal, long maxBytes) {
+        this.journal = journal;
+        this.maxBytes = maxBytes;
+        load();
+    }
+
+    /**
+     * Returns the cached format data of the given file version, or null when
+     * the file changed or was never probed.
+     */
+    public synchronized JSObject get(Key key) throws JSONException {
+        Entry entry = entries.get(key.path);
+        if (entry == null || entry.size != key.size || entry.lastModified != key.lastModified) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new JSObject(entry.data);
+    }
+
+    /**
+     * Stores the format data probed from the given file version.
+     *
+     * @param key the attributes read before the probe started
+     * @param data the format data
+     */
+    public synchronized void put(Key key, JSObject data) {
+        if (key.lastModified == 0) {
+            // The file does not exist
+            return;
+        }
+        Entry entry = new Entry(key.path, key.size, key.lastModified, data.toString());
+        if (entry.weight() > maxBytes) {
+            return;
+        }
+        insert(entry);
+        append(entry);
+        trimToSize();
+    }
+
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    private void insert(Entry entry) {
+        Entry previous = entries.put(entry.path, entry);
+        if (previous != null) {
+            bytes -= previous.weight();
+        }
+        bytes += entry.weight();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getValue().weight();
+            iterator.remove();
+            evictions++;
+        }
+        // Drop stale journal lines once they clearly outnumber the live entries
+        if (journalLines > 2 * entries.size() + 64) {
+            rewrite();
+        }
+    }
+
+    private void load() {
+        if (!journal.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                // Written by another version, the records may not be read back as they were meant
+                Log.d(TAG, "Discarding format data cache of another version");
+                journal.delete();
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                journalLines++;
+                try {
+                    JSONArray record = new JSONArray(line);
+                    insert(new Entry(record.getString(0), record.getLong(1), record.getLong(2), record.getString(3)));
+                } catch (JSONException e) {
+                    // Truncated write, skip the line
+                }
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "Error reading format data cache", e);
+        }
+        trimToSize();
+    }
+
+    private void append(Entry entry) {
+        try {
+            if (writer == null) {
+                boolean created = journal.length() == 0;
+                writer = new FileWriter(journal, true);
+                if (created) {
+                    writer.write(JOURNAL_HEADER + "\n");
+                }
+            }
+            writer.write(toLine(entry));
+            writer.flush();
+            journalLines++;
+        } catch (IOException e) {
+            Log.d(TAG, "Error writing format data cache", e);
+            closeWriter();
+        }
+    }
+
+    private void rewrite() {
+        closeWriter();
+        File temp = new File(journal.getPath() + ".tmp");
+        try (Writer out = new FileWriter(temp)) {
+            out.write(JOURNAL_HEADER + "\n");
+            for (Entry entry : entries.values()) {
+                out.write(toLine(entry));
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "Error compacting format data cache", e);
+            temp.delete();
+            return;
+        }
+        if (temp.renameTo(journal)) {
+            journalLines = entries.size();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.d(TAG, "Error closing format data cache", e);
+        }
+        writer = null;
+    }
+
+    private static String toLine(Entry entry) {
+        JSONArray record = new JSONArray();
+        record.put(entry.path);
+        record.put(entry.size);
+        record.put(entry.lastModified);
+        record.put(entry.data);
+        return record.toString() + "\n";
+    }
+}
@@ -0,0 +1,858 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONException;
+
+/**
+ * Identifies a media file from its leading bytes and reads its format data
+ * straight from the container structures.
+ *
+ * The header is read once into a small buffer and sniffed with MimeTypes.
+ * Known containers are then parsed with positioned reads of just the
+ * structures that carry the dimensions and duration: JPEG SOF markers, the
+ * PNG IHDR chunk, WebP and GIF headers, HEIF ispe properties, MP4 moov /
+ * mvhd / tkhd boxes, Matroska Info and Tracks elements, the first ADTS
+ * frame headers (after a leading ID3v2 tag) and WAV chunks. None of them
+ * touch the platform decoders. Formats the parsers do not cover are left to
+ * BitmapFactory and MediaProbe.
+ */
+public class FormatDetector {
+
+    private static final String TAG = "MediaCapture";
+
+    private static final int HEADER_SIZE = 512;
+    private static final int ID3_HEADER_SIZE = 10;
+    // About six seconds of AAC at 44.1 kHz, longer streams get an estimated duration
+    private static final int ADTS_SCAN_FRAMES = 256;
+    private static final int ADTS_HEADER_SIZE = 7;
+    private static final int ADTS_BLOCK_SIZE = 64 * 1024;
+    private static final int[] ADTS_SAMPLE_RATES = {
+        96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    public static class Result {
+
+        /** The type identified from the content, or null when the format is not recognized. */
+        public final String mimeType;
+        /** Whether the format data was read and no fallback probe is needed. */
+        public final boolean parsed;
+
+        Result(String mimeType, boolean parsed) {
+            this.mimeType = mimeType;
+            this.parsed = parsed;
+        }
+    }
+
+    /**
+     * Detects the format of the file and fills width, height, duration,
+     * bitrate, codecs and rotation on the given object when a parser covers it.
+     *
+     * @param file the media file
+     * @param obj the object to populate
+     * @return the detected type and whether obj was populated
+     */
+    public static Result detect(File file, JSObject obj) throws JSONException {
+        try (FileInputStream input = new FileInputStream(file)) {
+            FileChannel channel = input.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int length = read(channel, header, 0);
+            // Audio streams may start with an ID3v2 tag, identify what follows it
+            long start = getId3Length(header, length);
+            if (start > 0) {
+                header.clear();
+                length = read(channel, header, start);
+            }
+            String mimeType = MimeTypes.sniff(header.array(), length);
+            if (start > 0 && !"audio/aac".equals(mimeType)) {
+                // The other parsers expect their container at offset 0, a tag is an MP3 thing anyway
+                return new Result(mimeType != null ? mimeType : "audio/mpeg", false);
+            }
+            if (mimeType == null) {
+                return new Result(null, false);
+            }
+            boolean parsed;
+            switch (mimeType) {
+                case "image/jpeg":
+                    parsed = parseJpeg(channel, obj);
+                    break;
+                case "image/png":
+                    parsed = parsePng(header, length, obj);
+                    break;
+                case "image/gif":
+                    parsed = parseGif(header, length, obj);
+                    break;
+                case "image/webp":
+                    parsed = parseWebp(header, length, obj);
+                    break;
+                case "image/heic":
+                    parsed = parseHeif(channel, obj);
+                    break;
+                case "video/mp4":
+                case "video/3gpp":
+                case "video/3gpp2":
+                case "video/quicktime":
+                case "audio/mp4":
+                    parsed = parseMp4(channel, obj);
+                    break;
+                case "video/webm":
+                case "video/x-matroska":
+                    parsed = parseMatroska(channel, obj);
+                    break;
+                case "audio/aac":
+                    parsed = parseAdts(channel, start, obj);
+                    break;
+                case "audio/x-wav":
+                    parsed = parseWav(channel, obj);
+                    break;
+                default:
+                    parsed = false;
+                    break;
+            }
+            return new Result(mimeType, parsed);
+        } catch (IOException | RuntimeException e) {
+            Log.d(TAG, "Error parsing media headers", e);
+            return new Result(null, false);
+        }
+    }
+
+    // JPEG
+
+    private static boolean parseJpeg(FileChannel channel, JSObject obj) throws IOException, JSONException {
+        ByteBuffer segment = ByteBuffer.allocate(9);
+        long position = 2;
+        long size = channel.size();
+        while (position + 4 <= size) {
+            segment.clear().limit(4);
+            if (read(channel, segment, position) < 4 || (segment.get(0) & 0xFF) != 0xFF) {
+                return false;
+            }
+            int marker = segment.get(1) & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before the marker
+                position++;
+                continue;
+            }
+            if (marker == 0xD8 || (marker >= 0xD0 && marker <= 0xD7) || marker == 0x01) {
+                position += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // End of image or start of scan without a frame header
+                return false;
+            }
+            int segmentLength = segment.getShort(2) & 0xFFFF;
+            boolean frame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (frame) {
+                segment.clear().limit(9);
+                if (read(channel, segment, position) < 9) {
+                    return false;
+                }
+                obj.put("height", segment.getShort(5) & 0xFFFF);
+                obj.put("width", segment.getShort(7) & 0xFFFF);
+                return true;
+            }
+            position += 2 + segmentLength;
+        }
+        return false;
+    }
+
+    // PNG, GIF and WebP keep their dimensions within the first few bytes
+
+    private static boolean parsePng(ByteBuffer header, int length, JSObject obj) throws JSONException {
+        if (length < 24 || header.getInt(12) != fourcc("IHDR")) {
+            return false;
+        }
+        obj.put("width", header.getInt(16));
+        obj.put("height", header.getInt(20));
+        return true;
+    }
+
+    private static boolean parseGif(ByteBuffer header, int length, JSObject obj) throws JSONException {
+        if (length < 10) {
+            return false;
+        }
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        obj.put("width", header.getShort(6) & 0xFFFF);
+        obj.put("height", header.getShort(8) & 0xFFFF);
+        return true;
+    }
+
+    private static boolean parseWebp(ByteBuffer header, int length, JSObject obj) throws JSONException {
+        if (length < 31) {
+            return false;
+        }
+        int chunk = header.getInt(12);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        int width;
+        int height;
+        if (chunk == fourcc("VP8 ")) {
+            width = header.getShort(26) & 0x3FFF;
+            height = header.getShort(28) & 0x3FFF;
+        } else if (chunk == fourcc("VP8L")) {
+            int bits = header.getInt(21);
+            width = (bits & 0x3FFF) + 1;
+            height = ((bits >> 14) & 0x3FFF) + 1;
+        } else if (chunk == fourcc("VP8X")) {
+            width = (header.getInt(24) & 0xFFFFFF) + 1;
+            height = (header.getInt(27) & 0xFFFFFF) + 1;
+        } else {
+            return false;
+        }
+        obj.put("width", width);
+        obj.put("height", height);
+        return true;
+    }
+
+    // ISO base media file format (MP4, 3GP, QuickTime, HEIF)
+
+    private static class Box {
+
+        int type;
+        long payload;
+        long end;
+
+        /**
+         * Reads the box header at the given position.
+         *
+         * @return false when no complete box header fits before the limit
+         */
+        boolean read(FileChannel channel, ByteBuffer scratch, long position, long limit) throws IOException {
+            if (position + 8 > limit) {
+                return false;
+            }
+            scratch.clear().limit(16);
+            int length = FormatDetector.read(channel, scratch, position);
+            if (length < 8) {
+                return false;
+            }
+            long size = scratch.getInt(0) & 0xFFFFFFFFL;
+            type = scratch.getInt(4);
+            payload = position + 8;
+            if (size == 1) {
+                if (length < 16) {
+                    return false;
+                }
+                size = scratch.getLong(8);
+                payload += 8;
+            } else if (size == 0) {
+                size = limit - position;
+            }
+            end = position + size;
+            return size >= payload - position && end <= limit;
+        }
+    }
+
+    private static boolean parseMp4(FileChannel channel, JSObject obj) throws IOException, JSONException {
+        ByteBuffer scratch = ByteBuffer.allocate(96);
+        Box box = new Box();
+        long size = channel.size();
+        long position = 0;
+        while (box.read(channel, scratch, position, size)) {
+            if (box.type == fourcc("moov")) {
+                return parseMoov(channel, scratch, box.payload, box.end, size, obj);
+            }
+            position = box.end;
+        }
+        return false;
+    }
+
+    private static boolean parseMoov(FileChannel channel, ByteBuffer scratch, long start, long end, long fileSize, JSObject obj)
+        throws IOException, JSONException {
+        long durationMs = -1;
+        int width = 0;
+        int height = 0;
+        int rotation = 0;
+        StringBuilder codecs = new StringBuilder();
+
+        Box box = new Box();
+        long position = start;
+        while (box.read(channel, scratch, position, end)) {
+            if (box.type == fourcc("mvhd")) {
+                durationMs = readMovieDuration(channel, scratch, box.payload);
+            } else if (box.type == fourcc("trak")) {
+                Track track = readTrack(channel, scratch, box.payload, box.end);
+                if (track.codec != null) {
+                    if (codecs.length() > 0) {
+                        codecs.append(',');
+                    }
+                    codecs.append(track.codec);
+                }
+                if (track.video && width == 0) {
+                    width = track.width;
+                    height = track.height;
+                    rotation = track.rotation;
+                }
+            }
+            position = box.end;
+        }
+        if (durationMs < 0) {
+            return false;
+        }
+
+        obj.put("duration", durationMs / 1000);
+        obj.put("bitrate", durationMs > 0 ? fileSize * 8000 / durationMs : 0);
+        obj.put("codecs", codecs.toString());
+        if (width > 0) {
+            obj.put("width", width);
+            obj.put("height", height);
+            obj.put("rotation", rotation);
+        }
+        return true;
+    }
+
+    private static long readMovieDuration(FileChannel channel, ByteBuffer scratch, long payload) throws IOException {
+        scratch.clear().limit(32);
+        if (read(channel, scratch, payload) < 32) {
+            return -1;
+        }
+        boolean version1 = scratch.get(0) == 1;
+        long timescale = (scratch.getInt(version1 ? 20 : 12) & 0xFFFFFFFFL);
+        long duration = version1 ? scratch.getLong(24) : scratch.getInt(16) & 0xFFFFFFFFL;
+        if (timescale == 0) {
+            return -1;
+        }
+        return duration * 1000 / timescale;
+    }
+
+    private static class Track {
+
+        boolean video;
+        String codec;
+        int width;
+        int height;
+        int rotation;
+    }
+
+    private static Track readTrack(FileChannel channel, ByteBuffer scratch, long start, long end) throws IOException {
+        Track track = new Track();
+        Box box = new Box();
+        long position = start;
+        while (box.read(channel, scratch, position, end)) {
+            long next = box.end;
+            if (box.type == fourcc("tkhd")) {
+                readTrackHeader(channel, scratch, box.payload, track);
+            } else if (box.type == fourcc("mdia")) {
+                readMedia(channel, scratch, box.payload, box.end, track);
+            }
+            position = next;
+        }
+        if (!track.video) {
+            track.width = 0;
+            track.height = 0;
+            track.rotation = 0;
+        }
+        return track;
+    }
+
+    private static void readTrackHeader(FileChannel channel, ByteBuffer scratch, long payload, Track track) throws IOException {
+        scratch.clear().limit(96);
+        int length = read(channel, scratch, payload);
+        boolean version1 = length > 0 && scratch.get(0) == 1;
+        int matrix = version1 ? 52 : 40;
+        if (length < matrix + 44) {
+            return;
+        }
+        // Only the first two matrix cells are needed to tell the rotation apart
+        int a = scratch.getInt(matrix);
+        int b = scratch.getInt(matrix + 4);
+        if (a == 0 && b == 0x10000) {
+            track.rotation = 90;
+        } else if (a == -0x10000 && b == 0) {
+            track.rotation = 180;
+        } else if (a == 0 && b == -0x10000) {
+            track.rotation = 270;
+        }
+        // 16.16 fixed point, before the matrix is applied like the platform reports it
+        track.width = scratch.getInt(matrix + 36) >>> 16;
+        track.height = scratch.getInt(matrix + 40) >>> 16;
+    }
+
+    private static void readMedia(FileChannel channel, ByteBuffer scratch, long start, long end, Track track) throws IOException {
+        Box box = new Box();
+        long position = start;
+        while (box.read(channel, scratch, position, end)) {
+            long next = box.end;
+            if (box.type == fourcc("hdlr")) {
+                scratch.clear().limit(12);
+                if (read(channel, scratch, box.payload) == 12) {
+                    track.video = scratch.getInt(8) == fourcc("vide");
+                }
+            } else if (box.type == fourcc("minf") || box.type == fourcc("stbl")) {
+                // Descend towards stbl/stsd
+                readMedia(channel, scratch, box.payload, box.end, track);
+            } else if (box.type == fourcc("stsd")) {
+                scratch.clear().limit(16);
+                if (read(channel, scratch, box.payload) == 16) {
+                    track.codec = getIsoCodec(scratch.getInt(12));
+                }
+            }
+            position = next;
+        }
+    }
+
+    private static String getIsoCodec(int format) {
+        if (format == fourcc("avc1") || format == fourcc("avc3")) {
+            return "video/avc";
+        } else if (format == fourcc("hvc1") || format == fourcc("hev1")) {
+            return "video/hevc";
+        } else if (format == fourcc("av01")) {
+            return "video/av01";
+        } else if (format == fourcc("vp09")) {
+            return "video/x-vnd.on2.vp9";
+        } else if (format == fourcc("mp4v")) {
+            return "video/mp4v-es";
+        } else if (format == fourcc("s263")) {
+            return "video/3gpp";
+        } else if (format == fourcc("mp4a")) {
+            return "audio/mp4a-latm";
+        } else if (format == fourcc("samr")) {
+            return "audio/3gpp";
+        } else if (format == fourcc("sawb")) {
+            return "audio/amr-wb";
+        } else if (format == fourcc("Opus")) {
+            return "audio/opus";
+        }
+        return null;
+    }
+
+    private static boolean parseHeif(FileChannel channel, JSObject obj) throws IOException, JSONException {
+        ByteBuffer scratch = ByteBuffer.allocate(96);
+        Box box = new Box();
+        long size = channel.size();
+        long position = 0;
+        while (box.read(channel, scratch, position, size)) {
+            if (box.type == fourcc("meta")) {
+                // meta is a full box, its children start after the version and flags
+                long[] dimensions = new long[2];
+                findImageSpatialExtents(channel, scratch, box.payload + 4, box.end, dimensions);
+                if (dimensions[0] == 0) {
+                    return false;
+                }
+                obj.put("width", dimensions[0]);
+                obj.put("height", dimensions[1]);
+                return true;
+            }
+            position = box.end;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the largest ispe property, which belongs to the primary image
+     * rather than to its thumbnails or grid tiles.
+     */
+    private static void findImageSpatialExtents(FileChannel channel, ByteBuffer scratch, long start, long end, long[] dimensions)
+        throws IOException {
+        Box box = new Box();
+        long position = start;
+        while (box.read(channel, scratch, position, end)) {
+            long next = box.end;
+            if (box.type == fourcc("iprp") || box.type == fourcc("ipco")) {
+                findImageSpatialExtents(channel, scratch, box.payload, box.end, dimensions);
+            } else if (box.type == fourcc("ispe")) {
+                scratch.clear().limit(12);
+                if (read(channel, scratch, box.payload) == 12) {
+                    long width = scratch.getInt(4) & 0xFFFFFFFFL;
+                    long height = scratch.getInt(8) & 0xFFFFFFFFL;
+                    if (width * height > dimensions[0] * dimensions[1]) {
+                        dimensions[0] = width;
+                        dimensions[1] = height;
+                    }
+                }
+            }
+            position = next;
+        }
+    }
+
+    // Matroska and WebM
+
+    private static final int EBML_SEGMENT = 0x18538067;
+    private static final int EBML_INFO = 0x1549A966;
+    private static final int EBML_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int EBML_DURATION = 0x4489;
+    private static final int EBML_TRACKS = 0x1654AE6B;
+    private static final int EBML_TRACK_ENTRY = 0xAE;
+    private static final int EBML_CODEC_ID = 0x86;
+    private static final int EBML_VIDEO = 0xE0;
+    private static final int EBML_PIXEL_WIDTH = 0xB0;
+    private static final int EBML_PIXEL_HEIGHT = 0xBA;
+    private static final int EBML_CLUSTER = 0x1F43B675;
+    private static final long EBML_UNKNOWN_SIZE = -1;
+
+    private static class Element {
+
+        int id;
+        long payload;
+        long size;
+
+        /**
+         * Reads the element header at the given position.
+         *
+         * @return false when no valid element header fits before the limit
+         */
+        boolean read(FileChannel channel, ByteBuffer scratch, long position, long limit) throws IOException {
+            scratch.clear().limit(12);
+            int length = FormatDetector.read(channel, scratch, position);
+            if (length < 2) {
+                return false;
+            }
+            int first = scratch.get(0) & 0xFF;
+            int idLength = Integer.numberOfLeadingZeros(first) - 23;
+            if (first == 0 || idLength > 4 || idLength >= length) {
+                return false;
+            }
+            id = 0;
+            for (int i = 0; i < idLength; i++) {
+                id = (id << 8) | (scratch.get(i) & 0xFF);
+            }
+            int sizeFirst = scratch.get(idLength) & 0xFF;
+            int sizeLength = Integer.numberOfLeadingZeros(sizeFirst) - 23;
+            if (sizeFirst == 0 || idLength + sizeLength > length) {
+                return false;
+            }
+            long value = sizeFirst & (0xFF >> sizeLength);
+            boolean unknown = value == (0xFF >> sizeLength);
+            for (int i = 1; i < sizeLength; i++) {
+                int b = scratch.get(idLength + i) & 0xFF;
+                value = (value << 8) | b;
+                unknown &= b == 0xFF;
+            }
+            payload = position + idLength + sizeLength;
+            size = unknown ? EBML_UNKNOWN_SIZE : value;
+            return payload <= limit;
+        }
+
+        long end(long limit) {
+            return size == EBML_UNKNOWN_SIZE ? limit : Math.min(limit, payload + size);
+        }
+    }
+
+    private static boolean parseMatroska(FileChannel channel, JSObject obj) throws IOException, JSONException {
+        ByteBuffer scratch = ByteBuffer.allocate(16);
+        Element element = new Element();
+        long size = channel.size();
+        long position = 0;
+        while (position < size && element.read(channel, scratch, position, size)) {
+            if (element.id == EBML_SEGMENT) {
+                return parseSegment(channel, scratch, element.payload, element.end(size), size, obj);
+            }
+            if (element.size == EBML_UNKNOWN_SIZE) {
+                return false;
+            }
+            position = element.end(size);
+        }
+        return false;
+    }
+
+    private static boolean parseSegment(FileChannel channel, ByteBuffer scratch, long start, long end, long fileSize, JSObject obj)
+        throws IOException, JSONException {
+        long timecodeScale = 1000000;
+        double duration = -1;
+        int width = 0;
+        int height = 0;
+        StringBuilder codecs = new StringBuilder();
+
+        Element element = new Element();
+        long position = start;
+        // Info and Tracks precede the clusters, stop at the first cluster
+        while (position < end && element.read(channel, scratch, position, end)) {
+            if (element.id == EBML_CLUSTER || element.size == EBML_UNKNOWN_SIZE) {
+                break;
+            }
+            long elementEnd = element.end(end);
+            if (element.id == EBML_INFO) {
+                Element child = new Element();
+                long childPosition = element.payload;
+                while (childPosition < elementEnd && child.read(channel, scratch, childPosition, elementEnd)) {
+                    if (child.id == EBML_TIMECODE_SCALE) {
+                        timecodeScale = readUnsigned(channel, scratch, child);
+                    } else if (child.id == EBML_DURATION) {
+                        duration = readFloat(channel, scratch, child);
+                    }
+                    childPosition = child.end(elementEnd);
+                }
+            } else if (element.id == EBML_TRACKS) {
+                Element entry = new Element();
+                long entryPosition = element.payload;
+                while (entryPosition < elementEnd && entry.read(channel, scratch, entryPosition, elementEnd)) {
+                    if (entry.id == EBML_TRACK_ENTRY) {
+                        int[] dimensions = new int[2];
+                        String codec = readTrackEntry(channel, scratch, entry.payload, entry.end(elementEnd), dimensions);
+                        if (codec != null) {
+                            if (codecs.length() > 0) {
+                                codecs.append(',');
+                            }
+                            codecs.append(codec);
+                        }
+                        if (width == 0 && dimensions[0] > 0) {
+                            width = dimensions[0];
+                            height = dimensions[1];
+                        }
+                    }
+                    entryPosition = entry.end(elementEnd);
+                }
+            }
+            position = elementEnd;
+        }
+        if (duration < 0) {
+            // Live recordings often leave the duration out, let the platform probe scan the clusters
+            return false;
+        }
+
+        long durationMs = (long) (duration * timecodeScale / 1000000);
+        obj.put("duration", durationMs / 1000);
+        obj.put("bitrate", durationMs > 0 ? fileSize * 8000 / durationMs : 0);
+        obj.put("codecs", codecs.toString());
+        if (width > 0) {
+            obj.put("width", width);
+            obj.put("height", height);
+        }
+        return true;
+    }
+
+    private static String readTrackEntry(FileChannel channel, ByteBuffer scratch, long start, long end, int[] dimensions)
+        throws IOException {
+        String codecId = null;
+        Element element = new Element();
+        long position = start;
+        while (position < end && element.read(channel, scratch, position, end)) {
+            long elementEnd = element.end(end);
+            if (element.id == EBML_CODEC_ID && element.size <= 64) {
+                ByteBuffer value = ByteBuffer.allocate((int) element.size);
+                read(channel, value, element.payload);
+                codecId = new String(value.array(), 0, value.position(), StandardCharsets.US_ASCII).trim();
+            } else if (element.id == EBML_VIDEO) {
+                Element child = new Element();
+                long childPosition = element.payload;
+                while (childPosition < elementEnd && child.read(channel, scratch, childPosition, elementEnd)) {
+                    if (child.id == EBML_PIXEL_WIDTH) {
+                        dimensions[0] = (int) readUnsigned(channel, scratch, child);
+                    } else if (child.id == EBML_PIXEL_HEIGHT) {
+                        dimensions[1] = (int) readUnsigned(channel, scratch, child);
+                    }
+                    childPosition = child.end(elementEnd);
+                }
+            }
+            position = elementEnd;
+        }
+        return getMatroskaCodec(codecId);
+    }
+
+    private static String getMatroskaCodec(String codecId) {
+        if (codecId == null) {
+            return null;
+        }
+        switch (codecId) {
+            case "V_VP8":
+                return "video/x-vnd.on2.vp8";
+            case "V_VP9":
+                return "video/x-vnd.on2.vp9";
+            case "V_AV1":
+                return "video/av01";
+            case "V_MPEG4/ISO/AVC":
+                return "video/avc";
+            case "V_MPEGH/ISO/HEVC":
+                return "video/hevc";
+            case "A_OPUS":
+                return "audio/opus";
+            case "A_VORBIS":
+                return "audio/vorbis";
+            default:
+                return codecId.startsWith("A_AAC") ? "audio/mp4a-latm" : null;
+        }
+    }
+
+    private static long readUnsigned(FileChannel channel, ByteBuffer scratch, Element element) throws IOException {
+        if (element.size <= 0 || element.size > 8) {
+            return 0;
+        }
+        scratch.clear().limit((int) element.size);
+        int length = read(channel, scratch, element.payload);
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (scratch.get(i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static double readFloat(FileChannel channel, ByteBuffer scratch, Element element) throws IOException {
+        scratch.clear().limit((int) Math.max(0, Math.min(8, element.size)));
+        int length = read(channel, scratch, element.payload);
+        if (length == 4) {
+            return scratch.getFloat(0);
+        }
+        if (length == 8) {
+            return scratch.getDouble(0);
+        }
+        return -1;
+    }
+
+    // ADTS
+
+    /**
+     * Returns the size of the ID3v2 tag at the start of the header, or 0 if
+     * there is none.
+     */
+    private static long getId3Length(ByteBuffer header, int length) {
+        if (length < ID3_HEADER_SIZE || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return 0;
+        }
+        long size = 0;
+        for (int i = 6; i < ID3_HEADER_SIZE; i++) {
+            int b = header.get(i) & 0xFF;
+            if (b >= 0x80) {
+                // Not a synchsafe integer
+                return 0;
+            }
+            size = (size << 7) | b;
+        }
+        boolean footer = (header.get(5) & 0x10) != 0;
+        return ID3_HEADER_SIZE + size + (footer ? ID3_HEADER_SIZE : 0);
+    }
+
+    /**
+     * Walks the first ADTS frame headers with block reads. The stream has no
+     * index: a stream ending within the scan gets its exact duration, a
+     * longer one is extrapolated from the average frame size so far.
+     *
+     * @param start the offset of the first frame
+     */
+    private static boolean parseAdts(FileChannel channel, long start, JSObject obj) throws IOException, JSONException {
+        long size = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(ADTS_BLOCK_SIZE);
+        byte[] bytes = block.array();
+        long blockStart = start;
+        int blockLength = 0;
+        long position = start;
+        long samples = 0;
+        int sampleRate = 0;
+        int frames = 0;
+        boolean complete = true;
+        while (position + ADTS_HEADER_SIZE <= size) {
+            if (frames == ADTS_SCAN_FRAMES) {
+                complete = false;
+                break;
+            }
+            if (position + ADTS_HEADER_SIZE > blockStart + blockLength) {
+                block.clear();
+                blockStart = position;
+                blockLength = read(channel, block, position);
+                if (blockLength < ADTS_HEADER_SIZE) {
+                    break;
+                }
+            }
+            int offset = (int) (position - blockStart);
+            if ((bytes[offset] & 0xFF) != 0xFF || (bytes[offset + 1] & 0xF6) != 0xF0) {
+                // Trailing tag or garbage
+                break;
+            }
+            int rateIndex = (bytes[offset + 2] >> 2) & 0x0F;
+            if (rateIndex >= ADTS_SAMPLE_RATES.length) {
+                return false;
+            }
+            sampleRate = ADTS_SAMPLE_RATES[rateIndex];
+            int frameLength =
+                ((bytes[offset + 3] & 0x03) << 11) | ((bytes[offset + 4] & 0xFF) << 3) | ((bytes[offset + 5] & 0xE0) >> 5);
+            if (frameLength < ADTS_HEADER_SIZE) {
+                break;
+            }
+            samples += 1024L * ((bytes[offset + 6] & 0x03) + 1);
+            frames++;
+            position += frameLength;
+        }
+        if (sampleRate == 0) {
+            return false;
+        }
+
+        long audioBytes = size - start;
+        if (!complete) {
+            samples = (long) ((double) samples * audioBytes / (position - start));
+        }
+        long durationMs = samples * 1000 / sampleRate;
+        obj.put("duration", durationMs / 1000);
+        obj.put("bitrate", durationMs > 0 ? audioBytes * 8000 / durationMs : 0);
+        obj.put("codecs", "audio/mp4a-latm");
+        return true;
+    }
+
+    // WAV
+
+    private static boolean parseWav(FileChannel channel, JSObject obj) throws IOException, JSONException {
+        ByteBuffer scratch = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+        long position = 12;
+        int format = 0;
+        long byteRate = 0;
+        while (position + 8 <= size) {
+            scratch.clear().limit(16);
+            if (read(channel, scratch, position) < 8) {
+                break;
+            }
+            int chunk = scratch.order(ByteOrder.BIG_ENDIAN).getInt(0);
+            long chunkSize = scratch.order(ByteOrder.LITTLE_ENDIAN).getInt(4) & 0xFFFFFFFFL;
+            if (chunk == fourcc("fmt ")) {
+                scratch.clear().limit(12);
+                if (read(channel, scratch, position + 8) < 12) {
+                    return false;
+                }
+                format = scratch.getShort(0) & 0xFFFF;
+                byteRate = scratch.getInt(8) & 0xFFFFFFFFL;
+            } else if (chunk == fourcc("data")) {
+                if (byteRate == 0) {
+                    return false;
+                }
+                long dataSize = Math.min(chunkSize, size - position - 8);
+                long durationMs = dataSize * 1000 / byteRate;
+                obj.put("duration", durationMs / 1000);
+                obj.put("bitrate", byteRate * 8);
+                obj.put("codecs", format == 6 ? "audio/g711-alaw" : format == 7 ? "audio/g711-mlaw" : "audio/raw");
+                return true;
+            }
+            // Chunks are padded to an even size
+            position += 8 + chunkSize + (chunkSize & 1);
+        }
+        return false;
+    }
+
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static int fourcc(String code) {
+        return (code.charAt(0) << 24) | (code.charAt(1) << 16) | (code.charAt(2) << 8) | code.charAt(3);
+    }
+}
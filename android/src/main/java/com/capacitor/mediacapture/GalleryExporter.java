@@ -0,0 +1,351 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes captured files to the shared media collections.
+ *
+ * An export runs in three phases: a MediaStore row is inserted for every
+ * file up front, pending on Android 10+ so the gallery does not show it
+ * half written; the bytes are then copied with FileChannel transfers by a
+ * bounded number of workers; finally all pending flags are cleared, and
+ * the rows of failed copies deleted, in one batch. A failed file never
+ * fails the export, it is reported in its own result.
+ */
+public class GalleryExporter {
+
+    private static final String TAG = "MediaCapture";
+
+    public interface Listener {
+        void onProgress(JSObject progress);
+
+        void onComplete(JSArray results);
+    }
+
+    public static class Item {
+
+        final String fullPath;
+        final File file;
+        final String mimeType;
+        Uri uri;
+        String error;
+
+        /**
+         * @param fullPath the path as given by the app, echoed in the result
+         * @param file the file to export, or null if the path is invalid
+         * @param mimeType the MIME type of the file, or null if unknown
+         */
+        public Item(String fullPath, File file, String mimeType) {
+            this.fullPath = fullPath;
+            this.file = file;
+            this.mimeType = mimeType;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Executor executor;
+    private final int concurrency;
+
+    /**
+     * @param resolver the content resolver of the app
+     * @param executor the executor running the export phases
+     * @param concurrency the maximum number of files copied at once
+     */
+    public GalleryExporter(ContentResolver resolver, Executor executor, int concurrency) {
+        this.resolver = resolver;
+        this.executor = executor;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Exports the files in the background and reports the per-file results
+     * to the listener.
+     *
+     * @param exportId the ID included in the progress events
+     * @param correlationId the caller's ID echoed in the progress events, or null
+     * @param items the files to export
+     * @param album the album directory to create the files in, or null
+     * @param listener the listener notified of progress and completion
+     */
+    public void export(String exportId, String correlationId, List<Item> items, String album, Listener listener) {
+        executor.execute(() -> {
+            List<Item> pending = new ArrayList<>();
+            long totalBytes = 0;
+            for (Item item : items) {
+                insertPending(item, album);
+                if (item.uri != null) {
+                    pending.add(item);
+                    totalBytes += item.file.length();
+                }
+            }
+            if (pending.isEmpty()) {
+                listener.onComplete(toResults(items));
+                return;
+            }
+            copyAll(exportId, correlationId, items, pending, totalBytes, listener);
+        });
+    }
+
+    private void copyAll(
+        String exportId,
+        String correlationId,
+        List<Item> items,
+        List<Item> pending,
+        long totalBytes,
+        Listener listener
+    ) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        int workers = Math.min(concurrency, pending.size());
+        AtomicInteger running = new AtomicInteger(workers);
+
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < pending.size()) {
+                Item item = pending.get(index);
+                try {
+                    bytes.addAndGet(copy(item));
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error exporting " + item.fullPath, e);
+                    item.error = e.getMessage() != null ? e.getMessage() : "Error exporting file";
+                }
+
+                JSObject progress = new JSObject();
+                progress.put("exportId", exportId);
+                progress.put("correlationId", correlationId);
+                progress.put("fullPath", item.fullPath);
+                progress.put("completed", completed.incrementAndGet());
+                progress.put("total", pending.size());
+                progress.put("bytes", bytes.get());
+                progress.put("totalBytes", totalBytes);
+                listener.onProgress(progress);
+            }
+            // The last worker to run out of files publishes the batch
+            if (running.decrementAndGet() == 0) {
+                commit(pending);
+                listener.onComplete(toResults(items));
+            }
+        };
+        for (int i = 0; i < workers; i++) {
+            executor.execute(worker);
+        }
+    }
+
+    private void insertPending(Item item, String album) {
+        if (item.file == null) {
+            item.error = "File path is required";
+            return;
+        }
+        if (!item.file.isFile()) {
+            item.error = "File not found";
+            return;
+        }
+        Uri collection = getCollection(item.mimeType);
+        if (collection == null) {
+            item.error = "Unsupported media type: " + item.mimeType;
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, item.file.getName());
+        values.put(MediaStore.MediaColumns.MIME_TYPE, item.mimeType);
+        String directory = getDirectory(item.mimeType);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.MediaColumns.RELATIVE_PATH, album != null ? directory + "/" + album : directory);
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+        } else {
+            // Before scoped storage the provider needs the target file path
+            File parent = Environment.getExternalStoragePublicDirectory(directory);
+            if (album != null) {
+                parent = new File(parent, album);
+            }
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                item.error = "Unable to create " + parent;
+                return;
+            }
+            values.put(MediaStore.MediaColumns.DATA, uniqueFile(parent, item.file.getName()).getAbsolutePath());
+        }
+
+        try {
+            item.uri = resolver.insert(collection, values);
+            if (item.uri == null) {
+                item.error = "Unable to create media entry";
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error inserting media entry for " + item.fullPath, e);
+            item.error = e.getMessage() != null ? e.getMessage() : "Unable to create media entry";
+        }
+    }
+
+    private long copy(Item item) throws IOException {
+        try (FileInputStream input = new FileInputStream(item.file); FileOutputStream output = openOutput(item.uri)) {
+            long copied = FileHelper.transfer(input.getChannel(), output.getChannel());
+            output.getFD().sync();
+            long length = item.file.length();
+            if (copied != length) {
+                // The file changed while it was copied
+                throw new IOException("Copied " + copied + " of " + length + " bytes");
+            }
+            return copied;
+        }
+    }
+
+    private FileOutputStream openOutput(Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "w");
+        if (descriptor == null) {
+            throw new FileNotFoundException("Unable to open " + uri);
+        }
+        return new ParcelFileDescriptor.AutoCloseOutputStream(descriptor);
+    }
+
+    /**
+     * Clears the pending flag of the copied files and deletes the rows of
+     * the failed ones in a single provider transaction, falling back to one
+     * call per row if the batch is refused.
+     */
+    private void commit(List<Item> pending) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Item item : pending) {
+            ContentProviderOperation operation = getCommitOperation(item);
+            if (operation != null) {
+                operations.add(operation);
+            }
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        try {
+            resolver.applyBatch(MediaStore.AUTHORITY, operations);
+            return;
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            Log.w(TAG, "Batch commit failed, committing files one by one", e);
+        }
+        for (Item item : pending) {
+            try {
+                if (item.error != null) {
+                    resolver.delete(item.uri, null, null);
+                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    ContentValues values = new ContentValues();
+                    values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+                    resolver.update(item.uri, values, null, null);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error committing " + item.fullPath, e);
+                if (item.error == null) {
+                    item.error = e.getMessage() != null ? e.getMessage() : "Error committing file";
+                }
+            }
+        }
+    }
+
+    private static ContentProviderOperation getCommitOperation(Item item) {
+        if (item.error != null) {
+            return ContentProviderOperation.newDelete(item.uri).build();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return ContentProviderOperation.newUpdate(item.uri).withValue(MediaStore.MediaColumns.IS_PENDING, 0).build();
+        }
+        return null;
+    }
+
+    private static JSArray toResults(List<Item> items) {
+        JSArray results = new JSArray();
+        for (Item item : items) {
+            JSObject result = new JSObject();
+            result.put("fullPath", item.fullPath);
+            if (item.error != null) {
+                result.put("error", item.error);
+            } else {
+                result.put("uri", item.uri.toString());
+            }
+            results.put(result);
+        }
+        return results;
+    }
+
+    private static Uri getCollection(String mimeType) {
+        if (mimeType == null) {
+            return null;
+        }
+        boolean scoped = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        if (mimeType.startsWith("image/")) {
+            return scoped
+                ? MediaStore.Images.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY)
+                : MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+        }
+        if (mimeType.startsWith("video/")) {
+            return scoped
+                ? MediaStore.Video.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY)
+                : MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
+        }
+        if (mimeType.startsWith("audio/")) {
+            return scoped
+                ? MediaStore.Audio.Media.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY)
+                : MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+        }
+        return null;
+    }
+
+    private static String getDirectory(String mimeType) {
+        if (mimeType.startsWith("video/")) {
+            return Environment.DIRECTORY_MOVIES;
+        }
+        if (mimeType.startsWith("audio/")) {
+            return Environment.DIRECTORY_MUSIC;
+        }
+        return Environment.DIRECTORY_PICTURES;
+    }
+
+    private static File uniqueFile(File directory, String name) {
+        File file = new File(directory, name);
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; file.exists(); i++) {
+            file = new File(directory, base + "_" + i + extension);
+        }
+        return file;
+    }
+}
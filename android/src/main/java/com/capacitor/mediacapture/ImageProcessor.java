@@ -0,0 +1,218 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Downscales and recompresses captured JPEGs.
+ *
+ * Images are decoded with the largest power-of-two inSampleSize that keeps
+ * them at least as large as the target, so peak memory is bounded by the
+ * target size rather than the sensor resolution. The decoded bitmap is kept
+ * and passed as inBitmap to the next image of a multi-image session.
+ * Instances are not thread safe.
+ */
+public class ImageProcessor {
+
+    private static final String TAG = "MediaCapture";
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int quality;
+    private Bitmap reusable;
+
+    /**
+     * @param maxWidth the maximum width of the stored image, or 0 for no limit
+     * @param maxHeight the maximum height of the stored image, or 0 for no limit
+     * @param quality the JPEG quality in range [0-100]
+     */
+    public ImageProcessor(int maxWidth, int maxHeight, int quality) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.quality = Math.max(0, Math.min(100, quality));
+    }
+
+    /**
+     * Returns whether the options ask for anything but the original file.
+     */
+    public boolean isEnabled() {
+        return maxWidth > 0 || maxHeight > 0 || quality < 100;
+    }
+
+    /**
+     * Reads the image dimensions without decoding any pixels.
+     */
+    public static BitmapFactory.Options decodeBounds(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        return options;
+    }
+
+    /**
+     * Computes the largest power-of-two sample size that keeps the decoded
+     * image at least as large as the requested size.
+     */
+    public static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Rewrites the image in place, resized to fit the maximum size and
+     * encoded at the configured quality. The EXIF orientation is preserved.
+     *
+     * @param file the JPEG file to process
+     * @return whether the file was rewritten, false if it already fits
+     * @throws IOException if the image cannot be decoded or written
+     */
+    public boolean process(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        BitmapFactory.Options bounds = decodeBounds(path);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return false;
+        }
+
+        ExifInterface exif = new ExifInterface(path);
+        String orientation = exif.getAttribute(ExifInterface.TAG_ORIENTATION);
+        int rotation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        boolean transposed =
+            rotation == ExifInterface.ORIENTATION_ROTATE_90 ||
+            rotation == ExifInterface.ORIENTATION_ROTATE_270 ||
+            rotation == ExifInterface.ORIENTATION_TRANSPOSE ||
+            rotation == ExifInterface.ORIENTATION_TRANSVERSE;
+
+        // The limits apply to the displayed image, the pixels are stored unrotated
+        int limitWidth = transposed ? maxHeight : maxWidth;
+        int limitHeight = transposed ? maxWidth : maxHeight;
+        float scale = 1f;
+        if (limitWidth > 0) {
+            scale = Math.min(scale, (float) limitWidth / bounds.outWidth);
+        }
+        if (limitHeight > 0) {
+            scale = Math.min(scale, (float) limitHeight / bounds.outHeight);
+        }
+        if (scale >= 1f && quality >= 100) {
+            return false;
+        }
+
+        int targetWidth = Math.max(1, Math.round(bounds.outWidth * scale));
+        int targetHeight = Math.max(1, Math.round(bounds.outHeight * scale));
+        int sampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+        Bitmap decoded = decode(path, bounds, sampleSize);
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + path);
+        }
+
+        Bitmap output = decoded;
+        if (decoded.getWidth() > targetWidth || decoded.getHeight() > targetHeight) {
+            output = Bitmap.createScaledBitmap(decoded, targetWidth, targetHeight, true);
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                if (!output.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                    throw new IOException("Unable to encode " + path);
+                }
+                out.getFD().sync();
+            }
+            if (orientation != null) {
+                ExifInterface processed = new ExifInterface(temp.getAbsolutePath());
+                processed.setAttribute(ExifInterface.TAG_ORIENTATION, orientation);
+                processed.saveAttributes();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to replace " + path);
+            }
+        } finally {
+            temp.delete();
+            if (output != decoded) {
+                output.recycle();
+            }
+            reusable = decoded;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the bitmap kept for reuse.
+     */
+    public void recycle() {
+        if (reusable != null) {
+            reusable.recycle();
+            reusable = null;
+        }
+    }
+
+    private Bitmap decode(String path, BitmapFactory.Options bounds, int sampleSize) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+        long required = (long) ceilDiv(bounds.outWidth, sampleSize) * ceilDiv(bounds.outHeight, sampleSize) * BYTES_PER_PIXEL;
+        if (reusable != null && !reusable.isRecycled() && reusable.getAllocationByteCount() >= required) {
+            options.inBitmap = reusable;
+        } else {
+            recycle();
+        }
+
+        Bitmap decoded = null;
+        try {
+            decoded = decodeStream(path, options);
+        } catch (IllegalArgumentException e) {
+            Log.d(TAG, "Unable to reuse bitmap", e);
+        }
+        if (decoded == null && options.inBitmap != null) {
+            // The decoder could not reuse the bitmap, decode into a new one
+            recycle();
+            options.inBitmap = null;
+            decoded = decodeStream(path, options);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes from our own stream: unlike decodeFile, decodeStream lets the
+     * IllegalArgumentException of a rejected inBitmap through instead of
+     * returning null.
+     */
+    private static Bitmap decodeStream(String path, BitmapFactory.Options options) throws IOException {
+        try (FileInputStream input = new FileInputStream(path)) {
+            return BitmapFactory.decodeStream(input, null, options);
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,560 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import com.getcapacitor.JSObject;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads and removes EXIF tags of a JPEG in one pass over its APP1 segment.
+ *
+ * Only the segment headers before the EXIF segment and the segment itself
+ * (at most 64 KB) are read, whatever the size of the image. Tags are
+ * removed by shifting the remaining IFD entries and zeroing the freed
+ * entry and its out-of-line value, so the segment keeps its length and is
+ * written back over itself; the compressed image data is never read,
+ * decoded or rewritten. Stripping the GPS position also blanks the GPS
+ * properties of the XMP packet, which photo apps fill in as well, with
+ * spaces in place.
+ */
+public class JpegExif {
+
+    public static final String GPS = "gps";
+    public static final String MAKE = "make";
+    public static final String MODEL = "model";
+    public static final String SOFTWARE = "software";
+    public static final String DATE_TIME = "dateTime";
+    public static final String DATE_TIME_ORIGINAL = "dateTimeOriginal";
+    public static final String DATE_TIME_DIGITIZED = "dateTimeDigitized";
+
+    private static final Set<String> TAGS = new HashSet<>(
+        Arrays.asList(GPS, MAKE, MODEL, SOFTWARE, DATE_TIME, DATE_TIME_ORIGINAL, DATE_TIME_DIGITIZED)
+    );
+
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+    private static final byte[] XMP_HEADER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+    private static final String XMP_EXIF_NAMESPACE = "http://ns.adobe.com/exif/1.0/";
+
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_SOFTWARE = 0x0131;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_GPS_IFD = 0x8825;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_DATE_TIME_DIGITIZED = 0x9004;
+    private static final int TAG_GPS_LATITUDE_REF = 1;
+    private static final int TAG_GPS_LATITUDE = 2;
+    private static final int TAG_GPS_LONGITUDE_REF = 3;
+    private static final int TAG_GPS_LONGITUDE = 4;
+    private static final int TAG_GPS_ALTITUDE_REF = 5;
+    private static final int TAG_GPS_ALTITUDE = 6;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+    // Value sizes of the TIFF field types 1 to 12
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8 };
+
+    private final byte[] data;
+    private final int tiff;
+    private final boolean littleEndian;
+    private boolean modified = false;
+
+    private JpegExif(byte[] data, int tiff, boolean littleEndian) {
+        this.data = data;
+        this.tiff = tiff;
+        this.littleEndian = littleEndian;
+    }
+
+    public static boolean isSupportedTag(String tag) {
+        return tag != null && TAGS.contains(tag);
+    }
+
+    /**
+     * Reads the EXIF fields of a JPEG and removes the given tags from the file.
+     *
+     * @param file the JPEG file
+     * @param read whether to return the fields
+     * @param strip the tags to remove, see {@link #isSupportedTag}
+     * @return the fields as found before removing any tag, or null if not
+     *     requested or the file has no EXIF data
+     * @throws IOException if the file cannot be read or written
+     */
+    public static JSObject process(File file, boolean read, Set<String> strip) throws IOException {
+        if (strip == null) {
+            strip = Collections.emptySet();
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, strip.isEmpty() ? "r" : "rw")) {
+            JSObject fields = null;
+            boolean modified = false;
+            long offset = findSegment(input, EXIF_HEADER);
+            byte[] segment = readSegment(input, offset);
+            JpegExif exif = segment != null ? parse(segment) : null;
+            if (exif != null) {
+                fields = read ? exif.readFields() : null;
+                exif.strip(strip);
+                if (exif.modified) {
+                    writeSegment(input, offset, segment);
+                    modified = true;
+                }
+            }
+            if (strip.contains(GPS)) {
+                long xmpOffset = findSegment(input, XMP_HEADER);
+                byte[] xmp = readSegment(input, xmpOffset);
+                if (xmp != null && stripXmpGps(xmp)) {
+                    writeSegment(input, xmpOffset, xmp);
+                    modified = true;
+                }
+            }
+            if (modified) {
+                input.getFD().sync();
+            }
+            return fields;
+        }
+    }
+
+    /**
+     * Walks the segment headers up to the APP1 segment starting with the
+     * given header.
+     *
+     * @return the position of the segment's length field, or -1 if there is none
+     */
+    private static long findSegment(RandomAccessFile input, byte[] signature) throws IOException {
+        input.seek(0);
+        if (input.length() < 4 || input.readUnsignedShort() != 0xFFD8) {
+            return -1;
+        }
+        byte[] header = new byte[signature.length];
+        try {
+            while (input.getFilePointer() + 4 <= input.length()) {
+                if (input.readUnsignedByte() != 0xFF) {
+                    return -1;
+                }
+                int marker = input.readUnsignedByte();
+                while (marker == 0xFF) {
+                    marker = input.readUnsignedByte();
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return -1;
+                }
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                    // Standalone markers have no length
+                    continue;
+                }
+                long position = input.getFilePointer();
+                int length = input.readUnsignedShort();
+                if (length < 2) {
+                    return -1;
+                }
+                if (marker == MARKER_APP1 && length >= 2 + signature.length) {
+                    input.readFully(header);
+                    if (Arrays.equals(header, signature)) {
+                        return position;
+                    }
+                }
+                input.seek(position + length);
+            }
+        } catch (EOFException e) {
+            // Truncated within the headers
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the segment whose length field is at the given position.
+     *
+     * @return the segment after the length field, or null if there is none or it is truncated
+     */
+    private static byte[] readSegment(RandomAccessFile input, long offset) throws IOException {
+        if (offset < 0) {
+            return null;
+        }
+        input.seek(offset);
+        int length = input.readUnsignedShort() - 2;
+        if (offset + 2 + length > input.length()) {
+            return null;
+        }
+        byte[] segment = new byte[length];
+        input.readFully(segment);
+        return segment;
+    }
+
+    private static void writeSegment(RandomAccessFile input, long offset, byte[] segment) throws IOException {
+        input.seek(offset + 2);
+        input.write(segment);
+    }
+
+    private static JpegExif parse(byte[] segment) {
+        int tiff = EXIF_HEADER.length;
+        if (segment.length < tiff + 8) {
+            return null;
+        }
+        boolean littleEndian;
+        if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (segment[tiff] == 'M' && segment[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return null;
+        }
+        return new JpegExif(segment, tiff, littleEndian);
+    }
+
+    private JSObject readFields() {
+        JSObject fields = new JSObject();
+        int ifd0 = getIfd0();
+        putString(fields, "make", ifd0, TAG_MAKE);
+        putString(fields, "model", ifd0, TAG_MODEL);
+        putString(fields, "software", ifd0, TAG_SOFTWARE);
+        putString(fields, "dateTime", ifd0, TAG_DATE_TIME);
+        int orientation = findEntry(ifd0, TAG_ORIENTATION);
+        if (orientation >= 0) {
+            fields.put("orientation", readInteger(orientation));
+        }
+
+        int exifIfd = getSubIfd(ifd0, TAG_EXIF_IFD);
+        putString(fields, "dateTimeOriginal", exifIfd, TAG_DATE_TIME_ORIGINAL);
+        putString(fields, "dateTimeDigitized", exifIfd, TAG_DATE_TIME_DIGITIZED);
+
+        int gpsIfd = getSubIfd(ifd0, TAG_GPS_IFD);
+        double latitude = readCoordinate(gpsIfd, TAG_GPS_LATITUDE, TAG_GPS_LATITUDE_REF, 'S');
+        double longitude = readCoordinate(gpsIfd, TAG_GPS_LONGITUDE, TAG_GPS_LONGITUDE_REF, 'W');
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            fields.put("latitude", latitude);
+            fields.put("longitude", longitude);
+        }
+        int altitude = findEntry(gpsIfd, TAG_GPS_ALTITUDE);
+        if (altitude >= 0) {
+            double value = readRational(getValueOffset(altitude, 8));
+            int reference = findEntry(gpsIfd, TAG_GPS_ALTITUDE_REF);
+            // A reference of 1 means below sea level
+            if (reference >= 0 && (data[reference + 8] & 0xFF) == 1) {
+                value = -value;
+            }
+            if (!Double.isNaN(value)) {
+                fields.put("altitude", value);
+            }
+        }
+        return fields;
+    }
+
+    private void strip(Set<String> tags) {
+        int ifd0 = getIfd0();
+        int exifIfd = getSubIfd(ifd0, TAG_EXIF_IFD);
+        if (tags.contains(MAKE)) {
+            removeTag(ifd0, TAG_MAKE);
+        }
+        if (tags.contains(MODEL)) {
+            removeTag(ifd0, TAG_MODEL);
+        }
+        if (tags.contains(SOFTWARE)) {
+            removeTag(ifd0, TAG_SOFTWARE);
+        }
+        if (tags.contains(DATE_TIME)) {
+            removeTag(ifd0, TAG_DATE_TIME);
+        }
+        if (tags.contains(DATE_TIME_ORIGINAL)) {
+            removeTag(exifIfd, TAG_DATE_TIME_ORIGINAL);
+        }
+        if (tags.contains(DATE_TIME_DIGITIZED)) {
+            removeTag(exifIfd, TAG_DATE_TIME_DIGITIZED);
+        }
+        if (tags.contains(GPS)) {
+            int gpsIfd = getSubIfd(ifd0, TAG_GPS_IFD);
+            if (gpsIfd >= 0) {
+                // Wipe the whole GPS directory, not just the pointer to it
+                int count = getEntryCount(gpsIfd);
+                for (int i = 0; i < count; i++) {
+                    clearValue(gpsIfd + 2 + 12 * i);
+                }
+                Arrays.fill(data, gpsIfd, gpsIfd + 2 + 12 * count + 4, (byte) 0);
+                modified = true;
+            }
+            removeTag(ifd0, TAG_GPS_IFD);
+        }
+    }
+
+    /**
+     * Blanks the values of the GPS properties in an XMP packet with spaces,
+     * in attribute as well as in element form, so the packet keeps its
+     * length and stays well-formed.
+     *
+     * @return whether any property was blanked
+     */
+    private static boolean stripXmpGps(byte[] segment) {
+        // A single byte charset keeps string and segment offsets the same
+        String xmp = new String(segment, StandardCharsets.ISO_8859_1);
+        String property = getXmpPrefix(xmp, XMP_EXIF_NAMESPACE, "exif") + ":GPS";
+        boolean modified = false;
+        int position = xmp.indexOf(property, XMP_HEADER.length);
+        while (position > 0) {
+            int nameEnd = position + property.length();
+            while (nameEnd < xmp.length() && isXmlNameChar(xmp.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            char before = xmp.charAt(position - 1);
+            int next = nameEnd;
+            if (before == '<') {
+                // <exif:GPSLatitude>37,46.2N</exif:GPSLatitude>
+                int open = xmp.indexOf('>', nameEnd);
+                if (open < 0) {
+                    break;
+                }
+                next = open;
+                if (xmp.charAt(open - 1) != '/') {
+                    int close = xmp.indexOf("</" + xmp.substring(position, nameEnd), open);
+                    if (close < 0) {
+                        break;
+                    }
+                    if (close > open + 1) {
+                        Arrays.fill(segment, open + 1, close, (byte) ' ');
+                        modified = true;
+                    }
+                    next = close;
+                }
+            } else if (Character.isWhitespace(before)) {
+                // exif:GPSLatitude="37,46.2N"
+                int equals = skipWhitespace(xmp, nameEnd);
+                int quote = equals < xmp.length() && xmp.charAt(equals) == '=' ? skipWhitespace(xmp, equals + 1) : -1;
+                if (quote >= 0 && quote < xmp.length() && (xmp.charAt(quote) == '"' || xmp.charAt(quote) == '\'')) {
+                    int end = xmp.indexOf(xmp.charAt(quote), quote + 1);
+                    if (end < 0) {
+                        break;
+                    }
+                    if (end > quote + 1) {
+                        Arrays.fill(segment, quote + 1, end, (byte) ' ');
+                        modified = true;
+                    }
+                    next = end;
+                }
+            }
+            position = xmp.indexOf(property, next);
+        }
+        return modified;
+    }
+
+    /**
+     * Returns the prefix the packet declares for a namespace, or the fallback.
+     */
+    private static String getXmpPrefix(String xmp, String namespace, String fallback) {
+        int declaration = xmp.indexOf("xmlns:");
+        while (declaration >= 0) {
+            int nameStart = declaration + 6;
+            int nameEnd = nameStart;
+            while (nameEnd < xmp.length() && isXmlNameChar(xmp.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            int equals = skipWhitespace(xmp, nameEnd);
+            int quote = equals < xmp.length() && xmp.charAt(equals) == '=' ? skipWhitespace(xmp, equals + 1) : xmp.length();
+            int valueEnd = quote + 1 + namespace.length();
+            if (valueEnd < xmp.length() && xmp.startsWith(namespace, quote + 1) && xmp.charAt(valueEnd) == xmp.charAt(quote)) {
+                return xmp.substring(nameStart, nameEnd);
+            }
+            declaration = xmp.indexOf("xmlns:", nameEnd);
+        }
+        return fallback;
+    }
+
+    private static boolean isXmlNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+    }
+
+    private static int skipWhitespace(String value, int position) {
+        while (position < value.length() && Character.isWhitespace(value.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private int getIfd0() {
+        return toIfd(readInt(tiff + 4));
+    }
+
+    private int getSubIfd(int ifd, int tag) {
+        int entry = findEntry(ifd, tag);
+        return entry >= 0 ? toIfd(readInt(entry + 8)) : -1;
+    }
+
+    /**
+     * Converts an IFD offset into a position in the segment, or -1 if the
+     * directory does not fit.
+     */
+    private int toIfd(long offset) {
+        if (offset < 8 || tiff + offset + 2 > data.length) {
+            return -1;
+        }
+        int ifd = (int) (tiff + offset);
+        return ifd + 2 + 12L * readShort(ifd) + 4 <= data.length ? ifd : -1;
+    }
+
+    private int getEntryCount(int ifd) {
+        return ifd >= 0 ? readShort(ifd) : 0;
+    }
+
+    /**
+     * Returns the position of the entry with the given tag, or -1.
+     */
+    private int findEntry(int ifd, int tag) {
+        int count = getEntryCount(ifd);
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + 12 * i;
+            if (readShort(entry) == tag) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes an entry while keeping the size of the directory: the later
+     * entries and the next-IFD offset move up, the freed slot at the end is zeroed.
+     */
+    private void removeTag(int ifd, int tag) {
+        int entry = findEntry(ifd, tag);
+        if (entry < 0) {
+            return;
+        }
+        clearValue(entry);
+        int count = readShort(ifd);
+        int end = ifd + 2 + 12 * count + 4;
+        System.arraycopy(data, entry + 12, data, entry, end - entry - 12);
+        Arrays.fill(data, end - 12, end, (byte) 0);
+        writeShort(ifd, count - 1);
+        modified = true;
+    }
+
+    /**
+     * Zeroes the value of an entry stored outside of it.
+     */
+    private void clearValue(int entry) {
+        long size = getValueSize(entry);
+        if (size > 4) {
+            int offset = getValueOffset(entry, size);
+            if (offset >= 0) {
+                Arrays.fill(data, offset, offset + (int) size, (byte) 0);
+            }
+        }
+    }
+
+    private long getValueSize(int entry) {
+        int type = readShort(entry + 2);
+        return type < TYPE_SIZES.length ? TYPE_SIZES[type] * readInt(entry + 4) : 0;
+    }
+
+    /**
+     * Returns the position of an entry's value of the given size, or -1 if it does not fit.
+     */
+    private int getValueOffset(int entry, long size) {
+        if (size <= 4) {
+            return entry + 8;
+        }
+        long offset = tiff + readInt(entry + 8);
+        return offset + size <= data.length ? (int) offset : -1;
+    }
+
+    private void putString(JSObject fields, String name, int ifd, int tag) {
+        int entry = findEntry(ifd, tag);
+        if (entry < 0 || readShort(entry + 2) != TYPE_ASCII) {
+            return;
+        }
+        long size = getValueSize(entry);
+        int offset = getValueOffset(entry, size);
+        if (offset < 0) {
+            return;
+        }
+        int end = offset;
+        while (end < offset + size && data[end] != 0) {
+            end++;
+        }
+        String value = new String(data, offset, end - offset, StandardCharsets.US_ASCII).trim();
+        if (!value.isEmpty()) {
+            fields.put(name, value);
+        }
+    }
+
+    private int readInteger(int entry) {
+        int type = readShort(entry + 2);
+        if (type == TYPE_SHORT) {
+            return readShort(entry + 8);
+        }
+        return type == TYPE_LONG ? (int) readInt(entry + 8) : 0;
+    }
+
+    /**
+     * Reads a degrees, minutes, seconds coordinate as signed decimal degrees, or NaN.
+     */
+    private double readCoordinate(int ifd, int tag, int referenceTag, char negative) {
+        int entry = findEntry(ifd, tag);
+        if (entry < 0 || readShort(entry + 2) != TYPE_RATIONAL || readInt(entry + 4) < 3) {
+            return Double.NaN;
+        }
+        int offset = getValueOffset(entry, 24);
+        if (offset < 0) {
+            return Double.NaN;
+        }
+        double value = readRational(offset) + readRational(offset + 8) / 60 + readRational(offset + 16) / 3600;
+        int reference = findEntry(ifd, referenceTag);
+        if (reference >= 0 && data[reference + 8] == negative) {
+            value = -value;
+        }
+        return value;
+    }
+
+    private double readRational(int offset) {
+        if (offset < 0) {
+            return Double.NaN;
+        }
+        long denominator = readInt(offset + 4);
+        return denominator != 0 ? (double) readInt(offset) / denominator : Double.NaN;
+    }
+
+    private int readShort(int offset) {
+        int a = data[offset] & 0xFF;
+        int b = data[offset + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private long readInt(int offset) {
+        long a = readShort(offset);
+        long b = readShort(offset + 2);
+        return littleEndian ? (b << 16) | a : (a << 16) | b;
+    }
+
+    private void writeShort(int offset, int value) {
+        byte high = (byte) (value >> 8);
+        byte low = (byte) value;
+        data[offset] = littleEndian ? low : high;
+        data[offset + 1] = littleEndian ? high : low;
+    }
+}
@@ -24,9 +24,10 @@ import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.BitmapFactory;
-import android.media.MediaPlayer;
+import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Build;
+import android.util.Base64;
 import android.util.Log;
 import androidx.activity.result.ActivityResult;
 import androidx.core.content.FileProvider;
@@ -41,14 +42,16 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -66,7 +69,8 @@ import org.json.JSONObject;
                 Manifest.permission.READ_EXTERNAL_STORAGE
             },
             alias = MediaCapturePlugin.MEDIA
-        )
+        ),
+        @Permission(strings = { Manifest.permission.WRITE_EXTERNAL_STORAGE }, alias = MediaCapturePlugin.STORAGE)
     }
 )
 public class MediaCapturePlugin extends Plugin {
@@ -74,31 +78,107 @@ public class MediaCapturePlugin extends Plugin {
     static final String CAMERA = "camera";
     static final String AUDIO = "audio";
     static final String MEDIA = "media";
+    static final String STORAGE = "storage";
     static final String CAMERA_AND_AUDIO = "cameraAndAudio";
 
-    private static final String VIDEO_3GPP = "video/3gpp";
-    private static final String VIDEO_MP4 = "video/mp4";
     private static final String AUDIO_3GPP = "audio/3gpp";
-    private static final String[] AUDIO_TYPES = new String[] { "audio/3gpp", "audio/aac", "audio/amr", "audio/wav" };
-    private static final String IMAGE_JPEG = "image/jpeg";
+    private static final Set<String> AUDIO_TYPES = new HashSet<>(
+        Arrays.asList("audio/3gpp", "audio/aac", "audio/amr", "audio/wav", "audio/x-wav", "audio/mp4", "audio/mpeg", "audio/ogg")
+    );
+    private static final Set<String> VIDEO_TYPES = new HashSet<>(
+        Arrays.asList("video/3gpp", "video/mp4", "video/quicktime", "video/webm", "video/x-matroska")
+    );
     private static final String TAG = "MediaCapture";
+    private static final String FORMAT_DATA_CACHE_FILE = "com.capacitor.mediacapture.formatdata";
+    private static final int DEFAULT_FORMAT_DATA_CACHE_SIZE = 1024 * 1024;
+    private static final int DEFAULT_CACHE_QUOTA_MB = 512;
+    private static final int DEFAULT_CACHE_MAX_AGE = 7 * 24 * 60 * 60;
+    private static final String THUMBNAIL_DIRECTORY = "com.capacitor.mediacapture.thumbnails";
+    private static final int DEFAULT_THUMBNAIL_SIZE = 256;
+    private static final int DEFAULT_THUMBNAIL_MEMORY_CACHE_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_THUMBNAIL_DISK_CACHE_MB = 32;
+    private static final int DEFAULT_READ_CHUNK_SIZE = 512 * 1024;
+    private static final int DEFAULT_MAX_PENDING_READS = 4;
+    private static final String UPLOAD_DIRECTORY = "com.capacitor.mediacapture.uploads";
+    private static final int DEFAULT_UPLOAD_CHUNK_SIZE = 1024 * 1024;
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 3;
+    private static final int UPLOAD_THREADS = 4;
+    private static final int EXPORT_THREADS = 3;
 
     private static final String CAPTURE_AUDIO = "captureAudioResult";
     private static final String CAPTURE_IMAGE = "captureImageResult";
     private static final String CAPTURE_VIDEO = "captureVideoResult";
+    private static final String MODE_EXTERNAL = "external";
+    private static final String MODE_EMBEDDED = "embedded";
 
-    private String audioAbsolutePath;
-    private String imageAbsolutePath;
-    private String videoAbsolutePath;
-    private int currentLimit = 1;
-    private int currentCount = 0;
-    private JSArray currentResults = new JSArray();
+    private final CaptureMetrics metrics = new CaptureMetrics();
+
+    private FormatDataCache formatDataCache;
+    private CaptureStore captureStore;
+    private ThumbnailService thumbnailService;
+    private ReadStreamManager readStreams;
+    private UploadManager uploadManager;
+    private GalleryExporter galleryExporter;
+    // Only used on the video thread
+    private VideoCompressor videoCompressor;
+    private CaptureEngine<JSObject> captureEngine;
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService thumbnailExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService streamExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService cameraExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService videoExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService uploadExecutor = Executors.newScheduledThreadPool(UPLOAD_THREADS);
+    private final ScheduledExecutorService sweepExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService exportExecutor = Executors.newFixedThreadPool(EXPORT_THREADS);
+    private final ExecutorService probeExecutor = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors())
+    );
+
+    private final CaptureSessions sessions = new CaptureSessions(
+        ioExecutor,
+        probeExecutor,
+        new CaptureSessions.Host() {
+            @Override
+            public void notifyListeners(String eventName, JSObject data) {
+                MediaCapturePlugin.this.notifyListeners(eventName, data);
+            }
+
+            @Override
+            public void releaseCall(PluginCall call) {
+                getBridge().releaseCall(call);
+            }
+        }
+    );
+
+    @Override
+    public void load() {
+        if (getConfig().getBoolean("emitMetrics", false)) {
+            metrics.setListener((stage, micros) -> {
+                JSObject sample = new JSObject();
+                sample.put("stage", CaptureMetrics.getKey(stage));
+                sample.put("durationMs", micros / 1000.0);
+                notifyListeners("captureMetric", sample);
+            });
+        }
+
+        // Pick up uploads interrupted by a previous process
+        uploadExecutor.execute(() -> getUploadManager().resumePending());
+    }
 
     @PluginMethod
     public void captureAudio(PluginCall call) {
-        currentLimit = call.getInt("limit", 1);
-        currentCount = 0;
-        currentResults = new JSArray();
+        if (!validateCaptureOptions(call)) {
+            return;
+        }
+        try {
+            getAudioTranscodeOptions(call);
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        sessions.start(call, null);
 
         if (getPermissionState(AUDIO) != PermissionState.GRANTED) {
             requestPermissionForAlias(AUDIO, call, "audioPermissionsCallback");
@@ -109,39 +189,45 @@ public class MediaCapturePlugin extends Plugin {
 
     @PermissionCallback
     private void audioPermissionsCallback(PluginCall call) {
+        metrics.record(CaptureMetrics.Stage.PERMISSION, sessions.get(call).startNanos);
         if (getPermissionState(AUDIO) == PermissionState.GRANTED) {
             startAudioCapture(call);
         } else {
-            call.reject("Audio recording permission denied. Please enable microphone access in your device settings.");
+            sessions.reject(call, "Audio recording permission denied. Please enable microphone access in your device settings.");
         }
     }
 
     private void startAudioCapture(PluginCall call) {
         try {
             Intent intent = new Intent(android.provider.MediaStore.Audio.Media.RECORD_SOUND_ACTION);
-            String timeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
-            String fileName = "cdv_media_capture_audio_" + timeStamp + ".m4a";
-            File audio = new File(getTempDirectoryPath(), fileName);
+            File audio = getCaptureStore().newCaptureFile("audio", ".m4a");
 
             Uri audioUri = FileProvider.getUriForFile(
                 getContext(),
                 getContext().getPackageName() + ".fileprovider",
                 audio
             );
-            this.audioAbsolutePath = audio.getAbsolutePath();
-            Log.d(TAG, "Recording audio and saving to: " + this.audioAbsolutePath);
+            Log.d(TAG, "Recording audio and saving to: " + audio.getAbsolutePath());
 
-            startActivityForResult(call, intent, CAPTURE_AUDIO);
+            launchCapture(call, intent, audio, CAPTURE_AUDIO);
         } catch (ActivityNotFoundException ex) {
-            call.reject("No Activity found to handle Audio Capture", ex);
+            sessions.reject(call, "No Activity found to handle Audio Capture", ex);
         }
     }
 
     @PluginMethod
     public void captureImage(PluginCall call) {
-        currentLimit = call.getInt("limit", 1);
-        currentCount = 0;
-        currentResults = new JSArray();
+        if (!validateCaptureOptions(call)) {
+            return;
+        }
+        try {
+            getStripExifTags(call);
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        sessions.start(call, createImageProcessor(call));
 
         if (getPermissionState(CAMERA) != PermissionState.GRANTED) {
             requestPermissionForAlias(CAMERA, call, "imagePermissionsCallback");
@@ -152,38 +238,56 @@ public class MediaCapturePlugin extends Plugin {
 
     @PermissionCallback
     private void imagePermissionsCallback(PluginCall call) {
+        metrics.record(CaptureMetrics.Stage.PERMISSION, sessions.get(call).startNanos);
         if (getPermissionState(CAMERA) == PermissionState.GRANTED) {
             startImageCapture(call);
         } else {
-            call.reject("Camera permission denied. Please enable camera access in your device settings.");
+            sessions.reject(call, "Camera permission denied. Please enable camera access in your device settings.");
         }
     }
 
     private void startImageCapture(PluginCall call) {
-        Intent intent = new Intent(android.provider.MediaStore.ACTION_IMAGE_CAPTURE);
+        if (isEmbedded(call)) {
+            startEmbeddedCapture(call, false);
+            return;
+        }
 
-        String timeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
-        String fileName = "cdv_media_capture_image_" + timeStamp + ".jpg";
-        File image = new File(getTempDirectoryPath(), fileName);
+        Intent intent = new Intent(android.provider.MediaStore.ACTION_IMAGE_CAPTURE);
+        File image = getCaptureStore().newCaptureFile("image", ".jpg");
 
         Uri imageUri = FileProvider.getUriForFile(
             getContext(),
             getContext().getPackageName() + ".fileprovider",
             image
         );
-        this.imageAbsolutePath = image.getAbsolutePath();
         intent.putExtra(android.provider.MediaStore.EXTRA_OUTPUT, imageUri);
         intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-        Log.d(TAG, "Taking a picture and saving to: " + this.imageAbsolutePath);
+        Log.d(TAG, "Taking a picture and saving to: " + image.getAbsolutePath());
 
-        startActivityForResult(call, intent, CAPTURE_IMAGE);
+        launchCapture(call, intent, image, CAPTURE_IMAGE);
     }
 
     @PluginMethod
     public void captureVideo(PluginCall call) {
-        currentLimit = call.getInt("limit", 1);
-        currentCount = 0;
-        currentResults = new JSArray();
+        if (!validateCaptureOptions(call)) {
+            return;
+        }
+        if (isEmbedded(call) && call.getInt("duration", 0) <= 0) {
+            // There is no camera UI to stop an embedded recording
+            call.reject("Embedded video capture requires a duration");
+            return;
+        }
+        try {
+            if (getVideoCompressOptions(call.getObject("compress")) != null && isEmbedded(call)) {
+                call.reject("Compression is not supported in embedded mode, use quality instead");
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        sessions.start(call, null);
 
         // Check if both camera and audio permissions are granted
         boolean cameraGranted = getPermissionState(CAMERA) == PermissionState.GRANTED;
@@ -202,33 +306,36 @@ public class MediaCapturePlugin extends Plugin {
 
     @PermissionCallback
     private void videoPermissionsCallback(PluginCall call) {
+        metrics.record(CaptureMetrics.Stage.PERMISSION, sessions.get(call).startNanos);
         boolean cameraGranted = getPermissionState(CAMERA) == PermissionState.GRANTED;
         boolean audioGranted = getPermissionState(AUDIO) == PermissionState.GRANTED;
 
         if (cameraGranted && audioGranted) {
             startVideoCapture(call);
         } else if (!cameraGranted) {
-            call.reject("Camera permission denied. Please enable camera access in your device settings.");
+            sessions.reject(call, "Camera permission denied. Please enable camera access in your device settings.");
         } else {
-            call.reject("Microphone permission denied. Video will be recorded without audio. Please enable microphone access for video with sound.");
+            sessions.reject(call, "Microphone permission denied. Video will be recorded without audio. Please enable microphone access for video with sound.");
         }
     }
 
     private void startVideoCapture(PluginCall call) {
+        if (isEmbedded(call)) {
+            startEmbeddedCapture(call, true);
+            return;
+        }
+
         Intent intent = new Intent(android.provider.MediaStore.ACTION_VIDEO_CAPTURE);
-        String timeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date());
-        String fileName = "cdv_media_capture_video_" + timeStamp + ".mp4";
-        File movie = new File(getTempDirectoryPath(), fileName);
+        File movie = getCaptureStore().newCaptureFile("video", ".mp4");
 
         Uri videoUri = FileProvider.getUriForFile(
             getContext(),
             getContext().getPackageName() + ".fileprovider",
             movie
         );
-        this.videoAbsolutePath = movie.getAbsolutePath();
         intent.putExtra(android.provider.MediaStore.EXTRA_OUTPUT, videoUri);
         intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-        Log.d(TAG, "Recording a video and saving to: " + this.videoAbsolutePath);
+        Log.d(TAG, "Recording a video and saving to: " + movie.getAbsolutePath());
 
         int duration = call.getInt("duration", 0);
         int quality = call.getInt("quality", 1);
@@ -237,163 +344,1108 @@ public class MediaCapturePlugin extends Plugin {
         }
         intent.putExtra("android.intent.extra.videoQuality", quality);
 
-        startActivityForResult(call, intent, CAPTURE_VIDEO);
+        launchCapture(call, intent, movie, CAPTURE_VIDEO);
+    }
+
+    /**
+     * Records the file of the next capture in the call's session and launches
+     * the external capture activity.
+     */
+    private void launchCapture(PluginCall call, Intent intent, File file, String callbackName) {
+        CaptureSession capturing = sessions.startCapture(call, file.getAbsolutePath());
+
+        long launchStart = System.nanoTime();
+        startActivityForResult(call, intent, callbackName);
+        metrics.record(CaptureMetrics.Stage.INTENT_LAUNCH, launchStart);
+        sessions.markLaunched(capturing, System.nanoTime());
     }
 
     @PluginMethod
     public void getFormatData(PluginCall call) {
+        sessions.getFormatData(call, this::getFormatDataForFile);
+    }
+
+    @PluginMethod
+    public void getThumbnail(PluginCall call) {
         String filePath = call.getString("fullPath");
         String mimeType = call.getString("type");
+        int size = call.getInt("size", DEFAULT_THUMBNAIL_SIZE);
 
         if (filePath == null) {
             call.reject("File path is required");
             return;
         }
+        if (size <= 0) {
+            call.reject("Thumbnail size must be positive");
+            return;
+        }
+
+        thumbnailExecutor.execute(() -> {
+            try {
+                ThumbnailService.Thumbnail thumbnail = getThumbnailForFile(filePath, mimeType, size);
+                JSObject ret = new JSObject();
+                ret.put("fullPath", "file://" + thumbnail.file.getAbsolutePath());
+                ret.put("dataUrl", "data:image/jpeg;base64," + Base64.encodeToString(thumbnail.data, Base64.NO_WRAP));
+                ret.put("width", thumbnail.width);
+                ret.put("height", thumbnail.height);
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Error getting thumbnail", e);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void openReadStream(PluginCall call) {
+        String filePath = call.getString("fullPath");
+        int chunkSize = call.getInt("chunkSize", getConfig().getInt("readChunkSize", DEFAULT_READ_CHUNK_SIZE));
+
+        if (filePath == null) {
+            call.reject("File path is required");
+            return;
+        }
+
+        try {
+            ReadStreamManager.Stream stream = getReadStreams().open(new File(toFileUri(filePath).getPath()), chunkSize);
+            JSObject ret = new JSObject();
+            ret.put("streamId", stream.id);
+            ret.put("size", stream.size);
+            ret.put("chunkSize", stream.chunkSize);
+            call.resolve(ret);
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+        } catch (IOException e) {
+            call.reject("Error opening stream", e);
+        }
+    }
+
+    @PluginMethod
+    public void readChunk(PluginCall call) {
+        String streamId = call.getString("streamId");
+        Double offset = call.getDouble("offset");
+        int length = call.getInt("length", 0);
+
+        ReadStreamManager streams = getReadStreams();
+        ReadStreamManager.Stream stream;
+        try {
+            stream = streamId != null ? streams.acquire(streamId) : null;
+        } catch (IllegalStateException e) {
+            // Backpressure: the consumer must wait for pending reads before asking for more
+            call.reject(e.getMessage(), "STREAM_BUSY");
+            return;
+        }
+        if (stream == null) {
+            call.reject("Unknown stream: " + streamId);
+            return;
+        }
+
+        streamExecutor.execute(() -> {
+            try {
+                ReadStreamManager.Chunk chunk = streams.read(stream, offset != null ? offset.longValue() : -1, length);
+                JSObject ret = new JSObject();
+                ret.put("data", Base64.encodeToString(chunk.data, 0, chunk.length, Base64.NO_WRAP));
+                ret.put("offset", chunk.offset);
+                ret.put("bytesRead", chunk.length);
+                ret.put("eof", chunk.eof);
+                ret.put("pending", streams.getPending(stream));
+                call.resolve(ret);
+            } catch (IOException e) {
+                call.reject("Error reading stream", e);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void closeStream(PluginCall call) {
+        String streamId = call.getString("streamId");
+        if (streamId == null || !getReadStreams().close(streamId)) {
+            call.reject("Unknown stream: " + streamId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void startUpload(PluginCall call) {
+        String filePath = call.getString("fullPath");
+        String url = call.getString("url");
+
+        if (filePath == null || url == null) {
+            call.reject("File path and url are required");
+            return;
+        }
+
+        try {
+            String uploadId = getUploadManager().start(
+                new File(toFileUri(filePath).getPath()),
+                url,
+                call.getObject("headers"),
+                call.getInt("chunkSize", DEFAULT_UPLOAD_CHUNK_SIZE),
+                call.getInt("concurrency", DEFAULT_UPLOAD_CONCURRENCY)
+            );
+            JSObject ret = new JSObject();
+            ret.put("uploadId", uploadId);
+            call.resolve(ret);
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+        } catch (IOException e) {
+            call.reject("Error starting upload", e);
+        }
+    }
+
+    @PluginMethod
+    public void resumeUpload(PluginCall call) {
+        String uploadId = call.getString("uploadId");
+        if (uploadId == null || !getUploadManager().resume(uploadId, call.getObject("headers"))) {
+            call.reject("No paused upload: " + uploadId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void cancelUpload(PluginCall call) {
+        String uploadId = call.getString("uploadId");
+        if (uploadId == null || !getUploadManager().cancel(uploadId)) {
+            call.reject("Unknown upload: " + uploadId);
+            return;
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getUploads(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("uploads", getUploadManager().getUploads());
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        call.resolve(metrics.toJSObject());
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        metrics.reset();
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void getCacheStats(PluginCall call) {
+        getCaptureStore().getStats(resolveFromStore(call));
+    }
+
+    @PluginMethod
+    public void trimCache(PluginCall call) {
+        Double maxBytes = call.getDouble("maxBytes");
+        getCaptureStore().trim(maxBytes != null ? maxBytes.longValue() : -1, resolveFromStore(call));
+    }
+
+    /**
+     * Settles the call from the sweeper thread once the store is done, the
+     * plugin thread does not wait for a sweep in progress.
+     */
+    private CaptureStore.Callback resolveFromStore(PluginCall call) {
+        return new CaptureStore.Callback() {
+            @Override
+            public void onComplete(JSObject result) {
+                call.resolve(result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                call.reject("Error accessing capture cache", e);
+            }
+        };
+    }
+
+    @PluginMethod
+    public void getFormatDataCacheStats(PluginCall call) {
+        call.resolve(getFormatDataCache().getStats());
+    }
+
+    @PluginMethod
+    public void getFormatDataBatch(PluginCall call) {
+        JSArray files = call.getArray("files");
+        if (files == null) {
+            call.reject("Files are required");
+            return;
+        }
+
+        int count = files.length();
+        JSObject[] results = new JSObject[count];
+        AtomicInteger remaining = new AtomicInteger(count);
+        if (count == 0) {
+            resolveFormatDataBatch(call, results);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            JSONObject file = files.optJSONObject(i);
+            probeExecutor.execute(() -> {
+                results[index] = getFormatDataResult(file);
+                if (remaining.decrementAndGet() == 0) {
+                    resolveFormatDataBatch(call, results);
+                }
+            });
+        }
+    }
+
+    private JSObject getFormatDataResult(JSONObject file) {
+        JSObject result = new JSObject();
+        String filePath = file != null ? file.optString("fullPath", null) : null;
+        result.put("fullPath", filePath);
+        if (filePath == null) {
+            result.put("error", "File path is required");
+            return result;
+        }
 
         try {
-            JSObject result = getFormatDataForFile(filePath, mimeType);
-            call.resolve(result);
+            result.put("data", getFormatDataForFile(filePath, file.optString("type", null)));
         } catch (Exception e) {
-            call.reject("Error getting format data", e);
+            Log.d(TAG, "Error getting format data for " + filePath, e);
+            result.put("error", e.getMessage() != null ? e.getMessage() : "Error getting format data");
         }
+        return result;
+    }
+
+    private void resolveFormatDataBatch(PluginCall call, JSObject[] results) {
+        JSArray array = new JSArray();
+        for (JSObject result : results) {
+            array.put(result);
+        }
+        JSObject ret = new JSObject();
+        ret.put("results", array);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void compressVideo(PluginCall call) {
+        JSArray files = call.getArray("files");
+        if (files == null) {
+            call.reject("Files are required");
+            return;
+        }
+        VideoCompressor.Options options;
+        try {
+            options = getVideoCompressOptions(call.getData());
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        // One file at a time on the video thread, so every file reuses the same codecs
+        videoExecutor.execute(() -> {
+            int total = files.length();
+            JSArray results = new JSArray();
+            for (int i = 0; i < total; i++) {
+                JSONObject file = files.optJSONObject(i);
+                String filePath = file != null ? file.optString("fullPath", null) : null;
+                results.put(compressFile(call, filePath, i, total, options));
+            }
+            JSObject ret = new JSObject();
+            ret.put("compressId", call.getCallbackId());
+            ret.put("results", results);
+            call.resolve(ret);
+        });
+    }
+
+    private JSObject compressFile(PluginCall call, String filePath, int index, int total, VideoCompressor.Options options) {
+        JSObject result = new JSObject();
+        result.put("fullPath", filePath);
+        if (filePath == null) {
+            result.put("error", "File path is required");
+            return result;
+        }
+
+        File output = getCaptureStore().newCaptureFile("video", ".mp4");
+        try {
+            long compressStart = System.nanoTime();
+            TranscodeResult compressed = getVideoCompressor().compress(
+                new File(toFileUri(filePath).getPath()),
+                output,
+                options,
+                progress -> emitCompressProgress(call, filePath, index, total, progress)
+            );
+            metrics.record(CaptureMetrics.Stage.VIDEO_COMPRESS, compressStart);
+            JSObject mediaFile = createMediaFile(call, output.getAbsolutePath(), null);
+            if (mediaFile == null) {
+                throw new IOException("Error creating media file");
+            }
+            mediaFile.put("transcode", compressed.toJSObject());
+            result.put("file", mediaFile);
+        } catch (IOException | RuntimeException e) {
+            output.delete();
+            Log.d(TAG, "Error compressing " + filePath, e);
+            result.put("error", e.getMessage() != null ? e.getMessage() : "Error compressing video");
+        }
+        return result;
+    }
+
+    private void emitCompressProgress(PluginCall call, String fullPath, int index, int total, double progress) {
+        JSObject event = new JSObject();
+        event.put("compressId", call.getCallbackId());
+        event.put("fullPath", fullPath);
+        event.put("index", index);
+        event.put("total", total);
+        event.put("progress", progress);
+        notifyListeners("compressProgress", event);
+    }
+
+    @PluginMethod
+    public void exportToGallery(PluginCall call) {
+        if (call.getArray("files") == null) {
+            call.reject("Files are required");
+            return;
+        }
+
+        // Scoped storage lets the app add media without a permission
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q && getPermissionState(STORAGE) != PermissionState.GRANTED) {
+            requestPermissionForAlias(STORAGE, call, "storagePermissionsCallback");
+        } else {
+            startExport(call);
+        }
+    }
+
+    @PermissionCallback
+    private void storagePermissionsCallback(PluginCall call) {
+        if (getPermissionState(STORAGE) == PermissionState.GRANTED) {
+            startExport(call);
+        } else {
+            call.reject("Storage permission denied. Please enable storage access in your device settings.");
+        }
+    }
+
+    private void startExport(PluginCall call) {
+        JSArray files = call.getArray("files");
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject file = files.optJSONObject(i);
+            String filePath = file != null ? file.optString("fullPath", null) : null;
+            if (filePath == null) {
+                items.add(new GalleryExporter.Item(null, null, null));
+                continue;
+            }
+            Uri fileUrl = toFileUri(filePath);
+            String mimeType = file.optString("type", null);
+            if (mimeType == null || mimeType.isEmpty() || "null".equals(mimeType)) {
+                mimeType = FileHelper.getMimeType(fileUrl, getContext());
+            }
+            items.add(new GalleryExporter.Item(filePath, new File(fileUrl.getPath()), mimeType));
+        }
+
+        // The export id only reaches JS with the result, the correlation id is known up front
+        String correlationId = call.getString("correlationId");
+        getGalleryExporter().export(
+            call.getCallbackId(),
+            correlationId,
+            items,
+            call.getString("album"),
+            new GalleryExporter.Listener() {
+                @Override
+                public void onProgress(JSObject progress) {
+                    notifyListeners("exportProgress", progress);
+                }
+
+                @Override
+                public void onComplete(JSArray results) {
+                    JSObject ret = new JSObject();
+                    ret.put("exportId", call.getCallbackId());
+                    ret.put("correlationId", correlationId);
+                    ret.put("results", results);
+                    call.resolve(ret);
+                }
+            }
+        );
     }
 
     @ActivityCallback
     private void captureAudioResult(PluginCall call, ActivityResult result) {
+        CaptureSession session = sessions.get(call);
+        if (session == null) {
+            Log.w(TAG, "No capture session for audio result");
+            return;
+        }
+        metrics.record(CaptureMetrics.Stage.EXTERNAL_ACTIVITY, session.launchNanos);
+        long callbackStart = System.nanoTime();
+        try {
+            handleCaptureAudioResult(call, session, result);
+        } finally {
+            metrics.record(CaptureMetrics.Stage.ACTIVITY_CALLBACK, callbackStart);
+        }
+    }
+
+    private void handleCaptureAudioResult(PluginCall call, CaptureSession session, ActivityResult result) {
         if (result.getResultCode() == Activity.RESULT_CANCELED) {
-            if (currentResults.length() > 0) {
-                JSObject ret = new JSObject();
-                ret.put("files", currentResults);
-                call.resolve(ret);
+            if (session.getCount() > 0) {
+                sessions.resolve(call, session);
             } else {
-                call.reject("User cancelled");
+                sessions.reject(call, "User cancelled");
             }
             return;
         }
 
         if (result.getResultCode() == Activity.RESULT_OK) {
             Intent intent = result.getData();
-            if (intent != null) {
-                Uri uri = intent.getData();
-                if (uri != null) {
-                    copyAudioFile(uri, this.audioAbsolutePath);
-                }
+            Uri uri = intent != null ? intent.getData() : null;
+            AudioTranscoder.Options transcode = getAudioTranscodeOptions(call);
+            if (transcode != null) {
+                transcodeAudio(call, session, uri, transcode);
+                return;
+            }
+            if (uri == null) {
+                computeChecksum(call, session, this::finishAudioCapture);
+                return;
             }
 
-            JSObject mediaFile = createMediaFile(this.audioAbsolutePath);
-            if (mediaFile != null) {
-                currentResults.put(mediaFile);
-                currentCount++;
+            // Recordings can be large, keep the copy off the activity callback thread
+            File destination = new File(session.path);
+            String algorithm = call.getString("checksum");
+            ioExecutor.execute(() -> {
+                // Hash the bytes while they are copied instead of re-reading the file
+                Checksum checksum = algorithm != null ? Checksum.create(algorithm) : null;
+                long copyStart = System.nanoTime();
+                try {
+                    FileHelper.copy(getContext().getContentResolver(), uri, destination, checksum);
+                    metrics.record(CaptureMetrics.Stage.AUDIO_COPY, copyStart);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error copying audio file", e);
+                    sessions.reject(call, "Error copying audio file", e);
+                    return;
+                }
+                String digest = checksum != null ? checksum.finish() : null;
+                getBridge().executeOnMainThread(() -> finishAudioCapture(call, session, digest));
+            });
+        } else {
+            sessions.reject(call, "Capture failed");
+        }
+    }
 
-                if (currentCount >= currentLimit) {
-                    JSObject ret = new JSObject();
-                    ret.put("files", currentResults);
-                    call.resolve(ret);
-                } else {
-                    startAudioCapture(call);
+    /**
+     * Copies the recording into the cache when it came as a URI and
+     * re-encodes it on the I/O thread. The checksum covers the transcoded
+     * file. If transcoding fails the recording is kept and returned as is,
+     * with the error in the result.
+     */
+    private void transcodeAudio(PluginCall call, CaptureSession session, Uri uri, AudioTranscoder.Options options) {
+        File recording = new File(session.path);
+        String name = recording.getName();
+        int dot = name.lastIndexOf('.');
+        File output = getCaptureStore().newFile((dot > 0 ? name.substring(0, dot) : name) + options.getExtension());
+        // Created through the store so a concurrent trim cannot evict it mid-write
+        File temp = getCaptureStore().newFile(output.getName() + ".tmp");
+        ioExecutor.execute(() -> {
+            if (uri != null) {
+                long copyStart = System.nanoTime();
+                try {
+                    FileHelper.copy(getContext().getContentResolver(), uri, recording, null);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error copying audio file", e);
+                    sessions.reject(call, "Error copying audio file", e);
+                    return;
+                }
+                metrics.record(CaptureMetrics.Stage.AUDIO_COPY, copyStart);
+            }
+            TranscodeResult transcoded;
+            try {
+                long transcodeStart = System.nanoTime();
+                transcoded = AudioTranscoder.transcode(recording, temp, options);
+                metrics.record(CaptureMetrics.Stage.AUDIO_TRANSCODE, transcodeStart);
+                // One rename, which also replaces a recording of the same name; the
+                // recording is only deleted once the transcoded file is in place
+                if (!temp.renameTo(output)) {
+                    throw new IOException("Unable to write " + output);
                 }
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                Log.e(TAG, "Error transcoding audio", e);
+                String error = "Error transcoding audio: " + e.getMessage();
+                finishWithChecksum(call, session, (c, s, checksum) -> finishAudioCapture(c, s, checksum, null, error));
+                return;
+            }
+            if (!output.equals(recording)) {
+                recording.delete();
+            }
+            CaptureSession stored = session.withCapture(output.getAbsolutePath(), session.launchNanos);
+            finishWithChecksum(call, stored, (c, s, checksum) -> finishAudioCapture(c, s, checksum, transcoded, null));
+        });
+    }
+
+    private void finishAudioCapture(PluginCall call, CaptureSession session, String checksum) {
+        finishAudioCapture(call, session, checksum, null, null);
+    }
+
+    private void finishAudioCapture(
+        PluginCall call,
+        CaptureSession session,
+        String checksum,
+        TranscodeResult transcoded,
+        String transcodeError
+    ) {
+        JSObject mediaFile = createMediaFile(call, session.path, checksum);
+        if (mediaFile != null) {
+            if (transcoded != null) {
+                mediaFile.put("transcode", transcoded.toJSObject());
+            }
+            if (transcodeError != null) {
+                mediaFile.put("transcodeError", transcodeError);
+            }
+            CaptureSession next = sessions.addResult(call, session, mediaFile);
+
+            if (next.isComplete()) {
+                sessions.resolve(call, next);
+                metrics.record(CaptureMetrics.Stage.TOTAL, next.startNanos);
             } else {
-                call.reject("Error creating media file");
+                startAudioCapture(call);
             }
         } else {
-            call.reject("Capture failed");
+            sessions.reject(call, "Error creating media file");
         }
     }
 
     @ActivityCallback
     private void captureImageResult(PluginCall call, ActivityResult result) {
+        CaptureSession session = sessions.get(call);
+        if (session == null) {
+            Log.w(TAG, "No capture session for image result");
+            return;
+        }
+        metrics.record(CaptureMetrics.Stage.EXTERNAL_ACTIVITY, session.launchNanos);
+        long callbackStart = System.nanoTime();
+        try {
+            handleCaptureImageResult(call, session, result);
+        } finally {
+            metrics.record(CaptureMetrics.Stage.ACTIVITY_CALLBACK, callbackStart);
+        }
+    }
+
+    private void handleCaptureImageResult(PluginCall call, CaptureSession session, ActivityResult result) {
         if (result.getResultCode() == Activity.RESULT_CANCELED) {
-            if (currentResults.length() > 0) {
-                JSObject ret = new JSObject();
-                ret.put("files", currentResults);
-                call.resolve(ret);
+            if (session.getCount() > 0) {
+                sessions.resolve(call, session);
             } else {
-                call.reject("User cancelled");
+                sessions.reject(call, "User cancelled");
             }
             return;
         }
 
         if (result.getResultCode() == Activity.RESULT_OK) {
-            JSObject mediaFile = createMediaFile(this.imageAbsolutePath);
-            if (mediaFile != null) {
-                currentResults.put(mediaFile);
-                currentCount++;
+            ImageProcessor processor = session.imageProcessor;
+            boolean processing = processor != null && processor.isEnabled();
+            boolean readExif = call.getBoolean("exif", false);
+            Set<String> stripExif = getStripExifTags(call);
+            if (!processing && !readExif && stripExif.isEmpty()) {
+                computeChecksum(call, session, this::finishImageCapture);
+                return;
+            }
 
-                if (currentCount >= currentLimit) {
-                    JSObject ret = new JSObject();
-                    ret.put("files", currentResults);
-                    call.resolve(ret);
-                } else {
-                    startImageCapture(call);
+            // Decoding and re-encoding a full resolution photo takes a while
+            ioExecutor.execute(() -> {
+                JSObject exif;
+                try {
+                    // Before processing, a re-encoded image only keeps its orientation
+                    exif = processExif(new File(session.path), readExif, stripExif);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error processing EXIF data", e);
+                    sessions.reject(call, "Error processing EXIF data", e);
+                    return;
+                }
+                if (processing) {
+                    long processStart = System.nanoTime();
+                    try {
+                        processor.process(new File(session.path));
+                        metrics.record(CaptureMetrics.Stage.IMAGE_PROCESSING, processStart);
+                    } catch (IOException | RuntimeException e) {
+                        Log.e(TAG, "Error processing image", e);
+                        sessions.reject(call, "Error processing image", e);
+                        return;
+                    }
                 }
+                finishWithChecksum(call, session, (c, s, checksum) -> finishImageCapture(c, s, checksum, exif));
+            });
+        } else {
+            sessions.reject(call, "Capture failed");
+        }
+    }
+
+    private void finishImageCapture(PluginCall call, CaptureSession session, String checksum) {
+        finishImageCapture(call, session, checksum, null);
+    }
+
+    private void finishImageCapture(PluginCall call, CaptureSession session, String checksum, JSObject exif) {
+        JSObject mediaFile = createMediaFile(call, session.path, checksum);
+        if (mediaFile != null) {
+            if (exif != null) {
+                mediaFile.put("exif", exif);
+            }
+            CaptureSession next = sessions.addResult(call, session, mediaFile);
+
+            if (next.isComplete()) {
+                sessions.resolve(call, next);
+                metrics.record(CaptureMetrics.Stage.TOTAL, next.startNanos);
             } else {
-                call.reject("Error creating media file");
+                startImageCapture(call);
             }
         } else {
-            call.reject("Capture failed");
+            sessions.reject(call, "Error creating media file");
         }
     }
 
     @ActivityCallback
     private void captureVideoResult(PluginCall call, ActivityResult result) {
+        CaptureSession session = sessions.get(call);
+        if (session == null) {
+            Log.w(TAG, "No capture session for video result");
+            return;
+        }
+        metrics.record(CaptureMetrics.Stage.EXTERNAL_ACTIVITY, session.launchNanos);
+        long callbackStart = System.nanoTime();
+        try {
+            handleCaptureVideoResult(call, session, result);
+        } finally {
+            metrics.record(CaptureMetrics.Stage.ACTIVITY_CALLBACK, callbackStart);
+        }
+    }
+
+    private void handleCaptureVideoResult(PluginCall call, CaptureSession session, ActivityResult result) {
         if (result.getResultCode() == Activity.RESULT_CANCELED) {
-            if (currentResults.length() > 0) {
-                JSObject ret = new JSObject();
-                ret.put("files", currentResults);
-                call.resolve(ret);
+            if (session.getCount() > 0) {
+                sessions.resolve(call, session);
             } else {
-                call.reject("User cancelled");
+                sessions.reject(call, "User cancelled");
             }
             return;
         }
 
         if (result.getResultCode() == Activity.RESULT_OK) {
-            JSObject mediaFile = createMediaFile(this.videoAbsolutePath);
-            if (mediaFile != null) {
-                currentResults.put(mediaFile);
-                currentCount++;
+            VideoCompressor.Options compress = getVideoCompressOptions(call.getObject("compress"));
+            if (compress != null) {
+                compressCapturedVideo(call, session, compress);
+            } else {
+                computeChecksum(call, session, this::finishVideoCapture);
+            }
+        } else {
+            sessions.reject(call, "Capture failed");
+        }
+    }
 
-                if (currentCount >= currentLimit) {
-                    JSObject ret = new JSObject();
-                    ret.put("files", currentResults);
-                    call.resolve(ret);
-                } else {
-                    startVideoCapture(call);
+    /**
+     * Re-encodes the recording in place on the video thread. The checksum
+     * covers the compressed file. If compression fails the clip is kept
+     * uncompressed, with the error in its result, so the clips already
+     * taken in the session are not lost.
+     */
+    private void compressCapturedVideo(PluginCall call, CaptureSession session, VideoCompressor.Options options) {
+        File recording = new File(session.path);
+        // Created through the store so a concurrent trim cannot evict it mid-write
+        File temp = getCaptureStore().newFile(recording.getName() + ".tmp");
+        String fullPath = "file://" + recording.getAbsolutePath();
+        videoExecutor.execute(() -> {
+            TranscodeResult compressed;
+            try {
+                long compressStart = System.nanoTime();
+                compressed = getVideoCompressor().compress(
+                    recording,
+                    temp,
+                    options,
+                    progress -> emitCompressProgress(call, fullPath, session.getCount(), session.limit, progress)
+                );
+                metrics.record(CaptureMetrics.Stage.VIDEO_COMPRESS, compressStart);
+                // A single rename replaces the recording, which stays intact if it fails
+                if (!temp.renameTo(recording)) {
+                    throw new IOException("Unable to replace " + recording);
                 }
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                Log.e(TAG, "Error compressing video", e);
+                String error = "Error compressing video: " + e.getMessage();
+                finishWithChecksum(call, session, (c, s, checksum) -> finishVideoCapture(c, s, checksum, null, error));
+                return;
+            }
+            finishWithChecksum(call, session, (c, s, checksum) -> finishVideoCapture(c, s, checksum, compressed, null));
+        });
+    }
+
+    private void finishVideoCapture(PluginCall call, CaptureSession session, String checksum) {
+        finishVideoCapture(call, session, checksum, null, null);
+    }
+
+    private void finishVideoCapture(
+        PluginCall call,
+        CaptureSession session,
+        String checksum,
+        TranscodeResult compressed,
+        String transcodeError
+    ) {
+        JSObject mediaFile = createMediaFile(call, session.path, checksum);
+        if (mediaFile != null) {
+            if (compressed != null) {
+                mediaFile.put("transcode", compressed.toJSObject());
+            }
+            if (transcodeError != null) {
+                mediaFile.put("transcodeError", transcodeError);
+            }
+            CaptureSession next = sessions.addResult(call, session, mediaFile);
+
+            if (next.isComplete()) {
+                sessions.resolve(call, next);
+                metrics.record(CaptureMetrics.Stage.TOTAL, next.startNanos);
             } else {
-                call.reject("Error creating media file");
+                startVideoCapture(call);
+            }
+        } else {
+            sessions.reject(call, "Error creating media file");
+        }
+    }
+
+    private interface CaptureFinisher {
+        void finish(PluginCall call, CaptureSession session, String checksum);
+    }
+
+    private boolean validateCaptureOptions(PluginCall call) {
+        String checksum = call.getString("checksum");
+        if (checksum != null && !Checksum.isSupported(checksum)) {
+            call.reject("Unsupported checksum: " + checksum);
+            return false;
+        }
+        String mode = call.getString("mode", MODE_EXTERNAL);
+        if (!MODE_EXTERNAL.equals(mode) && !MODE_EMBEDDED.equals(mode)) {
+            call.reject("Unsupported capture mode: " + mode);
+            return false;
+        }
+        return true;
+    }
+
+    private static AudioTranscoder.Options getAudioTranscodeOptions(PluginCall call) {
+        JSObject transcode = call.getObject("transcode");
+        if (transcode == null) {
+            return null;
+        }
+        return new AudioTranscoder.Options(
+            transcode.optString("format", AudioTranscoder.FORMAT_AAC),
+            transcode.optInt("bitrate", AudioTranscoder.DEFAULT_BITRATE),
+            transcode.optInt("sampleRate", 0),
+            transcode.optInt("channels", 0)
+        );
+    }
+
+    private static Set<String> getStripExifTags(PluginCall call) {
+        Set<String> tags = new HashSet<>();
+        JSArray stripExif = call.getArray("stripExif");
+        if (stripExif == null) {
+            return tags;
+        }
+        for (int i = 0; i < stripExif.length(); i++) {
+            String tag = stripExif.optString(i, null);
+            if (!JpegExif.isSupportedTag(tag)) {
+                throw new IllegalArgumentException("Unsupported EXIF tag: " + tag);
+            }
+            tags.add(tag);
+        }
+        return tags;
+    }
+
+    private static VideoCompressor.Options getVideoCompressOptions(JSObject compress) {
+        if (compress == null) {
+            return null;
+        }
+        return new VideoCompressor.Options(
+            compress.optInt("maxWidth", 0),
+            compress.optInt("maxHeight", 0),
+            compress.optInt("bitrate", VideoCompressor.DEFAULT_BITRATE)
+        );
+    }
+
+    private boolean isEmbedded(PluginCall call) {
+        return MODE_EMBEDDED.equals(call.getString("mode"));
+    }
+
+    private ImageProcessor createImageProcessor(PluginCall call) {
+        int maxWidth = call.getInt("maxWidth", 0);
+        int maxHeight = call.getInt("maxHeight", 0);
+        int quality = call.getInt("quality", 100);
+        if (isEmbedded(call) && maxWidth <= 0 && maxHeight <= 0) {
+            // CameraX encodes at the requested quality, only a resize needs a second pass
+            return null;
+        }
+        return new ImageProcessor(maxWidth, maxHeight, quality);
+    }
+
+    /**
+     * Captures the whole session from one in-app camera session instead of
+     * relaunching the camera app for every item.
+     */
+    private void startEmbeddedCapture(PluginCall call, boolean video) {
+        CaptureSession session = sessions.get(call);
+        if (captureEngine != null && !captureEngine.isFinished()) {
+            sessions.reject(call, "The camera is in use by another capture");
+            return;
+        }
+        if (!isCameraXAvailable()) {
+            sessions.reject(
+                call,
+                "mode 'embedded' requires androidx.camera:camera-camera2, camera-lifecycle and camera-video in the app dependencies"
+            );
+            return;
+        }
+
+        ImageProcessor processor = session.imageProcessor;
+        // Items are processed one at a time on the I/O thread, in capture order
+        AtomicInteger streamed = new AtomicInteger();
+
+        CameraXBackend camera = new CameraXBackend(
+            getContext(),
+            getActivity(),
+            video,
+            call.getInt("quality", video ? 1 : 100),
+            video,
+            cameraExecutor
+        );
+        captureEngine = new CaptureEngine<>(
+            camera,
+            ioExecutor,
+            index -> getCaptureStore().newCaptureFile(video ? "video" : "image", video ? ".mp4" : ".jpg"),
+            (file, rotationDegrees) -> {
+                JSObject mediaFile = processEmbeddedCapture(call, processor, file, rotationDegrees);
+                if (session.streaming) {
+                    sessions.emitMediaCaptured(call, streamed.getAndIncrement(), mediaFile);
+                }
+                return mediaFile;
+            },
+            new CaptureEngine.Listener<JSObject>() {
+                @Override
+                public void onComplete(List<JSObject> results) {
+                    getBridge().executeOnMainThread(() -> {
+                        CaptureSession done = session;
+                        for (JSObject result : results) {
+                            done = done.withResult(result);
+                        }
+                        sessions.resolve(call, done);
+                        metrics.record(CaptureMetrics.Stage.TOTAL, done.startNanos);
+                    });
+                }
+
+                @Override
+                public void onError(Exception e, List<JSObject> results) {
+                    Log.e(TAG, "Embedded capture failed after " + results.size() + " items", e);
+                    getBridge().executeOnMainThread(() -> sessions.reject(call, "Capture failed", e));
+                }
             }
+        );
+
+        if (video) {
+            captureEngine.captureClips(session.limit, call.getInt("duration", 0) * 1000L);
         } else {
-            call.reject("Capture failed");
+            captureEngine.captureStills(session.limit);
+        }
+    }
+
+    /**
+     * Returns whether the app ships CameraX. The plugin only compiles against
+     * it, so apps that never use embedded capture do not pull it in.
+     */
+    private static boolean isCameraXAvailable() {
+        try {
+            Class.forName("androidx.camera.camera2.Camera2Config");
+            Class.forName("androidx.camera.lifecycle.ProcessCameraProvider");
+            Class.forName("androidx.camera.video.Recorder");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Turns one embedded capture into its MediaFile. Runs on the I/O thread
+     * while the camera takes the next item.
+     */
+    private JSObject processEmbeddedCapture(PluginCall call, ImageProcessor processor, File file, int rotationDegrees)
+        throws IOException {
+        String path = file.getAbsolutePath();
+        if (rotationDegrees != 0) {
+            // CameraX hands over the sensor image, record how it must be displayed
+            ExifInterface exif = new ExifInterface(path);
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(getExifOrientation(rotationDegrees)));
+            exif.saveAttributes();
+        }
+        JSObject exif = processExif(file, call.getBoolean("exif", false), getStripExifTags(call));
+        if (processor != null) {
+            long processStart = System.nanoTime();
+            processor.process(file);
+            metrics.record(CaptureMetrics.Stage.IMAGE_PROCESSING, processStart);
+        }
+        JSObject mediaFile = createMediaFile(call, path, checksumOf(call, path));
+        if (mediaFile == null) {
+            throw new IOException("Error creating media file");
+        }
+        if (exif != null) {
+            mediaFile.put("exif", exif);
+        }
+        return mediaFile;
+    }
+
+    /**
+     * Reads and strips the requested EXIF tags in one pass over the EXIF
+     * segment, without touching the image data.
+     */
+    private JSObject processExif(File file, boolean read, Set<String> strip) throws IOException {
+        if (!read && strip.isEmpty()) {
+            return null;
+        }
+        long exifStart = System.nanoTime();
+        JSObject exif = JpegExif.process(file, read, strip);
+        metrics.record(CaptureMetrics.Stage.EXIF, exifStart);
+        return read && exif == null ? new JSObject() : exif;
+    }
+
+    private static int getExifOrientation(int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                return ExifInterface.ORIENTATION_ROTATE_90;
+            case 180:
+                return ExifInterface.ORIENTATION_ROTATE_180;
+            case 270:
+                return ExifInterface.ORIENTATION_ROTATE_270;
+            default:
+                return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Computes the requested checksum of a capture on the I/O thread, then
+     * finishes the capture on the main thread.
+     */
+    private void computeChecksum(PluginCall call, CaptureSession session, CaptureFinisher finisher) {
+        if (call.getString("checksum") == null) {
+            finisher.finish(call, session, null);
+            return;
+        }
+        ioExecutor.execute(() -> finishWithChecksum(call, session, finisher));
+    }
+
+    /**
+     * Same as computeChecksum, for callers already running on the I/O thread.
+     */
+    private void finishWithChecksum(PluginCall call, CaptureSession session, CaptureFinisher finisher) {
+        String checksum;
+        try {
+            checksum = checksumOf(call, session.path);
+        } catch (IOException e) {
+            Log.e(TAG, "Error computing checksum", e);
+            sessions.reject(call, "Error computing checksum", e);
+            return;
         }
+        getBridge().executeOnMainThread(() -> finisher.finish(call, session, checksum));
     }
 
-    private String getTempDirectoryPath() {
-        File cache = new File(getContext().getCacheDir(), "com.capacitor.mediacapture");
-        cache.mkdirs();
-        return cache.getAbsolutePath();
+    /**
+     * Returns the checksum requested by the call, or null when none was requested.
+     */
+    private String checksumOf(PluginCall call, String path) throws IOException {
+        String algorithm = call.getString("checksum");
+        if (algorithm == null) {
+            return null;
+        }
+        long checksumStart = System.nanoTime();
+        String checksum = Checksum.compute(new File(path), algorithm);
+        metrics.record(CaptureMetrics.Stage.CHECKSUM, checksumStart);
+        return checksum;
     }
 
-    private JSObject createMediaFile(String path) {
+    @Override
+    protected void handleOnDestroy() {
+        if (captureEngine != null) {
+            captureEngine.close();
+        }
+        cameraExecutor.shutdown();
+        ioExecutor.shutdown();
+        probeExecutor.shutdown();
+        exportExecutor.shutdown();
+        videoExecutor.execute(() -> {
+            if (videoCompressor != null) {
+                videoCompressor.close();
+            }
+        });
+        videoExecutor.shutdown();
+        sweepExecutor.shutdown();
+        thumbnailExecutor.shutdown();
+        streamExecutor.shutdown();
+        uploadExecutor.shutdownNow();
+        if (readStreams != null) {
+            readStreams.closeAll();
+        }
+        if (formatDataCache != null) {
+            formatDataCache.close();
+        }
+        super.handleOnDestroy();
+    }
+
+    private synchronized CaptureStore getCaptureStore() {
+        if (captureStore == null) {
+            long quotaBytes = getConfig().getInt("cacheQuotaMB", DEFAULT_CACHE_QUOTA_MB) * 1024L * 1024L;
+            long maxAgeMillis = getConfig().getInt("cacheMaxAge", DEFAULT_CACHE_MAX_AGE) * 1000L;
+            captureStore = new CaptureStore(
+                new File(getContext().getCacheDir(), "com.capacitor.mediacapture"),
+                quotaBytes,
+                maxAgeMillis,
+                sweepExecutor
+            );
+        }
+        return captureStore;
+    }
+
+    private JSObject createMediaFile(PluginCall call, String path, String checksum) {
+        long createStart = System.nanoTime();
         File fp = new File(path);
         JSObject obj = new JSObject();
 
         try {
             obj.put("name", fp.getName());
             obj.put("fullPath", "file://" + fp.getAbsolutePath());
+            long mimeStart = System.nanoTime();
             obj.put("type", FileHelper.getMimeType(Uri.fromFile(fp), getContext()));
+            metrics.record(CaptureMetrics.Stage.MIME_LOOKUP, mimeStart);
             obj.put("lastModifiedDate", fp.lastModified());
             obj.put("size", fp.length());
+            if (checksum != null) {
+                obj.put("checksum", checksum);
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error creating media file object", e);
             return null;
         }
 
+        getCaptureStore().requestSweep();
+        metrics.record(CaptureMetrics.Stage.CREATE_MEDIA_FILE, createStart);
+
+        // Warm the thumbnail cache so the UI's first getThumbnail call is a hit
+        int thumbnailSize = call.getInt("thumbnailSize", 0);
+        String mimeType = obj.getString("type");
+        if (thumbnailSize > 0) {
+            thumbnailExecutor.execute(() -> {
+                try {
+                    getThumbnailForFile(path, mimeType, thumbnailSize);
+                } catch (Exception e) {
+                    Log.d(TAG, "Error pre-generating thumbnail", e);
+                }
+            });
+        }
+
         return obj;
     }
 
     private JSObject getFormatDataForFile(String filePath, String mimeType) throws JSONException {
-        Uri fileUrl = filePath.startsWith("file:") ? Uri.parse(filePath) : Uri.fromFile(new File(filePath));
+        Uri fileUrl = toFileUri(filePath);
+        File file = new File(fileUrl.getPath());
+        // Taken before probing, so a file rewritten during the probe is not cached under its new attributes
+        FormatDataCache.Key key = FormatDataCache.Key.of(file);
+        JSObject cached = getFormatDataCache().get(key);
+        if (cached != null) {
+            return cached;
+        }
+
         JSObject obj = new JSObject();
 
         // Setup defaults
@@ -403,77 +1455,101 @@ public class MediaCapturePlugin extends Plugin {
         obj.put("duration", 0);
         obj.put("codecs", "");
 
-        // If the mimeType isn't set, try to determine it
-        if (mimeType == null || mimeType.isEmpty() || "null".equals(mimeType)) {
+        // Route on the file content, the extension or the given type may be missing or wrong
+        FormatDetector.Result detected = FormatDetector.detect(file, obj);
+        if (detected.mimeType != null) {
+            mimeType = detected.mimeType;
+        } else if (mimeType == null || mimeType.isEmpty() || "null".equals(mimeType)) {
             mimeType = FileHelper.getMimeType(fileUrl, getContext());
         }
         Log.d(TAG, "Mime type = " + mimeType);
 
-        if (mimeType != null) {
-            if (mimeType.equals(IMAGE_JPEG) || filePath.endsWith(".jpg")) {
+        // Fall back to the platform decoders for anything the header parsers do not cover
+        if (!detected.parsed && mimeType != null) {
+            if (mimeType.startsWith("image/") || filePath.endsWith(".jpg")) {
                 obj = getImageData(fileUrl, obj);
-            } else if (Arrays.asList(AUDIO_TYPES).contains(mimeType)) {
-                obj = getAudioVideoData(filePath, obj, false);
-            } else if (mimeType.equals(VIDEO_3GPP) || mimeType.equals(VIDEO_MP4)) {
-                obj = getAudioVideoData(filePath, obj, true);
+            } else if (AUDIO_TYPES.contains(mimeType)) {
+                obj = MediaProbe.probe(fileUrl.getPath(), obj, false);
+            } else if (VIDEO_TYPES.contains(mimeType)) {
+                obj = MediaProbe.probe(fileUrl.getPath(), obj, true);
             }
         }
 
+        getFormatDataCache().put(key, obj);
         return obj;
     }
 
-    private JSObject getImageData(Uri fileUrl, JSObject obj) throws JSONException {
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(fileUrl.getPath(), options);
-        obj.put("height", options.outHeight);
-        obj.put("width", options.outWidth);
-        return obj;
+    private synchronized FormatDataCache getFormatDataCache() {
+        if (formatDataCache == null) {
+            long maxBytes = getConfig().getInt("formatDataCacheSize", DEFAULT_FORMAT_DATA_CACHE_SIZE);
+            formatDataCache = new FormatDataCache(new File(getContext().getCacheDir(), FORMAT_DATA_CACHE_FILE), maxBytes);
+        }
+        return formatDataCache;
     }
 
-    private JSObject getAudioVideoData(String filePath, JSObject obj, boolean video) throws JSONException {
-        MediaPlayer player = new MediaPlayer();
-        try {
-            player.setDataSource(filePath);
-            player.prepare();
-            obj.put("duration", player.getDuration() / 1000);
-            if (video) {
-                obj.put("height", player.getVideoHeight());
-                obj.put("width", player.getVideoWidth());
-            }
-        } catch (IOException e) {
-            Log.d(TAG, "Error loading video file", e);
-        } finally {
-            player.release();
+    private Uri toFileUri(String filePath) {
+        return filePath.startsWith("file:") ? Uri.parse(filePath) : Uri.fromFile(new File(filePath));
+    }
+
+    private ThumbnailService.Thumbnail getThumbnailForFile(String filePath, String mimeType, int size) throws IOException {
+        Uri fileUrl = toFileUri(filePath);
+        if (mimeType == null || mimeType.isEmpty() || "null".equals(mimeType)) {
+            mimeType = FileHelper.getMimeType(fileUrl, getContext());
         }
-        return obj;
+        boolean video = mimeType != null && mimeType.startsWith("video/");
+        if (!video && (mimeType == null || !mimeType.startsWith("image/"))) {
+            throw new IOException("Unsupported media type: " + mimeType);
+        }
+        return getThumbnailService().get(new File(fileUrl.getPath()), video, size);
     }
 
-    private void copyAudioFile(Uri sourceUri, String destinationPath) {
-        InputStream input = null;
-        OutputStream output = null;
-        try {
-            input = getContext().getContentResolver().openInputStream(sourceUri);
-            if (input == null) {
-                Log.e(TAG, "Unable to open input audio stream");
-                return;
-            }
+    private synchronized UploadManager getUploadManager() {
+        if (uploadManager == null) {
+            uploadManager = new UploadManager(
+                new File(getContext().getFilesDir(), UPLOAD_DIRECTORY),
+                uploadExecutor,
+                progress -> notifyListeners("uploadProgress", progress)
+            );
+        }
+        return uploadManager;
+    }
 
-            output = new FileOutputStream(destinationPath);
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                output.write(buffer, 0, bytesRead);
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error copying audio file", e);
-        } finally {
-            try {
-                if (output != null) output.close();
-                if (input != null) input.close();
-            } catch (IOException ex) {
-                Log.e(TAG, "Error closing streams", ex);
-            }
+    private VideoCompressor getVideoCompressor() {
+        if (videoCompressor == null) {
+            videoCompressor = new VideoCompressor();
+        }
+        return videoCompressor;
+    }
+
+    private synchronized GalleryExporter getGalleryExporter() {
+        if (galleryExporter == null) {
+            galleryExporter = new GalleryExporter(getContext().getContentResolver(), exportExecutor, EXPORT_THREADS);
         }
+        return galleryExporter;
+    }
+
+    private synchronized ReadStreamManager getReadStreams() {
+        if (readStreams == null) {
+            readStreams = new ReadStreamManager(getConfig().getInt("maxPendingReads", DEFAULT_MAX_PENDING_READS));
+        }
+        return readStreams;
+    }
+
+    private synchronized ThumbnailService getThumbnailService() {
+        if (thumbnailService == null) {
+            thumbnailService = new ThumbnailService(
+                new File(getContext().getCacheDir(), THUMBNAIL_DIRECTORY),
+                getConfig().getInt("thumbnailMemoryCacheSize", DEFAULT_THUMBNAIL_MEMORY_CACHE_SIZE),
+                getConfig().getInt("thumbnailDiskCacheMB", DEFAULT_THUMBNAIL_DISK_CACHE_MB) * 1024L * 1024L
+            );
+        }
+        return thumbnailService;
+    }
+
+    private JSObject getImageData(Uri fileUrl, JSObject obj) throws JSONException {
+        BitmapFactory.Options options = ImageProcessor.decodeBounds(fileUrl.getPath());
+        obj.put("height", options.outHeight);
+        obj.put("width", options.outWidth);
+        return obj;
     }
 }
@@ -0,0 +1,115 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import org.json.JSONException;
+
+/**
+ * Reads audio/video format data from the container headers.
+ *
+ * Unlike MediaPlayer.prepare(), neither MediaMetadataRetriever metadata
+ * lookups nor MediaExtractor track enumeration instantiate any decoders.
+ */
+public class MediaProbe {
+
+    private static final String TAG = "MediaCapture";
+
+    /**
+     * Fills duration, bitrate, codecs and (for video) width, height and
+     * rotation on the given object.
+     *
+     * @param path the local file system path of the media file
+     * @param obj the object to populate
+     * @param video whether video dimensions should be read
+     * @return the populated object
+     */
+    public static JSObject probe(String path, JSObject obj, boolean video) throws JSONException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(path);
+            obj.put("duration", parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)) / 1000);
+            obj.put("bitrate", parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE)));
+            if (video) {
+                obj.put("height", parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)));
+                obj.put("width", parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)));
+                obj.put("rotation", parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION)));
+            }
+        } catch (RuntimeException e) {
+            Log.d(TAG, "Error reading media metadata", e);
+        } finally {
+            release(retriever);
+        }
+
+        obj.put("codecs", getCodecs(path));
+        return obj;
+    }
+
+    /**
+     * Returns the comma separated MIME types of every track in the container,
+     * e.g. "video/avc,audio/mp4a-latm".
+     */
+    private static String getCodecs(String path) {
+        MediaExtractor extractor = new MediaExtractor();
+        StringBuilder codecs = new StringBuilder();
+        try {
+            extractor.setDataSource(path);
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null) {
+                    continue;
+                }
+                if (codecs.length() > 0) {
+                    codecs.append(',');
+                }
+                codecs.append(mime);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.d(TAG, "Error reading media tracks", e);
+        } finally {
+            extractor.release();
+        }
+        return codecs.toString();
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void release(MediaMetadataRetriever retriever) {
+        try {
+            retriever.release();
+        } catch (Exception e) {
+            Log.d(TAG, "Error releasing metadata retriever", e);
+        }
+    }
+}
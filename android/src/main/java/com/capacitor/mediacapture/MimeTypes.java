@@ -0,0 +1,323 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * MIME type resolution from file extensions and leading file bytes.
+ *
+ * Extensions are looked up in a precomputed open-addressing table that is
+ * probed with an ASCII case-insensitive hash computed directly over the
+ * path, so resolving a known extension allocates nothing and does not
+ * depend on the default locale. Content sniffing recognizes the containers
+ * this plugin captures and probes from their magic bytes.
+ */
+public class MimeTypes {
+
+    /** Number of leading bytes sniff() needs to recognize every supported format. */
+    public static final int SNIFF_LENGTH = 64;
+
+    // Magic numbers are kept as constants so sniffing allocates nothing
+    private static final int[] JPEG = { 0xFF, 0xD8, 0xFF };
+    private static final int[] PNG = { 0x89, 'P', 'N', 'G' };
+    private static final int[] GIF = { 'G', 'I', 'F', '8' };
+    private static final int[] RIFF = { 'R', 'I', 'F', 'F' };
+    private static final int[] WEBP = { 'W', 'E', 'B', 'P' };
+    private static final int[] WAVE = { 'W', 'A', 'V', 'E' };
+    private static final int[] FTYP = { 'f', 't', 'y', 'p' };
+    private static final int[] EBML = { 0x1A, 0x45, 0xDF, 0xA3 };
+    private static final int[] AMR = { '#', '!', 'A', 'M', 'R' };
+    private static final int[] OGG = { 'O', 'g', 'g', 'S' };
+    private static final int[] ID3 = { 'I', 'D', '3' };
+    private static final int[] BMP = { 'B', 'M' };
+    private static final int[] BRAND_3G2 = { '3', 'g', '2' };
+    private static final int[] BRAND_3GP = { '3', 'g' };
+    private static final int[] BRAND_M4A = { 'M', '4', 'A' };
+    private static final int[] BRAND_QT = { 'q', 't' };
+    private static final int[] BRAND_HEIC = { 'h', 'e', 'i', 'c' };
+    private static final int[] BRAND_HEIX = { 'h', 'e', 'i', 'x' };
+    private static final int[] BRAND_MIF1 = { 'm', 'i', 'f', '1' };
+    // Major brands of plain MP4 video, other ISO brands (AVIF, M4B, f4v, ...) are left to the extension
+    private static final int[][] BRANDS_MP4 = {
+        { 'i', 's', 'o', 'm' },
+        { 'i', 's', 'o', '2' },
+        { 'i', 's', 'o', '3' },
+        { 'i', 's', 'o', '4' },
+        { 'i', 's', 'o', '5' },
+        { 'i', 's', 'o', '6' },
+        { 'm', 'p', '4', '1' },
+        { 'm', 'p', '4', '2' },
+        { 'a', 'v', 'c', '1' },
+        { 'd', 'a', 's', 'h' },
+        { 'M', '4', 'V', ' ' },
+    };
+    private static final int[] WEBM_DOCTYPE = { 'w', 'e', 'b', 'm' };
+
+    private static final int MAX_EXTENSION_LENGTH = 8;
+    // Power of two, kept under half full so probe sequences stay short
+    private static final int TABLE_SIZE = 128;
+    private static final char[][] EXTENSIONS = new char[TABLE_SIZE][];
+    private static final String[] TYPES = new String[TABLE_SIZE];
+
+    static {
+        add("jpg", "image/jpeg");
+        add("jpeg", "image/jpeg");
+        add("jpe", "image/jpeg");
+        add("png", "image/png");
+        add("gif", "image/gif");
+        add("webp", "image/webp");
+        add("heic", "image/heic");
+        add("heif", "image/heif");
+        add("avif", "image/avif");
+        add("bmp", "image/bmp");
+        add("mp4", "video/mp4");
+        add("m4v", "video/mp4");
+        add("3gp", "video/3gpp");
+        add("3gpp", "video/3gpp");
+        add("3g2", "video/3gpp2");
+        add("mov", "video/quicktime");
+        add("webm", "video/webm");
+        add("mkv", "video/x-matroska");
+        add("m4a", "audio/mp4");
+        add("m4b", "audio/mp4");
+        add("aac", "audio/aac");
+        add("amr", "audio/amr");
+        add("3ga", "audio/3gpp");
+        add("wav", "audio/x-wav");
+        add("mp3", "audio/mpeg");
+        add("ogg", "audio/ogg");
+        add("oga", "audio/ogg");
+        add("opus", "audio/ogg");
+    }
+
+    private MimeTypes() {}
+
+    /**
+     * Returns the MIME type for the extension of the last path segment.
+     *
+     * @param path the file path or name
+     * @return the MIME type, or null when the path has no extension or it is not in the table
+     */
+    public static String fromPath(String path) {
+        int end = path.length();
+        int start = extensionStart(path);
+        if (start < 0) {
+            return null;
+        }
+        int length = end - start;
+        if (length == 0 || length > MAX_EXTENSION_LENGTH) {
+            return null;
+        }
+
+        int slot = hash(path, start, end) & (TABLE_SIZE - 1);
+        char[] extension;
+        while ((extension = EXTENSIONS[slot]) != null) {
+            if (matches(extension, path, start, length)) {
+                return TYPES[slot];
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index just after the last dot of the last path segment, or -1 when there is none.
+     */
+    public static int extensionStart(String path) {
+        for (int i = path.length() - 1; i >= 0; i--) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                return i + 1;
+            }
+            if (c == '/') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Identifies the format of a file from its leading bytes.
+     *
+     * @return the MIME type, or null when the file is unreadable or the format is not recognized
+     */
+    public static String sniff(File file) {
+        byte[] header = new byte[SNIFF_LENGTH];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return sniff(header, length);
+    }
+
+    /**
+     * Identifies a format from the first bytes of a file.
+     *
+     * @param header the leading bytes, ideally SNIFF_LENGTH of them
+     * @param length the number of valid bytes in header
+     * @return the MIME type, or null when the format is not recognized
+     */
+    public static String sniff(byte[] header, int length) {
+        if (length < 4) {
+            return null;
+        }
+        if (startsWith(header, length, 0, JPEG)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0, PNG)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0, GIF)) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 0, RIFF)) {
+            if (startsWith(header, length, 8, WEBP)) {
+                return "image/webp";
+            }
+            if (startsWith(header, length, 8, WAVE)) {
+                return "audio/x-wav";
+            }
+            return null;
+        }
+        if (startsWith(header, length, 4, FTYP)) {
+            return sniffIsoBrand(header, length);
+        }
+        if (startsWith(header, length, 0, EBML)) {
+            // EBML header, the DocType element tells WebM from Matroska
+            return indexOf(header, length, WEBM_DOCTYPE) >= 0 ? "video/webm" : "video/x-matroska";
+        }
+        if (startsWith(header, length, 0, AMR)) {
+            return "audio/amr";
+        }
+        if (startsWith(header, length, 0, OGG)) {
+            return "audio/ogg";
+        }
+        if (startsWith(header, length, 0, ID3)) {
+            return "audio/mpeg";
+        }
+        int b0 = header[0] & 0xFF;
+        int b1 = header[1] & 0xFF;
+        if (b0 == 0xFF && (b1 & 0xF6) == 0xF0) {
+            // ADTS sync word with layer 0
+            return "audio/aac";
+        }
+        if (b0 == 0xFF && (b1 & 0xE0) == 0xE0 && (b1 & 0x06) != 0) {
+            // MPEG audio frame sync with a non-reserved layer
+            return "audio/mpeg";
+        }
+        if (startsWith(header, length, 0, BMP)) {
+            return "image/bmp";
+        }
+        return null;
+    }
+
+    private static String sniffIsoBrand(byte[] header, int length) {
+        if (length < 12) {
+            return null;
+        }
+        if (startsWith(header, length, 8, BRAND_3G2)) {
+            return "video/3gpp2";
+        }
+        if (startsWith(header, length, 8, BRAND_3GP)) {
+            return "video/3gpp";
+        }
+        if (startsWith(header, length, 8, BRAND_M4A)) {
+            return "audio/mp4";
+        }
+        if (startsWith(header, length, 8, BRAND_QT)) {
+            return "video/quicktime";
+        }
+        if (
+            startsWith(header, length, 8, BRAND_HEIC) ||
+            startsWith(header, length, 8, BRAND_HEIX) ||
+            startsWith(header, length, 8, BRAND_MIF1)
+        ) {
+            return "image/heic";
+        }
+        for (int[] brand : BRANDS_MP4) {
+            if (startsWith(header, length, 8, brand)) {
+                return "video/mp4";
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, int[] magic) {
+        if (offset + magic.length > length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((data[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int length, int[] pattern) {
+        for (int i = 0; i + pattern.length <= length; i++) {
+            if (startsWith(data, length, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void add(String extension, String type) {
+        int slot = hash(extension, 0, extension.length()) & (TABLE_SIZE - 1);
+        while (EXTENSIONS[slot] != null) {
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        EXTENSIONS[slot] = extension.toCharArray();
+        TYPES[slot] = type;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + toLower(s.charAt(i));
+        }
+        return h ^ (h >>> 7);
+    }
+
+    private static boolean matches(char[] extension, String s, int start, int length) {
+        if (extension.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (extension[i] != toLower(s.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chunked, pull-based reads of large files.
+ *
+ * Streams on the same file share one FileChannel and read with positioned
+ * reads, so they never contend on a file pointer. Each stream reuses one
+ * chunk buffer, which keeps memory flat regardless of the file size. The
+ * consumer pulls chunks at its own pace; reads beyond the pending limit are
+ * refused rather than queued.
+ */
+public class ReadStreamManager {
+
+    private static final String TAG = "MediaCapture";
+
+    public static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final Map<String, PooledChannel> channels = new HashMap<>();
+    private final Map<String, Stream> streams = new HashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final int maxPendingReads;
+
+    private static class PooledChannel {
+
+        final RandomAccessFile file;
+        int references = 0;
+
+        PooledChannel(RandomAccessFile file) {
+            this.file = file;
+        }
+    }
+
+    public static class Stream {
+
+        public final String id;
+        public final String path;
+        public final long size;
+        public final int chunkSize;
+        final FileChannel channel;
+        final byte[] buffer;
+        long position = 0;
+        int pending = 0;
+
+        Stream(String id, String path, FileChannel channel, long size, int chunkSize) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.buffer = new byte[chunkSize];
+        }
+    }
+
+    public static class Chunk {
+
+        public final byte[] data;
+        public final int length;
+        public final long offset;
+        public final boolean eof;
+
+        Chunk(byte[] data, int length, long offset, boolean eof) {
+            this.data = data;
+            this.length = length;
+            this.offset = offset;
+            this.eof = eof;
+        }
+    }
+
+    public ReadStreamManager(int maxPendingReads) {
+        this.maxPendingReads = maxPendingReads;
+    }
+
+    public synchronized Stream open(File file, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        String path = file.getAbsolutePath();
+        PooledChannel pooled = channels.get(path);
+        if (pooled == null) {
+            pooled = new PooledChannel(new RandomAccessFile(file, "r"));
+            channels.put(path, pooled);
+        }
+        pooled.references++;
+
+        FileChannel channel = pooled.file.getChannel();
+        Stream stream = new Stream(String.valueOf(nextId.getAndIncrement()), path, channel, channel.size(), chunkSize);
+        streams.put(stream.id, stream);
+        return stream;
+    }
+
+    /**
+     * Reserves a read slot on the stream.
+     *
+     * @return the stream, or null when the stream does not exist
+     * @throws IllegalStateException when the stream already has the maximum number of pending reads
+     */
+    public synchronized Stream acquire(String id) {
+        Stream stream = streams.get(id);
+        if (stream == null) {
+            return null;
+        }
+        if (stream.pending >= maxPendingReads) {
+            throw new IllegalStateException("Too many pending reads on stream " + id);
+        }
+        stream.pending++;
+        return stream;
+    }
+
+    /**
+     * Reads the next chunk of a stream acquired with acquire().
+     *
+     * @param stream the stream
+     * @param offset the position to read from, or a negative value to continue after the previous chunk
+     * @param length the number of bytes to read, at most the stream chunk size
+     * @return the chunk, backed by the stream's buffer until the next read
+     */
+    public Chunk read(Stream stream, long offset, int length) throws IOException {
+        try {
+            synchronized (stream) {
+                long position = offset >= 0 ? offset : stream.position;
+                int wanted = length > 0 ? Math.min(length, stream.chunkSize) : stream.chunkSize;
+                ByteBuffer buffer = ByteBuffer.wrap(stream.buffer, 0, wanted);
+                int total = 0;
+                while (buffer.hasRemaining()) {
+                    int read = stream.channel.read(buffer, position + total);
+                    if (read < 0) {
+                        break;
+                    }
+                    total += read;
+                }
+                stream.position = position + total;
+                return new Chunk(stream.buffer, total, position, stream.position >= stream.size);
+            }
+        } finally {
+            synchronized (this) {
+                stream.pending--;
+            }
+        }
+    }
+
+    public synchronized int getPending(Stream stream) {
+        return stream.pending;
+    }
+
+    public synchronized boolean close(String id) {
+        Stream stream = streams.remove(id);
+        if (stream == null) {
+            return false;
+        }
+        PooledChannel pooled = channels.get(stream.path);
+        if (pooled != null && --pooled.references <= 0) {
+            channels.remove(stream.path);
+            closeQuietly(pooled.file);
+        }
+        return true;
+    }
+
+    public synchronized void closeAll() {
+        streams.clear();
+        for (PooledChannel pooled : channels.values()) {
+            closeQuietly(pooled.file);
+        }
+        channels.clear();
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            Log.d(TAG, "Error closing stream", e);
+        }
+    }
+}
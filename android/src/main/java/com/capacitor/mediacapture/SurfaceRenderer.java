@@ -0,0 +1,337 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Surface;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Copies decoded video frames into an encoder input surface on the GPU.
+ *
+ * The decoder renders into a SurfaceTexture; every frame is drawn as a
+ * full-screen quad into an EGL window surface wrapping the encoder's input
+ * surface, which scales it to the output size. Frames never reach the CPU.
+ * The EGL context and the decoder surface live as long as the renderer, so
+ * they are reused across a batch; only the encoder surface changes per
+ * transcode. All methods must be called from the same thread.
+ */
+public class SurfaceRenderer implements TranscodeGraph.Renderer {
+
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+    private static final long FRAME_TIMEOUT_MILLIS = 2500;
+
+    private static final String VERTEX_SHADER =
+        "uniform mat4 uTexMatrix;\n" +
+        "attribute vec4 aPosition;\n" +
+        "attribute vec4 aTextureCoord;\n" +
+        "varying vec2 vTextureCoord;\n" +
+        "void main() {\n" +
+        "    gl_Position = aPosition;\n" +
+        "    vTextureCoord = (uTexMatrix * aTextureCoord).xy;\n" +
+        "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#extension GL_OES_EGL_image_external : require\n" +
+        "precision mediump float;\n" +
+        "varying vec2 vTextureCoord;\n" +
+        "uniform samplerExternalOES sTexture;\n" +
+        "void main() {\n" +
+        "    gl_FragColor = texture2D(sTexture, vTextureCoord);\n" +
+        "}\n";
+
+    // x, y, u, v of a full-screen triangle strip
+    private static final float[] QUAD = { -1f, -1f, 0f, 0f, 1f, -1f, 1f, 0f, -1f, 1f, 0f, 1f, 1f, 1f, 1f, 1f };
+
+    private final HandlerThread callbackThread = new HandlerThread("MediaCaptureFrames");
+    private final Object frameLock = new Object();
+    private final float[] textureMatrix = new float[16];
+    private final FloatBuffer quad;
+
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLConfig config;
+    private EGLSurface idleSurface = EGL14.EGL_NO_SURFACE;
+    private EGLSurface outputSurface = EGL14.EGL_NO_SURFACE;
+    private Surface encoderSurface;
+    private int outputWidth;
+    private int outputHeight;
+
+    private int program;
+    private int textureId;
+    private int positionLocation;
+    private int textureCoordLocation;
+    private int textureMatrixLocation;
+    private SurfaceTexture surfaceTexture;
+    private Surface inputSurface;
+    private boolean frameAvailable = false;
+
+    public SurfaceRenderer() throws IOException {
+        quad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(QUAD).position(0);
+        try {
+            setUpEgl();
+            setUpProgram();
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+
+        callbackThread.start();
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setOnFrameAvailableListener(
+            texture -> {
+                synchronized (frameLock) {
+                    frameAvailable = true;
+                    frameLock.notifyAll();
+                }
+            },
+            new Handler(callbackThread.getLooper())
+        );
+        inputSurface = new Surface(surfaceTexture);
+    }
+
+    /**
+     * Returns the surface the decoder renders into.
+     */
+    public Surface getInputSurface() {
+        return inputSurface;
+    }
+
+    /**
+     * Directs the following frames into the given encoder input surface.
+     */
+    public void setOutputSurface(Surface surface, int width, int height) throws IOException {
+        releaseOutputSurface();
+        outputSurface = EGL14.eglCreateWindowSurface(display, config, surface, new int[] { EGL14.EGL_NONE }, 0);
+        if (outputSurface == null || outputSurface == EGL14.EGL_NO_SURFACE) {
+            outputSurface = EGL14.EGL_NO_SURFACE;
+            throw new IOException("Unable to create EGL surface: " + EGL14.eglGetError());
+        }
+        encoderSurface = surface;
+        outputWidth = width;
+        outputHeight = height;
+        makeCurrent(outputSurface);
+    }
+
+    /**
+     * Releases the encoder input surface of the last transcode.
+     */
+    public void releaseOutputSurface() {
+        if (outputSurface != EGL14.EGL_NO_SURFACE) {
+            EGL14.eglMakeCurrent(display, idleSurface, idleSurface, context);
+            EGL14.eglDestroySurface(display, outputSurface);
+            outputSurface = EGL14.EGL_NO_SURFACE;
+        }
+        if (encoderSurface != null) {
+            encoderSurface.release();
+            encoderSurface = null;
+        }
+        synchronized (frameLock) {
+            frameAvailable = false;
+        }
+    }
+
+    @Override
+    public void render(long presentationTimeUs) throws IOException {
+        awaitFrame();
+        surfaceTexture.updateTexImage();
+        surfaceTexture.getTransformMatrix(textureMatrix);
+
+        GLES20.glViewport(0, 0, outputWidth, outputHeight);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glUniformMatrix4fv(textureMatrixLocation, 1, false, textureMatrix, 0);
+        quad.position(0);
+        GLES20.glVertexAttribPointer(positionLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(positionLocation);
+        quad.position(2);
+        GLES20.glVertexAttribPointer(textureCoordLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(textureCoordLocation);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        EGLExt.eglPresentationTimeANDROID(display, outputSurface, presentationTimeUs * 1000);
+        if (!EGL14.eglSwapBuffers(display, outputSurface)) {
+            throw new IOException("Unable to submit frame: " + EGL14.eglGetError());
+        }
+    }
+
+    public void release() {
+        releaseOutputSurface();
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+        callbackThread.quitSafely();
+        if (display != EGL14.EGL_NO_DISPLAY) {
+            if (program != 0) {
+                GLES20.glDeleteProgram(program);
+                GLES20.glDeleteTextures(1, new int[] { textureId }, 0);
+            }
+            EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            if (idleSurface != EGL14.EGL_NO_SURFACE) {
+                EGL14.eglDestroySurface(display, idleSurface);
+            }
+            if (context != EGL14.EGL_NO_CONTEXT) {
+                EGL14.eglDestroyContext(display, context);
+            }
+            EGL14.eglReleaseThread();
+            EGL14.eglTerminate(display);
+        }
+        display = EGL14.EGL_NO_DISPLAY;
+        context = EGL14.EGL_NO_CONTEXT;
+        idleSurface = EGL14.EGL_NO_SURFACE;
+    }
+
+    private void awaitFrame() throws IOException {
+        synchronized (frameLock) {
+            long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MILLIS;
+            while (!frameAvailable) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Timed out waiting for a decoded frame");
+                }
+                try {
+                    frameLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for a decoded frame", e);
+                }
+            }
+            frameAvailable = false;
+        }
+    }
+
+    private void setUpEgl() throws IOException {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (display == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(display, version, 0, version, 1)) {
+            display = EGL14.EGL_NO_DISPLAY;
+            throw new IOException("Unable to initialize EGL");
+        }
+
+        int[] attributes = {
+            EGL14.EGL_RED_SIZE,
+            8,
+            EGL14.EGL_GREEN_SIZE,
+            8,
+            EGL14.EGL_BLUE_SIZE,
+            8,
+            EGL14.EGL_RENDERABLE_TYPE,
+            EGL14.EGL_OPENGL_ES2_BIT,
+            EGL14.EGL_SURFACE_TYPE,
+            EGL14.EGL_WINDOW_BIT | EGL14.EGL_PBUFFER_BIT,
+            EGL_RECORDABLE_ANDROID,
+            1,
+            EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] count = new int[1];
+        if (!EGL14.eglChooseConfig(display, attributes, 0, configs, 0, 1, count, 0) || count[0] == 0) {
+            throw new IOException("No recordable EGL config");
+        }
+        config = configs[0];
+
+        int[] contextAttributes = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        context = EGL14.eglCreateContext(display, config, EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+        if (context == null || context == EGL14.EGL_NO_CONTEXT) {
+            context = EGL14.EGL_NO_CONTEXT;
+            throw new IOException("Unable to create EGL context: " + EGL14.eglGetError());
+        }
+
+        // Keeps the context current between transcodes, when there is no encoder surface
+        int[] idleAttributes = { EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE };
+        idleSurface = EGL14.eglCreatePbufferSurface(display, config, idleAttributes, 0);
+        if (idleSurface == null || idleSurface == EGL14.EGL_NO_SURFACE) {
+            idleSurface = EGL14.EGL_NO_SURFACE;
+            throw new IOException("Unable to create EGL surface: " + EGL14.eglGetError());
+        }
+        makeCurrent(idleSurface);
+    }
+
+    private void setUpProgram() throws IOException {
+        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            program = 0;
+            throw new IOException("Unable to link shader program: " + log);
+        }
+        positionLocation = GLES20.glGetAttribLocation(program, "aPosition");
+        textureCoordLocation = GLES20.glGetAttribLocation(program, "aTextureCoord");
+        textureMatrixLocation = GLES20.glGetUniformLocation(program, "uTexMatrix");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    }
+
+    private static int compileShader(int type, String source) throws IOException {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IOException("Unable to compile shader: " + log);
+        }
+        return shader;
+    }
+
+    private void makeCurrent(EGLSurface surface) throws IOException {
+        if (!EGL14.eglMakeCurrent(display, surface, surface, context)) {
+            throw new IOException("Unable to make EGL context current: " + EGL14.eglGetError());
+        }
+    }
+}
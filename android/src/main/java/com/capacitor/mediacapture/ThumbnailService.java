@@ -0,0 +1,263 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Generates JPEG thumbnails of captured images and videos.
+ *
+ * Thumbnails are cached in two tiers: encoded bytes in a memory LRU bounded
+ * by a byte budget, and files in a disk directory bounded by its own budget.
+ * Cache keys include the source size and modification time, so a rewritten
+ * source gets a new thumbnail. Methods do blocking I/O and must be called
+ * from a single background thread.
+ */
+public class ThumbnailService {
+
+    private static final String TAG = "MediaCapture";
+    private static final int JPEG_QUALITY = 80;
+
+    private final File directory;
+    private final long maxDiskBytes;
+    private final LruCache<String, Thumbnail> memory;
+
+    public static class Thumbnail {
+
+        public final File file;
+        public final byte[] data;
+        public final int width;
+        public final int height;
+
+        Thumbnail(File file, byte[] data, int width, int height) {
+            this.file = file;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public ThumbnailService(File directory, int maxMemoryBytes, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LruCache<String, Thumbnail>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Thumbnail value) {
+                return value.data.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the thumbnail of the given file, generating it when neither
+     * cache tier has it.
+     *
+     * @param source the image or video file
+     * @param video whether the file is a video
+     * @param size the maximum width and height of the thumbnail
+     * @return the thumbnail
+     * @throws IOException if the file cannot be decoded
+     */
+    public Thumbnail get(File source, boolean video, int size) throws IOException {
+        String key = getKey(source, size);
+        Thumbnail thumbnail = memory.get(key);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        File file = new File(directory, key + ".jpg");
+        if (file.exists()) {
+            thumbnail = load(file);
+            file.setLastModified(System.currentTimeMillis());
+        } else {
+            Bitmap bitmap = video ? decodeVideoFrame(source, size) : decodeImage(source, size);
+            if (bitmap == null) {
+                throw new IOException("Unable to decode " + source);
+            }
+            try {
+                thumbnail = store(file, bitmap);
+            } finally {
+                bitmap.recycle();
+            }
+            trimDisk();
+        }
+        memory.put(key, thumbnail);
+        return thumbnail;
+    }
+
+    private static String getKey(File source, int size) {
+        Checksum checksum = Checksum.create(Checksum.SHA256);
+        byte[] key = (source.getAbsolutePath() + '|' + source.length() + '|' + source.lastModified() + '|' + size).getBytes(
+            StandardCharsets.UTF_8
+        );
+        checksum.update(key, 0, key.length);
+        return checksum.finish();
+    }
+
+    private Bitmap decodeImage(File source, int size) throws IOException {
+        String path = source.getAbsolutePath();
+        BitmapFactory.Options bounds = ImageProcessor.decodeBounds(path);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ImageProcessor.calculateInSampleSize(bounds.outWidth, bounds.outHeight, size, size);
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        // Thumbnails are shown as-is, so bake the EXIF orientation into the pixels
+        Matrix matrix = new Matrix();
+        int orientation = new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            default:
+                break;
+        }
+        float scale = Math.min(1f, (float) size / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        matrix.postScale(scale, scale);
+        return transform(bitmap, matrix);
+    }
+
+    private Bitmap decodeVideoFrame(File source, int size) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(source.getAbsolutePath());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                return retriever.getScaledFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, size, size);
+            }
+            Bitmap frame = retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) {
+                return null;
+            }
+            float scale = Math.min(1f, (float) size / Math.max(frame.getWidth(), frame.getHeight()));
+            Matrix matrix = new Matrix();
+            matrix.postScale(scale, scale);
+            return transform(frame, matrix);
+        } catch (RuntimeException e) {
+            Log.d(TAG, "Error grabbing video frame", e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.d(TAG, "Error releasing metadata retriever", e);
+            }
+        }
+    }
+
+    private static Bitmap transform(Bitmap bitmap, Matrix matrix) {
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+        return transformed;
+    }
+
+    private Thumbnail store(File file, Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes);
+        byte[] data = bytes.toByteArray();
+
+        directory.mkdirs();
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write thumbnail " + file);
+        }
+        return new Thumbnail(file, data, bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    private static Thumbnail load(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (InputStream input = new FileInputStream(file)) {
+            int offset = 0;
+            int bytesRead;
+            while (offset < data.length && (bytesRead = input.read(data, offset, data.length - offset)) != -1) {
+                offset += bytesRead;
+            }
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        return new Thumbnail(file, data, bounds.outWidth, bounds.outHeight);
+    }
+
+    private void trimDisk() {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        if (bytes <= maxDiskBytes) {
+            return;
+        }
+
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+        for (int i : order) {
+            if (bytes <= maxDiskBytes) {
+                break;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                bytes -= length;
+            }
+        }
+    }
+}
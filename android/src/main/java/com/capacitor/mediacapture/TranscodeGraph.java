@@ -0,0 +1,300 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Runs one video transcode: extractor, decoder, renderer, encoder and
+ * muxer, with the audio track copied through unchanged.
+ *
+ * Audio samples are written just before the first encoded video frame
+ * that follows them, so the output stays interleaved without buffering a
+ * whole track. The graph depends only on the interfaces below, whose
+ * constants and call sequences mirror the synchronous MediaCodec API, so it
+ * runs unchanged against stub codecs and muxers.
+ *
+ * @param <F> the media format type
+ */
+public class TranscodeGraph<F> {
+
+    public static final int INFO_TRY_AGAIN_LATER = -1;
+    public static final int INFO_OUTPUT_FORMAT_CHANGED = -2;
+    public static final int INFO_OUTPUT_BUFFERS_CHANGED = -3;
+    public static final int FLAG_KEY_FRAME = 1;
+    public static final int FLAG_CODEC_CONFIG = 2;
+    public static final int FLAG_END_OF_STREAM = 4;
+
+    static final long TIMEOUT_US = 10000;
+    // Loop passes without any buffer moving before the transcode is abandoned, at least 10 seconds
+    static final int MAX_IDLE_PASSES = 1000;
+
+    public static final class BufferInfo {
+
+        public int offset;
+        public int size;
+        public long presentationTimeUs;
+        public int flags;
+
+        public void set(int offset, int size, long presentationTimeUs, int flags) {
+            this.offset = offset;
+            this.size = size;
+            this.presentationTimeUs = presentationTimeUs;
+            this.flags = flags;
+        }
+    }
+
+    /**
+     * One selected track of the source.
+     */
+    public interface Track<T> {
+        T getFormat();
+
+        /**
+         * @return the sample size, or a negative value at the end of the track
+         */
+        int readSampleData(ByteBuffer buffer);
+
+        /**
+         * @return the time of the current sample, or a negative value at the end of the track
+         */
+        long getSampleTime();
+
+        /**
+         * @return whether the current sample is a sync sample
+         */
+        boolean isSyncSample();
+
+        void advance();
+    }
+
+    public interface Codec<T> {
+        int dequeueInputBuffer(long timeoutUs);
+
+        ByteBuffer getInputBuffer(int index);
+
+        void queueInputBuffer(int index, int size, long presentationTimeUs, int flags);
+
+        int dequeueOutputBuffer(BufferInfo info, long timeoutUs);
+
+        ByteBuffer getOutputBuffer(int index);
+
+        T getOutputFormat();
+
+        void releaseOutputBuffer(int index, boolean render);
+
+        void signalEndOfInputStream();
+    }
+
+    /**
+     * Draws the frame the decoder just released into the encoder input.
+     */
+    public interface Renderer {
+        void render(long presentationTimeUs) throws IOException;
+    }
+
+    public interface Muxer<T> {
+        int addTrack(T format);
+
+        void start();
+
+        void writeSampleData(int track, ByteBuffer data, BufferInfo info);
+    }
+
+    public interface Listener {
+        /**
+         * @param progress the fraction of the source transcoded, in range [0-1]
+         */
+        void onProgress(double progress);
+    }
+
+    private final Track<F> video;
+    private final Track<F> audio;
+    private final Codec<F> decoder;
+    private final Renderer renderer;
+    private final Codec<F> encoder;
+    private final Muxer<F> muxer;
+    private final long durationUs;
+    private final ByteBuffer audioBuffer;
+
+    private final BufferInfo decoderInfo = new BufferInfo();
+    private final BufferInfo encoderInfo = new BufferInfo();
+    private final BufferInfo audioInfo = new BufferInfo();
+    private boolean extracted = false;
+    private boolean decoded = false;
+    private boolean encoded = false;
+    private boolean muxing = false;
+    private int videoTrack = -1;
+    private int audioTrack = -1;
+    private int percent = -1;
+
+    /**
+     * @param video the video track of the source
+     * @param audio the audio track copied to the output, or null
+     * @param decoder the started video decoder, rendering to the renderer's surface
+     * @param renderer the renderer drawing decoded frames into the encoder
+     * @param encoder the started video encoder, fed from its input surface
+     * @param muxer the muxer writing the output
+     * @param durationUs the duration of the source, or 0 if unknown
+     * @param audioBuffer the buffer audio samples are copied through, at least as large as one sample
+     */
+    public TranscodeGraph(
+        Track<F> video,
+        Track<F> audio,
+        Codec<F> decoder,
+        Renderer renderer,
+        Codec<F> encoder,
+        Muxer<F> muxer,
+        long durationUs,
+        ByteBuffer audioBuffer
+    ) {
+        this.video = video;
+        this.audio = audio;
+        this.decoder = decoder;
+        this.renderer = renderer;
+        this.encoder = encoder;
+        this.muxer = muxer;
+        this.durationUs = durationUs;
+        this.audioBuffer = audioBuffer;
+    }
+
+    /**
+     * Moves buffers through the graph until the encoder signals the end of
+     * the stream.
+     *
+     * @throws IOException if the encoder produced no output or the graph stopped moving
+     */
+    public void run(Listener listener) throws IOException {
+        int idle = 0;
+        while (!encoded) {
+            boolean moved = false;
+            if (!extracted) {
+                moved |= feedDecoder();
+            }
+            if (!decoded) {
+                moved |= drainDecoder();
+            }
+            moved |= drainEncoder(listener);
+
+            idle = moved ? 0 : idle + 1;
+            if (idle > MAX_IDLE_PASSES) {
+                throw new IOException("Transcode stalled");
+            }
+        }
+        if (!muxing) {
+            throw new IOException("The encoder produced no output");
+        }
+        copyAudio(Long.MAX_VALUE);
+    }
+
+    private boolean feedDecoder() {
+        int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+        if (index < 0) {
+            return false;
+        }
+        ByteBuffer buffer = decoder.getInputBuffer(index);
+        int size = video.readSampleData(buffer);
+        if (size < 0) {
+            decoder.queueInputBuffer(index, 0, 0, FLAG_END_OF_STREAM);
+            extracted = true;
+        } else {
+            decoder.queueInputBuffer(index, size, video.getSampleTime(), 0);
+            video.advance();
+        }
+        return true;
+    }
+
+    private boolean drainDecoder() throws IOException {
+        int index = decoder.dequeueOutputBuffer(decoderInfo, TIMEOUT_US);
+        if (index < 0) {
+            // Format and buffer changes need no action, the decoder renders to a surface
+            return index != INFO_TRY_AGAIN_LATER;
+        }
+        boolean render = decoderInfo.size > 0;
+        decoder.releaseOutputBuffer(index, render);
+        if (render) {
+            renderer.render(decoderInfo.presentationTimeUs);
+        }
+        if ((decoderInfo.flags & FLAG_END_OF_STREAM) != 0) {
+            encoder.signalEndOfInputStream();
+            decoded = true;
+        }
+        return true;
+    }
+
+    private boolean drainEncoder(Listener listener) {
+        int index = encoder.dequeueOutputBuffer(encoderInfo, TIMEOUT_US);
+        if (index == INFO_OUTPUT_FORMAT_CHANGED) {
+            // Every track has to be added before the muxer starts
+            videoTrack = muxer.addTrack(encoder.getOutputFormat());
+            if (audio != null) {
+                audioTrack = muxer.addTrack(audio.getFormat());
+            }
+            muxer.start();
+            muxing = true;
+            return true;
+        }
+        if (index < 0) {
+            return index != INFO_TRY_AGAIN_LATER;
+        }
+
+        boolean config = (encoderInfo.flags & FLAG_CODEC_CONFIG) != 0;
+        if (muxing && !config && encoderInfo.size > 0) {
+            copyAudio(encoderInfo.presentationTimeUs);
+            muxer.writeSampleData(videoTrack, encoder.getOutputBuffer(index), encoderInfo);
+            reportProgress(listener, encoderInfo.presentationTimeUs);
+        }
+        encoder.releaseOutputBuffer(index, false);
+        if ((encoderInfo.flags & FLAG_END_OF_STREAM) != 0) {
+            encoded = true;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the audio samples up to the given time.
+     */
+    private void copyAudio(long untilUs) {
+        if (audio == null || !muxing) {
+            return;
+        }
+        long time;
+        while ((time = audio.getSampleTime()) >= 0 && time <= untilUs) {
+            int size = audio.readSampleData(audioBuffer);
+            if (size < 0) {
+                return;
+            }
+            audioInfo.set(0, size, time, audio.isSyncSample() ? FLAG_KEY_FRAME : 0);
+            muxer.writeSampleData(audioTrack, audioBuffer, audioInfo);
+            audio.advance();
+        }
+    }
+
+    private void reportProgress(Listener listener, long presentationTimeUs) {
+        if (listener == null || durationUs <= 0) {
+            return;
+        }
+        int current = (int) Math.min(100, Math.max(0, presentationTimeUs * 100 / durationUs));
+        if (current != percent) {
+            percent = current;
+            listener.onProgress(current / 100.0);
+        }
+    }
+}
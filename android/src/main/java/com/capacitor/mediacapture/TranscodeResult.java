@@ -0,0 +1,49 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Sizes and duration of an audio or video transcode.
+ */
+public class TranscodeResult {
+
+    public final long inputBytes;
+    public final long outputBytes;
+    public final long elapsedMillis;
+
+    public TranscodeResult(long inputBytes, long outputBytes, long elapsedMillis) {
+        this.inputBytes = inputBytes;
+        this.outputBytes = outputBytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getCompressionRatio() {
+        return outputBytes > 0 ? (double) inputBytes / outputBytes : 0;
+    }
+
+    public JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("originalSize", inputBytes);
+        result.put("compressionRatio", getCompressionRatio());
+        result.put("elapsedMs", elapsedMillis);
+        return result;
+    }
+}
@@ -0,0 +1,476 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Uploads files in fixed-size chunks with several requests in flight.
+ *
+ * Every chunk is sent as a PUT of its byte range to the target URL with a
+ * Content-Range header and an X-Upload-Id header identifying the upload, so
+ * the server can reassemble chunks arriving out of order. Completed chunks
+ * are persisted after each response, so an upload interrupted by a process
+ * restart resumes with the missing chunks only. Failed chunks are retried
+ * with exponential backoff, except for client errors other than 408 and 429,
+ * which fail the upload right away.
+ *
+ * Request headers are never written to disk, since they usually carry
+ * credentials. An upload restored with headers is paused until the app
+ * supplies them again through {@link #resume}.
+ */
+public class UploadManager {
+
+    private static final String TAG = "MediaCapture";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    public static final String STATE_UPLOADING = "uploading";
+    public static final String STATE_PAUSED = "paused";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_CANCELLED = "cancelled";
+
+    public interface Listener {
+        void onUploadProgress(JSObject progress);
+    }
+
+    private final File directory;
+    private final ScheduledExecutorService executor;
+    private final Listener listener;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private class Upload {
+
+        final String id;
+        final File file;
+        final String url;
+        final boolean headersRequired;
+        JSONObject headers;
+        final int chunkSize;
+        final int concurrency;
+        final long size;
+        final long lastModified;
+        final int chunkCount;
+        final BitSet completed;
+        final BitSet inFlight = new BitSet();
+        final int[] attempts;
+        long bytesSent;
+        String state = STATE_UPLOADING;
+
+        Upload(
+            String id,
+            File file,
+            String url,
+            JSONObject headers,
+            boolean headersRequired,
+            int chunkSize,
+            int concurrency,
+            long size,
+            long lastModified,
+            BitSet completed
+        ) {
+            this.id = id;
+            this.file = file;
+            this.url = url;
+            this.headers = headers;
+            this.headersRequired = headersRequired;
+            this.chunkSize = chunkSize;
+            this.concurrency = concurrency;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            this.completed = completed;
+            this.attempts = new int[chunkCount];
+            for (int i = completed.nextSetBit(0); i >= 0; i = completed.nextSetBit(i + 1)) {
+                bytesSent += chunkLength(i);
+            }
+        }
+
+        long chunkOffset(int index) {
+            return (long) index * chunkSize;
+        }
+
+        int chunkLength(int index) {
+            return (int) Math.min(chunkSize, size - chunkOffset(index));
+        }
+
+        File stateFile() {
+            return new File(directory, id + ".json");
+        }
+    }
+
+    public UploadManager(File directory, ScheduledExecutorService executor, Listener listener) {
+        this.directory = directory;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts uploading a file.
+     *
+     * @return the upload id
+     */
+    public String start(File file, String url, JSONObject headers, int chunkSize, int concurrency) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("File not found: " + file);
+        }
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("File is empty: " + file);
+        }
+        if (chunkSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Chunk size and concurrency must be positive");
+        }
+        Upload upload = new Upload(
+            UUID.randomUUID().toString(),
+            file,
+            url,
+            headers != null ? headers : new JSONObject(),
+            headers != null && headers.length() > 0,
+            chunkSize,
+            concurrency,
+            file.length(),
+            file.lastModified(),
+            new BitSet()
+        );
+        uploads.put(upload.id, upload);
+        synchronized (upload) {
+            persist(upload);
+            schedule(upload);
+        }
+        return upload.id;
+    }
+
+    /**
+     * Resumes the uploads persisted by a previous process. Uploads started
+     * with headers are restored paused, see {@link #resume}.
+     */
+    public void resumePending() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) {
+            return;
+        }
+        for (File stateFile : files) {
+            try {
+                Upload upload = restore(stateFile);
+                if (upload == null || uploads.containsKey(upload.id)) {
+                    continue;
+                }
+                if (upload.file.length() != upload.size || upload.file.lastModified() != upload.lastModified) {
+                    // The file changed since the upload started, the uploaded chunks are stale
+                    stateFile.delete();
+                    notify(upload, STATE_FAILED, "File changed before the upload completed");
+                    continue;
+                }
+                uploads.put(upload.id, upload);
+                if (upload.headersRequired) {
+                    synchronized (upload) {
+                        upload.state = STATE_PAUSED;
+                    }
+                    notify(upload, STATE_PAUSED, null);
+                    continue;
+                }
+                synchronized (upload) {
+                    schedule(upload);
+                }
+            } catch (IOException | JSONException e) {
+                Log.e(TAG, "Error restoring upload " + stateFile, e);
+                stateFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Continues a paused upload with the given request headers.
+     *
+     * @return false if there is no paused upload with this id
+     */
+    public boolean resume(String id, JSONObject headers) {
+        Upload upload = uploads.get(id);
+        if (upload == null) {
+            return false;
+        }
+        synchronized (upload) {
+            if (!STATE_PAUSED.equals(upload.state)) {
+                return false;
+            }
+            upload.headers = headers != null ? headers : new JSONObject();
+            upload.state = STATE_UPLOADING;
+            schedule(upload);
+        }
+        notify(upload, STATE_UPLOADING, null);
+        return true;
+    }
+
+    public boolean cancel(String id) {
+        Upload upload = uploads.remove(id);
+        if (upload == null) {
+            return false;
+        }
+        synchronized (upload) {
+            upload.state = STATE_CANCELLED;
+            upload.stateFile().delete();
+        }
+        notify(upload, STATE_CANCELLED, null);
+        return true;
+    }
+
+    public JSArray getUploads() {
+        JSArray list = new JSArray();
+        for (Upload upload : uploads.values()) {
+            synchronized (upload) {
+                list.put(toProgress(upload, upload.state, null));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Starts chunk requests until the upload has as many in flight as its
+     * concurrency allows. Must be called with the upload lock held.
+     */
+    private void schedule(Upload upload) {
+        if (!STATE_UPLOADING.equals(upload.state)) {
+            return;
+        }
+        if (upload.completed.cardinality() == upload.chunkCount) {
+            finish(upload);
+            return;
+        }
+        int index = 0;
+        while (upload.inFlight.cardinality() < upload.concurrency) {
+            index = nextPending(upload, index);
+            if (index < 0) {
+                break;
+            }
+            upload.inFlight.set(index);
+            submit(upload, index, 0);
+        }
+    }
+
+    private static int nextPending(Upload upload, int from) {
+        for (int i = from; i < upload.chunkCount; i++) {
+            if (!upload.completed.get(i) && !upload.inFlight.get(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void submit(Upload upload, int index, long delayMillis) {
+        executor.schedule(() -> sendChunk(upload, index), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendChunk(Upload upload, int index) {
+        synchronized (upload) {
+            if (!STATE_UPLOADING.equals(upload.state)) {
+                return;
+            }
+        }
+
+        boolean sent = false;
+        boolean retry = true;
+        String error = null;
+        try {
+            int status = put(upload, index);
+            // 308 is the "resume incomplete" answer of resumable upload servers
+            sent = (status >= 200 && status < 300) || status == 308;
+            if (!sent) {
+                error = "Server rejected chunk " + index + " with status " + status;
+                // Timeouts and rate limits may pass, other client errors will not
+                retry = status < 400 || status >= 500 || status == 408 || status == 429;
+            }
+        } catch (IOException e) {
+            error = e.getMessage();
+            Log.d(TAG, "Error uploading chunk " + index + " of " + upload.id, e);
+        }
+
+        synchronized (upload) {
+            if (!STATE_UPLOADING.equals(upload.state)) {
+                return;
+            }
+            if (sent) {
+                upload.inFlight.clear(index);
+                upload.completed.set(index);
+                upload.bytesSent += upload.chunkLength(index);
+                persist(upload);
+                notify(upload, STATE_UPLOADING, null);
+                schedule(upload);
+            } else if (retry && ++upload.attempts[index] < MAX_ATTEMPTS) {
+                long backoff = INITIAL_BACKOFF_MILLIS << (upload.attempts[index] - 1);
+                submit(upload, index, backoff);
+            } else {
+                upload.state = STATE_FAILED;
+                uploads.remove(upload.id);
+                upload.stateFile().delete();
+                notify(upload, STATE_FAILED, error);
+            }
+        }
+    }
+
+    /**
+     * Sends one chunk and returns the response status.
+     */
+    private int put(Upload upload, int index) throws IOException {
+        long offset = upload.chunkOffset(index);
+        int length = upload.chunkLength(index);
+        byte[] chunk = new byte[length];
+        try (RandomAccessFile file = new RandomAccessFile(upload.file, "r")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(upload.url).openConnection();
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setFixedLengthStreamingMode(length);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Range", "bytes " + offset + "-" + (offset + length - 1) + "/" + upload.size);
+            connection.setRequestProperty("X-Upload-Id", upload.id);
+            Iterator<String> keys = upload.headers.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                connection.setRequestProperty(key, upload.headers.optString(key));
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(chunk);
+            }
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void finish(Upload upload) {
+        upload.state = STATE_COMPLETED;
+        uploads.remove(upload.id);
+        upload.stateFile().delete();
+        notify(upload, STATE_COMPLETED, null);
+    }
+
+    private void notify(Upload upload, String state, String error) {
+        listener.onUploadProgress(toProgress(upload, state, error));
+    }
+
+    private static JSObject toProgress(Upload upload, String state, String error) {
+        JSObject progress = new JSObject();
+        progress.put("uploadId", upload.id);
+        progress.put("fullPath", "file://" + upload.file.getAbsolutePath());
+        progress.put("bytesSent", upload.bytesSent);
+        progress.put("totalBytes", upload.size);
+        progress.put("state", state);
+        if (error != null) {
+            progress.put("error", error);
+        }
+        return progress;
+    }
+
+    private void persist(Upload upload) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("id", upload.id);
+            json.put("path", upload.file.getAbsolutePath());
+            json.put("url", upload.url);
+            // Only whether there were headers, their values are asked for again on resume
+            json.put("headersRequired", upload.headersRequired);
+            json.put("chunkSize", upload.chunkSize);
+            json.put("concurrency", upload.concurrency);
+            json.put("size", upload.size);
+            json.put("lastModified", upload.lastModified);
+            JSONArray completed = new JSONArray();
+            for (int i = upload.completed.nextSetBit(0); i >= 0; i = upload.completed.nextSetBit(i + 1)) {
+                completed.put(i);
+            }
+            json.put("completed", completed);
+
+            directory.mkdirs();
+            File temp = new File(directory, upload.id + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(upload.stateFile())) {
+                temp.delete();
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error saving upload state", e);
+        }
+    }
+
+    private Upload restore(File stateFile) throws IOException, JSONException {
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line);
+            }
+        }
+        JSONObject json = new JSONObject(text.toString());
+        BitSet completed = new BitSet();
+        JSONArray indexes = json.getJSONArray("completed");
+        for (int i = 0; i < indexes.length(); i++) {
+            completed.set(indexes.getInt(i));
+        }
+        return new Upload(
+            json.getString("id"),
+            new File(json.getString("path")),
+            json.getString("url"),
+            new JSONObject(),
+            json.optBoolean("headersRequired", false),
+            json.getInt("chunkSize"),
+            json.getInt("concurrency"),
+            json.getLong("size"),
+            json.getLong("lastModified"),
+            completed
+        );
+    }
+}
@@ -0,0 +1,418 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+import android.view.Surface;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Re-encodes videos to H.264 at a smaller size and bitrate.
+ *
+ * Frames go from the decoder to the encoder through a SurfaceRenderer, and
+ * the audio track is copied without re-encoding. The codecs, the EGL
+ * context and the decoder surface are kept between transcodes and only
+ * reconfigured, so a batch or a multi-clip session pays for creating the
+ * hardware codecs once. Instances are not thread safe and must be used
+ * from a single thread.
+ */
+public class VideoCompressor {
+
+    private static final String TAG = "MediaCapture";
+    private static final String OUTPUT_MIME = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final String KEY_ROTATION = "rotation-degrees";
+    private static final int DEFAULT_FRAME_RATE = 30;
+    private static final int I_FRAME_INTERVAL = 1;
+    private static final int DEFAULT_AUDIO_BUFFER_SIZE = 256 * 1024;
+
+    public static final int DEFAULT_BITRATE = 2000000;
+
+    public static class Options {
+
+        final int maxWidth;
+        final int maxHeight;
+        final int bitrate;
+
+        /**
+         * @param maxWidth the maximum width of the displayed video, or 0 for no limit
+         * @param maxHeight the maximum height of the displayed video, or 0 for no limit
+         * @param bitrate the target video bitrate in bits per second
+         * @throws IllegalArgumentException if an option is out of range
+         */
+        public Options(int maxWidth, int maxHeight, int bitrate) {
+            if (maxWidth < 0 || maxHeight < 0) {
+                throw new IllegalArgumentException("Video size limits must not be negative");
+            }
+            if (bitrate <= 0) {
+                throw new IllegalArgumentException("Bitrate must be positive");
+            }
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.bitrate = bitrate;
+        }
+    }
+
+    private final Map<String, MediaCodec> decoders = new HashMap<>();
+    private MediaCodec encoder;
+    private SurfaceRenderer renderer;
+
+    /**
+     * Transcodes the video track of a file and copies its audio track.
+     *
+     * @param source the video to compress
+     * @param output the file to write
+     * @param options the target size and bitrate
+     * @param listener the listener notified of the progress, or null
+     * @return the sizes and the time taken
+     * @throws IOException if the source cannot be decoded or the output cannot be written
+     */
+    public TranscodeResult compress(File source, File output, Options options, TranscodeGraph.Listener listener) throws IOException {
+        long start = System.nanoTime();
+        MediaExtractor videoExtractor = new MediaExtractor();
+        MediaExtractor audioExtractor = null;
+        MediaCodec decoder = null;
+        MuxerPort muxer = null;
+        boolean failed = true;
+        try {
+            videoExtractor.setDataSource(source.getAbsolutePath());
+            MediaFormat inputFormat = selectTrack(videoExtractor, "video/");
+            if (inputFormat == null) {
+                throw new IOException("No video track in " + source);
+            }
+            audioExtractor = new MediaExtractor();
+            audioExtractor.setDataSource(source.getAbsolutePath());
+            MediaFormat audioFormat = selectTrack(audioExtractor, "audio/");
+            if (audioFormat == null) {
+                audioExtractor.release();
+                audioExtractor = null;
+            }
+
+            int rotation = takeRotation(inputFormat);
+            int[] size = getOutputSize(
+                inputFormat.getInteger(MediaFormat.KEY_WIDTH),
+                inputFormat.getInteger(MediaFormat.KEY_HEIGHT),
+                rotation,
+                options
+            );
+
+            if (renderer == null) {
+                renderer = new SurfaceRenderer();
+            }
+            MediaFormat outputFormat = MediaFormat.createVideoFormat(OUTPUT_MIME, size[0], size[1]);
+            outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, options.bitrate);
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, getInteger(inputFormat, MediaFormat.KEY_FRAME_RATE, DEFAULT_FRAME_RATE));
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
+            if (encoder == null) {
+                encoder = MediaCodec.createEncoderByType(OUTPUT_MIME);
+            }
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            Surface encoderSurface = encoder.createInputSurface();
+            renderer.setOutputSurface(encoderSurface, size[0], size[1]);
+            encoder.start();
+
+            String mime = inputFormat.getString(MediaFormat.KEY_MIME);
+            decoder = decoders.get(mime);
+            if (decoder == null) {
+                decoder = MediaCodec.createDecoderByType(mime);
+                decoders.put(mime, decoder);
+            }
+            decoder.configure(inputFormat, renderer.getInputSurface(), null, 0);
+            decoder.start();
+
+            muxer = new MuxerPort(new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4));
+            // The frames are stored unrotated, like the source, and only the hint rotates them
+            muxer.muxer.setOrientationHint(rotation);
+            long durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION) ? inputFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+            int audioBufferSize = audioFormat != null
+                ? getInteger(audioFormat, MediaFormat.KEY_MAX_INPUT_SIZE, DEFAULT_AUDIO_BUFFER_SIZE)
+                : 0;
+
+            TranscodeGraph<MediaFormat> graph = new TranscodeGraph<>(
+                new TrackPort(videoExtractor, inputFormat),
+                audioExtractor != null ? new TrackPort(audioExtractor, audioFormat) : null,
+                new CodecPort(decoder),
+                renderer,
+                new CodecPort(encoder),
+                muxer,
+                durationUs,
+                ByteBuffer.allocateDirect(Math.max(1, audioBufferSize))
+            );
+            graph.run(listener);
+            muxer.stop();
+            failed = false;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // MediaCodec and MediaMuxer report most failures as runtime exceptions
+            throw new IOException("Error compressing " + source, e);
+        } finally {
+            videoExtractor.release();
+            if (audioExtractor != null) {
+                audioExtractor.release();
+            }
+            if (muxer != null) {
+                muxer.release();
+            }
+            stopCodec(decoder);
+            stopCodec(encoder);
+            if (renderer != null) {
+                renderer.releaseOutputSurface();
+            }
+            if (failed) {
+                // A codec in an error state cannot be configured again
+                releaseCodecs();
+            }
+        }
+        return new TranscodeResult(source.length(), output.length(), (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Releases the codecs and the renderer.
+     */
+    public void close() {
+        releaseCodecs();
+        if (renderer != null) {
+            renderer.release();
+            renderer = null;
+        }
+    }
+
+    /**
+     * Scales the video to fit the limits, which apply to the displayed
+     * orientation, keeping even dimensions as encoders require. The size is
+     * in the stored orientation, as the decoder renders the frames unrotated.
+     */
+    static int[] getOutputSize(int width, int height, int rotation, Options options) {
+        boolean transposed = rotation == 90 || rotation == 270;
+        int limitWidth = transposed ? options.maxHeight : options.maxWidth;
+        int limitHeight = transposed ? options.maxWidth : options.maxHeight;
+        float scale = 1f;
+        if (limitWidth > 0) {
+            scale = Math.min(scale, (float) limitWidth / width);
+        }
+        if (limitHeight > 0) {
+            scale = Math.min(scale, (float) limitHeight / height);
+        }
+        int outputWidth = Math.max(2, Math.round(width * scale) & ~1);
+        int outputHeight = Math.max(2, Math.round(height * scale) & ~1);
+        return new int[] { outputWidth, outputHeight };
+    }
+
+    /**
+     * Reads the rotation of the source frames and clears it in the format.
+     * A decoder rendering to a surface applies the rotation it is configured
+     * with, which the muxer's orientation hint would then apply again.
+     */
+    static int takeRotation(MediaFormat format) {
+        int rotation = getInteger(format, KEY_ROTATION, 0);
+        if (rotation != 0) {
+            // MediaFormat cannot be copied before API 29, and nothing else reads the rotation from it
+            format.setInteger(KEY_ROTATION, 0);
+        }
+        return rotation;
+    }
+
+    private static MediaFormat selectTrack(MediaExtractor extractor, String prefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(prefix)) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static int getInteger(MediaFormat format, String key, int fallback) {
+        if (!format.containsKey(key)) {
+            return fallback;
+        }
+        try {
+            return format.getInteger(key);
+        } catch (ClassCastException e) {
+            // Some extractors store the frame rate as a float
+            return Math.round(format.getFloat(key));
+        }
+    }
+
+    private static void stopCodec(MediaCodec codec) {
+        if (codec == null) {
+            return;
+        }
+        try {
+            codec.stop();
+        } catch (RuntimeException e) {
+            Log.d(TAG, "Error stopping codec", e);
+        }
+    }
+
+    private void releaseCodecs() {
+        for (MediaCodec decoder : decoders.values()) {
+            decoder.release();
+        }
+        decoders.clear();
+        if (encoder != null) {
+            encoder.release();
+            encoder = null;
+        }
+    }
+
+    private static class TrackPort implements TranscodeGraph.Track<MediaFormat> {
+
+        private final MediaExtractor extractor;
+        private final MediaFormat format;
+
+        TrackPort(MediaExtractor extractor, MediaFormat format) {
+            this.extractor = extractor;
+            this.format = format;
+        }
+
+        @Override
+        public MediaFormat getFormat() {
+            return format;
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer buffer) {
+            return extractor.readSampleData(buffer, 0);
+        }
+
+        @Override
+        public long getSampleTime() {
+            return extractor.getSampleTime();
+        }
+
+        @Override
+        public boolean isSyncSample() {
+            return (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+        }
+
+        @Override
+        public void advance() {
+            extractor.advance();
+        }
+    }
+
+    private static class CodecPort implements TranscodeGraph.Codec<MediaFormat> {
+
+        private final MediaCodec codec;
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+        CodecPort(MediaCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public int dequeueInputBuffer(long timeoutUs) {
+            return codec.dequeueInputBuffer(timeoutUs);
+        }
+
+        @Override
+        public ByteBuffer getInputBuffer(int index) {
+            return codec.getInputBuffer(index);
+        }
+
+        @Override
+        public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+            codec.queueInputBuffer(index, 0, size, presentationTimeUs, flags);
+        }
+
+        @Override
+        public int dequeueOutputBuffer(TranscodeGraph.BufferInfo graphInfo, long timeoutUs) {
+            int index = codec.dequeueOutputBuffer(info, timeoutUs);
+            if (index >= 0) {
+                graphInfo.set(info.offset, info.size, info.presentationTimeUs, info.flags);
+            }
+            return index;
+        }
+
+        @Override
+        public ByteBuffer getOutputBuffer(int index) {
+            return codec.getOutputBuffer(index);
+        }
+
+        @Override
+        public MediaFormat getOutputFormat() {
+            return codec.getOutputFormat();
+        }
+
+        @Override
+        public void releaseOutputBuffer(int index, boolean render) {
+            codec.releaseOutputBuffer(index, render);
+        }
+
+        @Override
+        public void signalEndOfInputStream() {
+            codec.signalEndOfInputStream();
+        }
+    }
+
+    private static class MuxerPort implements TranscodeGraph.Muxer<MediaFormat> {
+
+        final MediaMuxer muxer;
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        private boolean started = false;
+
+        MuxerPort(MediaMuxer muxer) {
+            this.muxer = muxer;
+        }
+
+        @Override
+        public int addTrack(MediaFormat format) {
+            return muxer.addTrack(format);
+        }
+
+        @Override
+        public void start() {
+            muxer.start();
+            started = true;
+        }
+
+        @Override
+        public void writeSampleData(int track, ByteBuffer data, TranscodeGraph.BufferInfo graphInfo) {
+            info.set(graphInfo.offset, graphInfo.size, graphInfo.presentationTimeUs, graphInfo.flags);
+            muxer.writeSampleData(track, data, info);
+        }
+
+        void stop() {
+            if (started) {
+                started = false;
+                muxer.stop();
+            }
+        }
+
+        void release() {
+            try {
+                stop();
+            } catch (RuntimeException e) {
+                Log.d(TAG, "Error stopping muxer", e);
+            }
+            muxer.release();
+        }
+    }
+}
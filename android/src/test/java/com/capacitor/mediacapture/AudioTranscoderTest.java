@@ -0,0 +1,133 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class AudioTranscoderTest {
+
+    private static final int TONE_AMPLITUDE = 10000;
+    private static final double TONE_RMS = TONE_AMPLITUDE / Math.sqrt(2);
+
+    @Test
+    public void passesMatchingLayoutThrough() {
+        AudioTranscoder.Resampler resampler = new AudioTranscoder.Resampler(44100, 2, 44100, 2);
+        short[] in = { 1, 2, 3, 4, 5, 6 };
+        short[] out = new short[resampler.getMaxOutput(3)];
+        assertEquals(6, resampler.process(in, 3, out));
+        assertArrayEquals(in, Arrays.copyOf(out, 6));
+    }
+
+    @Test
+    public void downmixesStereoToMono() {
+        AudioTranscoder.Resampler resampler = new AudioTranscoder.Resampler(8000, 2, 8000, 1);
+        short[] out = new short[resampler.getMaxOutput(2)];
+        assertEquals(1, resampler.process(new short[] { 1000, -200, 1000, -200 }, 2, out));
+        assertEquals(400, out[0]);
+    }
+
+    @Test
+    public void downmixesSurroundToStereo() {
+        AudioTranscoder.Resampler resampler = new AudioTranscoder.Resampler(8000, 6, 8000, 2);
+        // L, R, C, LFE, Ls, Rs
+        short[] frame = { 1000, -1000, 400, 0, 200, -200 };
+        short[] in = new short[12];
+        System.arraycopy(frame, 0, in, 0, 6);
+        System.arraycopy(frame, 0, in, 6, 6);
+        short[] out = new short[resampler.getMaxOutput(2)];
+        assertEquals(2, resampler.process(in, 2, out));
+        // The centre and surround channels reach both sides instead of being dropped
+        assertEquals(400, out[0]);
+        assertEquals(-267, out[1]);
+    }
+
+    @Test
+    public void keepsFullScaleSurroundWithinRange() {
+        AudioTranscoder.Resampler resampler = new AudioTranscoder.Resampler(8000, 6, 8000, 2);
+        short[] in = new short[12];
+        Arrays.fill(in, Short.MAX_VALUE);
+        short[] out = new short[resampler.getMaxOutput(2)];
+        resampler.process(in, 2, out);
+        assertEquals(Short.MAX_VALUE, out[0]);
+        assertEquals(Short.MAX_VALUE, out[1]);
+    }
+
+    @Test
+    public void attenuatesToneAboveOutputNyquist() {
+        // 12 kHz cannot be represented at 16 kHz and would fold back to 4 kHz
+        short[] out = resampleTone(12000, 48000, 16000, 1024);
+        double rms = rms(out, 16000 / 10);
+        assertTrue("Aliased tone leaked through at RMS " + rms, rms < 0.01 * TONE_RMS);
+    }
+
+    @Test
+    public void keepsToneBelowOutputNyquist() {
+        short[] out = resampleTone(1000, 48000, 16000, 1024);
+        double rms = rms(out, 16000 / 10);
+        assertEquals(TONE_RMS, rms, 0.05 * TONE_RMS);
+    }
+
+    @Test
+    public void filtersChunksSeamlessly() {
+        short[] whole = resampleTone(5000, 44100, 16000, 44100);
+        short[] chunked = resampleTone(5000, 44100, 16000, 37);
+        assertEquals(whole.length, chunked.length);
+        for (int i = 0; i < whole.length; i++) {
+            // Allow for rounding of the interpolation position
+            assertEquals(whole[i], chunked[i], 1);
+        }
+    }
+
+    /**
+     * Resamples one second of a mono sine tone, fed in chunks of the given size.
+     */
+    private static short[] resampleTone(double frequency, int inRate, int outRate, int chunkFrames) {
+        AudioTranscoder.Resampler resampler = new AudioTranscoder.Resampler(inRate, 1, outRate, 1);
+        short[] out = new short[resampler.getMaxOutput(inRate)];
+        short[] chunk = new short[chunkFrames];
+        short[] chunkOut = new short[resampler.getMaxOutput(chunkFrames)];
+        int written = 0;
+        for (int start = 0; start < inRate; start += chunkFrames) {
+            int frames = Math.min(chunkFrames, inRate - start);
+            for (int i = 0; i < frames; i++) {
+                chunk[i] = (short) Math.round(TONE_AMPLITUDE * Math.sin(2 * Math.PI * frequency * (start + i) / inRate));
+            }
+            int count = resampler.process(chunk, frames, chunkOut);
+            System.arraycopy(chunkOut, 0, out, written, count);
+            written += count;
+        }
+        return Arrays.copyOf(out, written);
+    }
+
+    /**
+     * Returns the RMS level of the samples after the first ones, which hold the filter's ramp-in.
+     */
+    private static double rms(short[] samples, int skip) {
+        double sum = 0;
+        for (int i = skip; i < samples.length; i++) {
+            sum += (double) samples[i] * samples[i];
+        }
+        return Math.sqrt(sum / (samples.length - skip));
+    }
+}
@@ -0,0 +1,367 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CaptureEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeCamera camera = new FakeCamera();
+    private final ManualExecutor worker = new ManualExecutor();
+    private final RecordingListener listener = new RecordingListener();
+
+    @Test
+    public void takesStillsInOrder() throws Exception {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(3);
+        camera.completeOpen();
+
+        for (int i = 0; i < 3; i++) {
+            camera.completePicture("shot-" + i, 90);
+            worker.runAll();
+        }
+
+        assertEquals(Arrays.asList("shot-0@90", "shot-1@90", "shot-2@90"), listener.results);
+        assertNull(listener.error);
+        assertEquals(1, listener.calls);
+        assertEquals(3, camera.pictures);
+        assertEquals(1, camera.closed);
+        assertTrue(engine.isFinished());
+    }
+
+    @Test
+    public void takesNextShotWhileWorkerStoresPrevious() throws Exception {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(4);
+        camera.completeOpen();
+
+        camera.completePicture("shot-0", 0);
+        // The camera moves on before the first shot is stored
+        assertEquals(1, worker.pending());
+        assertTrue(camera.hasPendingPicture());
+        assertEquals(2, camera.pictures);
+
+        camera.completePicture("shot-1", 0);
+        assertEquals(CaptureEngine.MAX_IN_FLIGHT, worker.pending());
+        // The worker is full, the third shot waits for it
+        assertFalse(camera.hasPendingPicture());
+        assertEquals(2, camera.pictures);
+
+        worker.runOne();
+        assertTrue(camera.hasPendingPicture());
+        assertEquals(3, camera.pictures);
+
+        camera.completePicture("shot-2", 0);
+        assertFalse(camera.hasPendingPicture());
+        worker.runOne();
+        camera.completePicture("shot-3", 0);
+        assertEquals(0, listener.calls);
+        worker.runAll();
+
+        assertEquals(Arrays.asList("shot-0@0", "shot-1@0", "shot-2@0", "shot-3@0"), listener.results);
+        assertEquals(1, camera.closed);
+    }
+
+    @Test
+    public void keepsCaptureOrderWhenProcessingCompletesOutOfOrder() throws Exception {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(2);
+        camera.completeOpen();
+
+        camera.completePicture("first", 0);
+        camera.completePicture("second", 0);
+        worker.runLast();
+        worker.runAll();
+
+        assertEquals(Arrays.asList("first@0", "second@0"), listener.results);
+    }
+
+    @Test
+    public void recordsClipsIntoOutputFiles() throws Exception {
+        CaptureEngine<String> engine = newEngine((file, rotation) -> file.getName() + "@" + rotation);
+        engine.captureClips(2, 5000);
+        camera.completeOpen();
+
+        assertEquals(5000, camera.durationMs);
+        assertEquals("capture-0.bin", camera.recordOutput.getName());
+        camera.completeRecording();
+        assertEquals("capture-1.bin", camera.recordOutput.getName());
+        camera.completeRecording();
+        worker.runAll();
+
+        assertEquals(Arrays.asList("capture-0.bin@0", "capture-1.bin@0"), listener.results);
+        assertEquals(2, camera.recordings);
+        assertEquals(1, camera.closed);
+    }
+
+    @Test
+    public void stopsAfterCameraFailureMidBurst() throws Exception {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(5);
+        camera.completeOpen();
+
+        camera.completePicture("shot-0", 0);
+        camera.completePicture("shot-1", 0);
+        worker.runOne();
+        IOException failure = new IOException("Camera disconnected");
+        camera.failPicture(failure);
+
+        // No further shot, but the stored one still completes before the listener hears about it
+        assertFalse(camera.hasPendingPicture());
+        assertEquals(0, listener.calls);
+        worker.runAll();
+
+        assertSame(failure, listener.error);
+        assertEquals(Arrays.asList("shot-0@0", "shot-1@0"), listener.results);
+        assertEquals(1, listener.calls);
+        assertEquals(3, camera.pictures);
+        assertEquals(1, camera.closed);
+        assertTrue(engine.isFinished());
+    }
+
+    @Test
+    public void stopsAfterProcessingFailureMidBurst() throws Exception {
+        Exception failure = new IllegalStateException("Encoder failed");
+        CaptureEngine<String> engine = newEngine((file, rotation) -> {
+            String text = readText(file, rotation);
+            if (text.startsWith("shot-1")) {
+                throw failure;
+            }
+            return text;
+        });
+        engine.captureStills(4);
+        camera.completeOpen();
+
+        camera.completePicture("shot-0", 0);
+        camera.completePicture("shot-1", 0);
+        worker.runAll();
+        // The shot taken while shot-1 was processed is still stored
+        camera.completePicture("shot-2", 0);
+        assertFalse(camera.hasPendingPicture());
+        worker.runAll();
+
+        assertSame(failure, listener.error);
+        assertEquals(Arrays.asList("shot-0@0", "shot-2@0"), listener.results);
+        assertEquals(3, camera.pictures);
+        assertEquals(1, camera.closed);
+    }
+
+    @Test
+    public void failsWhenCameraDoesNotOpen() {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(3);
+        IOException failure = new IOException("No camera");
+        camera.failOpen(failure);
+
+        assertSame(failure, listener.error);
+        assertTrue(listener.results.isEmpty());
+        assertEquals(0, camera.pictures);
+        assertEquals(1, camera.closed);
+    }
+
+    @Test
+    public void closeReleasesCameraWithoutNotifying() throws Exception {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        engine.captureStills(3);
+        camera.completeOpen();
+        camera.completePicture("shot-0", 0);
+
+        engine.close();
+        assertTrue(engine.isFinished());
+        assertEquals(1, camera.closed);
+
+        // Callbacks arriving after close neither start shots nor reach the listener
+        camera.completePicture("shot-1", 0);
+        worker.runAll();
+        assertFalse(camera.hasPendingPicture());
+        assertEquals(2, camera.pictures);
+        assertEquals(0, listener.calls);
+
+        engine.close();
+        assertEquals(1, camera.closed);
+    }
+
+    @Test
+    public void rejectsSecondStartAndEmptyCapture() {
+        CaptureEngine<String> engine = newEngine(this::readText);
+        try {
+            engine.captureStills(0);
+            fail("Expected an empty capture to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        engine.captureStills(1);
+        try {
+            engine.captureClips(1, 1000);
+            fail("Expected a second start to be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, camera.opened);
+    }
+
+    private CaptureEngine<String> newEngine(CaptureEngine.Processor<String> processor) {
+        return new CaptureEngine<>(camera, worker, index -> new File(folder.getRoot(), "capture-" + index + ".bin"), processor, listener);
+    }
+
+    private String readText(File file, int rotationDegrees) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8) + "@" + rotationDegrees;
+    }
+
+    /** A camera whose callbacks are completed by the test. */
+    private static class FakeCamera implements CaptureEngine.Camera {
+
+        int opened = 0;
+        int pictures = 0;
+        int recordings = 0;
+        int closed = 0;
+        long durationMs;
+        File recordOutput;
+        private CaptureEngine.Callback<Void> openCallback;
+        private CaptureEngine.Callback<CaptureEngine.Picture> pictureCallback;
+        private CaptureEngine.Callback<Void> recordCallback;
+
+        @Override
+        public void open(CaptureEngine.Callback<Void> callback) {
+            opened++;
+            openCallback = callback;
+        }
+
+        @Override
+        public void takePicture(CaptureEngine.Callback<CaptureEngine.Picture> callback) {
+            assertNull("Overlapping takePicture", pictureCallback);
+            pictures++;
+            pictureCallback = callback;
+        }
+
+        @Override
+        public void record(File output, long durationMs, CaptureEngine.Callback<Void> callback) {
+            assertNull("Overlapping record", recordCallback);
+            recordings++;
+            this.recordOutput = output;
+            this.durationMs = durationMs;
+            recordCallback = callback;
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+
+        boolean hasPendingPicture() {
+            return pictureCallback != null;
+        }
+
+        void completeOpen() {
+            openCallback.onSuccess(null);
+        }
+
+        void failOpen(Exception e) {
+            openCallback.onError(e);
+        }
+
+        void completePicture(String text, int rotationDegrees) {
+            CaptureEngine.Callback<CaptureEngine.Picture> callback = pictureCallback;
+            pictureCallback = null;
+            callback.onSuccess(new CaptureEngine.Picture(text.getBytes(StandardCharsets.UTF_8), rotationDegrees));
+        }
+
+        void failPicture(Exception e) {
+            CaptureEngine.Callback<CaptureEngine.Picture> callback = pictureCallback;
+            pictureCallback = null;
+            callback.onError(e);
+        }
+
+        void completeRecording() throws IOException {
+            Files.write(recordOutput.toPath(), new byte[] { 1 });
+            CaptureEngine.Callback<Void> callback = recordCallback;
+            recordCallback = null;
+            callback.onSuccess(null);
+        }
+    }
+
+    /** Holds worker tasks until the test runs them. */
+    private static class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runOne() {
+            tasks.remove(0).run();
+        }
+
+        void runLast() {
+            tasks.remove(tasks.size() - 1).run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runOne();
+            }
+        }
+    }
+
+    private static class RecordingListener implements CaptureEngine.Listener<String> {
+
+        List<String> results = new ArrayList<>();
+        Exception error;
+        int calls = 0;
+
+        @Override
+        public void onComplete(List<String> results) {
+            calls++;
+            this.results = results;
+        }
+
+        @Override
+        public void onError(Exception e, List<String> results) {
+            calls++;
+            this.error = e;
+            this.results = results;
+        }
+    }
+}
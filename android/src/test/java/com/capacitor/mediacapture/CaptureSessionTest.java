@@ -0,0 +1,348 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CaptureSessionTest {
+
+    private static final int SESSIONS = 32;
+    private static final int LIMIT = 20;
+    private static final int PROBES = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(8);
+    private final ExecutorService probePool = Executors.newFixedThreadPool(4);
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutDown() {
+        pool.shutdownNow();
+        probePool.shutdownNow();
+        sweeper.shutdownNow();
+    }
+
+    @Test
+    public void keepsResultsOfOverlappingCallsApart() throws Exception {
+        RecordingHost host = new RecordingHost();
+        CaptureSessions sessions = new CaptureSessions(Runnable::run, probePool, host);
+        CaptureStore store = new CaptureStore(folder.newFolder("captures"), Long.MAX_VALUE, Long.MAX_VALUE, sweeper);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> submitted = new ArrayList<>();
+
+        List<TestCall> captures = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            JSObject options = new JSObject();
+            options.put("limit", LIMIT);
+            // Every other call streams its files as events
+            if (i % 2 == 1) {
+                options.put("stream", true);
+                options.put("correlationId", "correlation" + i);
+            }
+            TestCall call = new TestCall("capture" + i, options);
+            captures.add(call);
+            submitted.add(
+                pool.submit(() -> {
+                    start.await();
+                    captureAll(sessions, store, call);
+                    return null;
+                })
+            );
+        }
+
+        List<TestCall> probes = new ArrayList<>();
+        for (int i = 0; i < PROBES; i++) {
+            JSObject options = new JSObject();
+            options.put("fullPath", "/media/clip" + i + ".mp4");
+            options.put("type", "video/mp4");
+            TestCall call = new TestCall("probe" + i, options);
+            probes.add(call);
+            submitted.add(
+                pool.submit(() -> {
+                    start.await();
+                    sessions.getFormatData(call, (filePath, mimeType) -> {
+                        Thread.yield();
+                        JSObject data = new JSObject();
+                        data.put("path", filePath);
+                        data.put("type", mimeType);
+                        return data;
+                    });
+                    return null;
+                })
+            );
+        }
+
+        start.countDown();
+        for (Future<?> future : submitted) {
+            future.get();
+        }
+
+        Set<String> paths = new HashSet<>();
+        for (TestCall call : captures) {
+            JSObject ret = call.await();
+            assertNull(call.error);
+            assertEquals(LIMIT, ret.getInt("count"));
+            JSArray files = (JSArray) ret.get("files");
+            if (call.getBoolean("stream", false)) {
+                assertEquals(0, files.length());
+                assertEquals(call.getCallbackId(), ret.getString("sessionId"));
+                assertEquals(call.getString("correlationId"), ret.getString("correlationId"));
+                assertFalse(call.isKeptAlive());
+                assertTrue(host.released.contains(call));
+                List<JSObject> events = host.eventsOf(call.getCallbackId());
+                assertEquals(LIMIT, events.size());
+                for (int i = 0; i < LIMIT; i++) {
+                    JSObject event = events.get(i);
+                    assertEquals(i, event.getInt("index"));
+                    assertEquals(call.getString("correlationId"), event.getString("correlationId"));
+                    JSObject mediaFile = event.getJSObject("file");
+                    assertEquals(call.getCallbackId(), mediaFile.getString("sessionId"));
+                    assertTrue("Duplicate capture file", paths.add(mediaFile.getString("fullPath")));
+                }
+            } else {
+                assertEquals(LIMIT, files.length());
+                assertTrue(host.eventsOf(call.getCallbackId()).isEmpty());
+                for (int i = 0; i < files.length(); i++) {
+                    JSObject mediaFile = (JSObject) files.get(i);
+                    assertEquals(call.getCallbackId(), mediaFile.getString("sessionId"));
+                    assertTrue("Duplicate capture file", paths.add(mediaFile.getString("fullPath")));
+                }
+            }
+            assertEquals(1, call.completions.get());
+        }
+        assertEquals(SESSIONS * LIMIT, paths.size());
+        assertEquals(SESSIONS / 2, host.released.size());
+        assertEquals(0, sessions.size());
+
+        for (TestCall call : probes) {
+            JSObject data = call.await();
+            assertNull(call.error);
+            assertEquals(call.getString("fullPath"), data.getString("path"));
+            assertEquals("video/mp4", data.getString("type"));
+            assertEquals(1, call.completions.get());
+        }
+    }
+
+    @Test
+    public void rejectsProbesWithoutPathOrFailingProbe() throws Exception {
+        CaptureSessions sessions = new CaptureSessions(Runnable::run, probePool, new RecordingHost());
+
+        TestCall missing = new TestCall("missing", new JSObject());
+        sessions.getFormatData(missing, (filePath, mimeType) -> new JSObject());
+        missing.await();
+        assertEquals("File path is required", missing.error);
+
+        JSObject options = new JSObject();
+        options.put("fullPath", "/media/corrupt.mp4");
+        TestCall failing = new TestCall("failing", options);
+        sessions.getFormatData(failing, (filePath, mimeType) -> {
+            throw new IllegalStateException("corrupt");
+        });
+        failing.await();
+        assertEquals("Error getting format data", failing.error);
+    }
+
+    @Test
+    public void rejectEndsSessionAndReleasesStreamingCall() throws Exception {
+        RecordingHost host = new RecordingHost();
+        List<Runnable> io = new ArrayList<>();
+        CaptureSessions sessions = new CaptureSessions(io::add, probePool, host);
+        JSObject options = new JSObject();
+        options.put("stream", true);
+        TestCall call = new TestCall("call", options);
+        RecyclingProcessor processor = new RecyclingProcessor();
+
+        sessions.start(call, processor);
+        assertTrue(call.isKeptAlive());
+        assertEquals(1, sessions.size());
+        sessions.reject(call, "User cancelled");
+
+        call.await();
+        assertEquals("User cancelled", call.error);
+        assertNull(sessions.get(call));
+        assertFalse(call.isKeptAlive());
+        assertTrue(host.released.contains(call));
+        // The processor is recycled on the I/O thread, which may still be using it
+        assertFalse(processor.recycled);
+        io.forEach(Runnable::run);
+        assertTrue(processor.recycled);
+    }
+
+    private static void captureAll(CaptureSessions sessions, CaptureStore store, TestCall call) throws Exception {
+        sessions.start(call, null);
+        while (true) {
+            File file = store.newCaptureFile("image", ".jpg");
+            CaptureSession capturing = sessions.startCapture(call, file.getAbsolutePath());
+            Thread.yield();
+            sessions.markLaunched(capturing, System.nanoTime());
+            CaptureSession session = sessions.get(call);
+            JSObject mediaFile = new JSObject();
+            mediaFile.put("fullPath", session.path);
+            mediaFile.put("sessionId", call.getCallbackId());
+            CaptureSession next = sessions.addResult(call, session, mediaFile);
+            if (next.isComplete()) {
+                sessions.resolve(call, next);
+                return;
+            }
+        }
+    }
+
+    /** A call that records how it was completed instead of reaching a bridge. */
+    private static class TestCall extends PluginCall {
+
+        final AtomicInteger completions = new AtomicInteger();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile JSObject result;
+        volatile String error;
+
+        TestCall(String callbackId, JSObject data) {
+            super(null, "MediaCapture", callbackId, "test", data);
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            result = data;
+            completions.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void reject(String msg, String code, Exception ex, JSObject data) {
+            error = msg;
+            completions.incrementAndGet();
+            done.countDown();
+        }
+
+        JSObject await() throws InterruptedException {
+            assertTrue("Call " + getCallbackId() + " never completed", done.await(10, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+
+    private static class RecordingHost implements CaptureSessions.Host {
+
+        final Set<PluginCall> released = ConcurrentHashMap.newKeySet();
+        private final Queue<JSObject> events = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void notifyListeners(String eventName, JSObject data) {
+            assertEquals("mediaCaptured", eventName);
+            events.add(data);
+        }
+
+        @Override
+        public void releaseCall(PluginCall call) {
+            released.add(call);
+        }
+
+        List<JSObject> eventsOf(String sessionId) {
+            List<JSObject> matching = new ArrayList<>();
+            for (JSObject event : events) {
+                if (sessionId.equals(event.getString("sessionId"))) {
+                    matching.add(event);
+                }
+            }
+            return matching;
+        }
+    }
+
+    private static class RecyclingProcessor extends ImageProcessor {
+
+        boolean recycled = false;
+
+        RecyclingProcessor() {
+            super(0, 0, 100);
+        }
+
+        @Override
+        public void recycle() {
+            recycled = true;
+        }
+    }
+
+    @Test
+    public void leavesEarlierSnapshotsUntouched() {
+        CaptureSession started = CaptureSession.start("call", 2, false, null);
+        CaptureSession capturing = started.withCapture("/cache/a.jpg", 42);
+        CaptureSession done = capturing.withResult(new JSObject());
+
+        assertNull(started.path);
+        assertEquals("/cache/a.jpg", capturing.path);
+        assertEquals(42, capturing.launchNanos);
+        assertEquals(0, capturing.getCount());
+        assertEquals(0, capturing.getResults().length());
+        assertEquals(1, done.getCount());
+        assertEquals(1, done.getResults().length());
+        assertNull(done.path);
+        assertFalse(done.isComplete());
+        assertTrue(done.withResult(new JSObject()).isComplete());
+    }
+
+    @Test
+    public void countsStreamedFilesWithoutKeepingThem() {
+        CaptureSession session = CaptureSession.start("call", 0, true, null);
+        assertEquals(1, session.limit);
+        session = session.withResult(new JSObject());
+        assertTrue(session.isComplete());
+        assertEquals(1, session.getCount());
+        assertEquals(0, session.getResults().length());
+    }
+
+    @Test
+    public void namesCapturesStartedInTheSameMillisecondApart() throws Exception {
+        CaptureStore store = new CaptureStore(folder.newFolder("captures"), Long.MAX_VALUE, Long.MAX_VALUE, sweeper);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        List<Future<?>> calls = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            calls.add(pool.submit(() -> names.add(store.newCaptureFile("video", ".mp4").getName())));
+        }
+        for (Future<?> call : calls) {
+            call.get();
+        }
+        assertEquals(1000, names.size());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.CRC32;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class ChecksumTest {
+
+    // Not a multiple of the pool buffer, so the last read is partial
+    private static final int LARGE_SIZE = 20 * 1024 * 1024 + 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void matchesSha256TestVectors() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", digest(Checksum.SHA256, ""));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digest(Checksum.SHA256, "abc"));
+        assertEquals(
+            "248d6a61d20638b8e5c026930c3e6039a33ce45964ff2167f6ecedd419db06c1",
+            digest(Checksum.SHA256, "abcdbcdecdefdefgefghfghighijhijkijkljklmklmnlmnomnopnopq")
+        );
+    }
+
+    @Test
+    public void matchesCrc32TestVectors() {
+        assertEquals("00000000", digest(Checksum.CRC32, ""));
+        assertEquals("cbf43926", digest(Checksum.CRC32, "123456789"));
+        // Leading zero nibbles are kept
+        assertEquals("0d4a1185", digest(Checksum.CRC32, "hello world"));
+    }
+
+    @Test
+    public void splitUpdatesMatchSingleUpdate() {
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        for (String algorithm : new String[] { Checksum.SHA256, Checksum.CRC32 }) {
+            Checksum split = Checksum.create(algorithm);
+            split.update(data, 0, 10);
+            split.update(data, 10, data.length - 10);
+            Checksum single = Checksum.create(algorithm);
+            single.update(data, 0, data.length);
+            assertEquals(single.finish(), split.finish());
+        }
+    }
+
+    @Test
+    public void computeMatchesPlatformOverLargeFile() throws Exception {
+        byte[] data = randomBytes(LARGE_SIZE);
+        File file = write(data);
+        assertEquals(platformSha256(data), Checksum.compute(file, Checksum.SHA256));
+        assertEquals(platformCrc32(data), Checksum.compute(file, Checksum.CRC32));
+    }
+
+    @Test
+    public void fusedCopyMatchesPlatformOverLargeFile() throws Exception {
+        byte[] data = randomBytes(LARGE_SIZE);
+        File source = write(data);
+        for (String algorithm : new String[] { Checksum.SHA256, Checksum.CRC32 }) {
+            File destination = new File(folder.getRoot(), algorithm + ".bin");
+            Checksum checksum = Checksum.create(algorithm);
+            long copied = FileHelper.copy(RuntimeEnvironment.getApplication().getContentResolver(), Uri.fromFile(source), destination, checksum);
+            assertEquals(LARGE_SIZE, copied);
+            assertEquals(LARGE_SIZE, destination.length());
+            String expected = Checksum.SHA256.equals(algorithm) ? platformSha256(data) : platformCrc32(data);
+            assertEquals(expected, checksum.finish());
+        }
+    }
+
+    @Test
+    public void supportsOnlyKnownAlgorithms() {
+        assertTrue(Checksum.isSupported(Checksum.SHA256));
+        assertTrue(Checksum.isSupported(Checksum.CRC32));
+        assertFalse(Checksum.isSupported("md5"));
+        assertFalse(Checksum.isSupported(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownAlgorithm() {
+        Checksum.create("md5");
+    }
+
+    private static String digest(String algorithm, String text) {
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        Checksum checksum = Checksum.create(algorithm);
+        checksum.update(data, 0, data.length);
+        return checksum.finish();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private File write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(data);
+        }
+        return file;
+    }
+
+    private static String platformSha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static String platformCrc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return String.format("%08x", crc.getValue());
+    }
+}
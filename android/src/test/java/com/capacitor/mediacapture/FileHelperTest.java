@@ -0,0 +1,270 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class FileHelperTest {
+
+    // Several times the pool buffer so the buffered path loops
+    private static final long LARGE_SIZE = 48L * 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void copiesLargeFileThroughChannel() throws Exception {
+        File source = createSparseFile(LARGE_SIZE);
+        File destination = new File(folder.getRoot(), "channel.bin");
+
+        long copied = FileHelper.copy(getResolver(), Uri.fromFile(source), destination, null);
+        assertEquals(LARGE_SIZE, copied);
+        assertEquals(LARGE_SIZE, destination.length());
+        assertSameContent(source, destination);
+    }
+
+    @Test
+    public void copiesLargeFileThroughPooledBufferWithChecksum() throws Exception {
+        File source = createSparseFile(LARGE_SIZE);
+        File destination = new File(folder.getRoot(), "buffered.bin");
+
+        Checksum checksum = Checksum.create(Checksum.SHA256);
+        long copied = FileHelper.copy(getResolver(), Uri.fromFile(source), destination, checksum);
+        assertEquals(LARGE_SIZE, copied);
+        assertEquals(LARGE_SIZE, destination.length());
+        assertSameContent(source, destination);
+        assertEquals(Checksum.compute(source, Checksum.SHA256), checksum.finish());
+    }
+
+    @Test
+    public void copiesEmptyFile() throws Exception {
+        File source = folder.newFile("empty.bin");
+        File destination = new File(folder.getRoot(), "empty-copy.bin");
+
+        assertEquals(0, FileHelper.copy(getResolver(), Uri.fromFile(source), destination, null));
+        assertEquals(0, destination.length());
+    }
+
+    @Test
+    public void failsForMissingSource() throws Exception {
+        File destination = new File(folder.getRoot(), "missing-copy.bin");
+        try {
+            FileHelper.copy(getResolver(), Uri.fromFile(new File(folder.getRoot(), "missing.bin")), destination, null);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void failsForUnwritableDestination() throws Exception {
+        File source = createSparseFile(1024);
+        File destination = new File(new File(folder.getRoot(), "missing-dir"), "copy.bin");
+        try {
+            FileHelper.copy(getResolver(), Uri.fromFile(source), destination, null);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void transferFailsWhenSourceEndsEarly() throws Exception {
+        byte[] data = "short source".getBytes(StandardCharsets.US_ASCII);
+        File source = folder.newFile("short.bin");
+        try (FileOutputStream output = new FileOutputStream(source)) {
+            output.write(data);
+        }
+        File destination = new File(folder.getRoot(), "short-copy.bin");
+
+        try (
+            FileInputStream input = new FileInputStream(source);
+            FileOutputStream output = new FileOutputStream(destination);
+            FileChannel in = new OversizedChannel(input.getChannel(), data.length + 100)
+        ) {
+            FileHelper.transfer(in, output.getChannel());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(data.length + " of " + (data.length + 100)));
+        }
+    }
+
+    private static ContentResolver getResolver() {
+        return RuntimeEnvironment.getApplication().getContentResolver();
+    }
+
+    /**
+     * Creates a sparse file of the given size with random data written at a
+     * few scattered offsets, so a copy that drops or shifts bytes is caught.
+     */
+    private File createSparseFile(long size) throws IOException {
+        File file = folder.newFile();
+        Random random = new Random(size);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            byte[] block = new byte[4096];
+            for (long offset = 0; offset < size; offset += size / 7 + 1) {
+                random.nextBytes(block);
+                raf.seek(offset);
+                raf.write(block, 0, (int) Math.min(block.length, size - offset));
+            }
+            raf.seek(size - 1);
+            raf.write(0x5A);
+        }
+        return file;
+    }
+
+    private static void assertSameContent(File expected, File actual) throws IOException {
+        assertEquals(expected.length(), actual.length());
+        byte[] a = new byte[64 * 1024];
+        byte[] b = new byte[64 * 1024];
+        try (FileInputStream left = new FileInputStream(expected); FileInputStream right = new FileInputStream(actual)) {
+            int n;
+            while ((n = left.readNBytes(a, 0, a.length)) > 0) {
+                assertEquals(n, right.readNBytes(b, 0, n));
+                assertArrayEquals(a, b);
+            }
+        }
+    }
+
+    /** Reports a size larger than the data behind it, like a file truncated mid-copy. */
+    private static class OversizedChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private final long size;
+
+        OversizedChannel(FileChannel delegate, long size) {
+            this.delegate = delegate;
+            this.size = size;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public FileChannel truncate(long newSize) throws IOException {
+            delegate.truncate(newSize);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
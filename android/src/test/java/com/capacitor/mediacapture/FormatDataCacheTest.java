@@ -0,0 +1,163 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FormatDataCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File journal;
+    private File media;
+
+    @Before
+    public void setUp() throws IOException {
+        journal = new File(folder.getRoot(), "formatdata");
+        media = write(folder.newFile("clip.mp4"), "first version", 1_700_000_000_000L);
+    }
+
+    @Test
+    public void servesUnchangedFile() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        cache.put(FormatDataCache.Key.of(media), data(640));
+
+        JSObject cached = cache.get(FormatDataCache.Key.of(media));
+        assertNotNull(cached);
+        assertEquals(640, cached.getInt("width"));
+    }
+
+    @Test
+    public void missesRewrittenFile() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        cache.put(FormatDataCache.Key.of(media), data(640));
+
+        write(media, "second, longer version", 1_700_000_000_000L);
+        assertNull(cache.get(FormatDataCache.Key.of(media)));
+    }
+
+    @Test
+    public void missesFileWithSameSizeAndNewModificationTime() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        cache.put(FormatDataCache.Key.of(media), data(640));
+
+        write(media, "other version", 1_700_000_005_000L);
+        assertNull(cache.get(FormatDataCache.Key.of(media)));
+    }
+
+    @Test
+    public void doesNotServeDataProbedBeforeRewrite() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        FormatDataCache.Key key = FormatDataCache.Key.of(media);
+        // The file changes while it is probed
+        write(media, "second, longer version", 1_700_000_005_000L);
+        cache.put(key, data(640));
+
+        assertNull(cache.get(FormatDataCache.Key.of(media)));
+    }
+
+    @Test
+    public void doesNotCacheMissingFile() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        File missing = new File(folder.getRoot(), "missing.mp4");
+        cache.put(FormatDataCache.Key.of(missing), data(640));
+
+        assertEquals(0, cache.getStats().getInt("entries"));
+    }
+
+    @Test
+    public void reloadsJournal() throws Exception {
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        cache.put(FormatDataCache.Key.of(media), data(640));
+        cache.close();
+
+        FormatDataCache reloaded = new FormatDataCache(journal, 1024 * 1024);
+        JSObject cached = reloaded.get(FormatDataCache.Key.of(media));
+        assertNotNull(cached);
+        assertEquals(640, cached.getInt("width"));
+        try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+            assertEquals(FormatDataCache.JOURNAL_HEADER, reader.readLine());
+        }
+    }
+
+    @Test
+    public void dropsJournalOfAnotherVersion() throws Exception {
+        try (Writer out = new FileWriter(journal)) {
+            out.write("[\"" + media.getAbsolutePath() + "\"," + media.length() + "," + media.lastModified() + ",\"{}\"]\n");
+        }
+
+        FormatDataCache cache = new FormatDataCache(journal, 1024 * 1024);
+        assertNull(cache.get(FormatDataCache.Key.of(media)));
+        assertFalse(journal.exists());
+
+        cache.put(FormatDataCache.Key.of(media), data(320));
+        cache.close();
+        assertNotNull(new FormatDataCache(journal, 1024 * 1024).get(FormatDataCache.Key.of(media)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() throws Exception {
+        File other = write(folder.newFile("other.mp4"), "other", 1_700_000_000_000L);
+        // Room for either entry but not both, mirroring the cache's own weight estimate
+        long budget = weight(media, data(640)) + weight(other, data(320)) - 1;
+        FormatDataCache cache = new FormatDataCache(journal, budget);
+        cache.put(FormatDataCache.Key.of(media), data(640));
+        cache.put(FormatDataCache.Key.of(other), data(320));
+
+        assertNull(cache.get(FormatDataCache.Key.of(media)));
+        assertNotNull(cache.get(FormatDataCache.Key.of(other)));
+        assertTrue(cache.getStats().getLong("evictions") > 0);
+    }
+
+    private static JSObject data(int width) {
+        JSObject data = new JSObject();
+        data.put("width", width);
+        data.put("height", width * 3 / 4);
+        return data;
+    }
+
+    private static long weight(File file, JSObject data) {
+        return 2L * (file.getAbsolutePath().length() + data.toString().length()) + 64;
+    }
+
+    private static File write(File file, String content, long lastModified) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            out.write(content);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
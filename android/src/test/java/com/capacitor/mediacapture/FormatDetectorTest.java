@@ -0,0 +1,254 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FormatDetectorTest {
+
+    private static final int ADTS_RATE_8000 = 11;
+    private static final int ADTS_FRAME_LENGTH = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsJpegFrameHeaderAfterOtherSegments() throws Exception {
+        ByteBuffer jpeg = ByteBuffer.allocate(64);
+        jpeg.put((byte) 0xFF).put((byte) 0xD8);
+        // APP0 with a 16 byte payload, then a DHT which must not be taken for a frame
+        jpeg.put((byte) 0xFF).put((byte) 0xE0).putShort((short) 16).put(new byte[14]);
+        jpeg.put((byte) 0xFF).put((byte) 0xC4).putShort((short) 4).put(new byte[2]);
+        jpeg.put((byte) 0xFF).put((byte) 0xC2).putShort((short) 17).put((byte) 8).putShort((short) 3000).putShort((short) 4000);
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(jpeg.array(), obj);
+        assertEquals("image/jpeg", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(4000, obj.getInt("width"));
+        assertEquals(3000, obj.getInt("height"));
+    }
+
+    @Test
+    public void rejectsJpegWithoutFrameHeader() throws Exception {
+        byte[] jpeg = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0, 2, 0, 0 };
+        FormatDetector.Result result = detect(jpeg, new JSObject());
+        assertEquals("image/jpeg", result.mimeType);
+        assertFalse(result.parsed);
+    }
+
+    @Test
+    public void readsPngAndGifHeaders() throws Exception {
+        ByteBuffer png = ByteBuffer.allocate(33);
+        png.put(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' }).putInt(13).put(ascii("IHDR"));
+        png.putInt(1920).putInt(1080);
+        JSObject obj = new JSObject();
+        assertTrue(detect(png.array(), obj).parsed);
+        assertEquals(1920, obj.getInt("width"));
+        assertEquals(1080, obj.getInt("height"));
+
+        ByteBuffer gif = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+        gif.put(ascii("GIF89a")).putShort((short) 320).putShort((short) 240);
+        obj = new JSObject();
+        FormatDetector.Result result = detect(gif.array(), obj);
+        assertEquals("image/gif", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(320, obj.getInt("width"));
+        assertEquals(240, obj.getInt("height"));
+    }
+
+    @Test
+    public void readsWavDataChunk() throws Exception {
+        int byteRate = 16000;
+        int dataSize = byteRate * 3;
+        ByteBuffer wav = ByteBuffer.allocate(44 + 10 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(ascii("RIFF")).putInt(wav.capacity() - 8).put(ascii("WAVE"));
+        wav.put(ascii("fmt ")).putInt(16).putShort((short) 1).putShort((short) 1).putInt(8000).putInt(byteRate);
+        wav.putShort((short) 2).putShort((short) 16);
+        // An odd sized chunk is padded before the next one
+        wav.put(ascii("LIST")).putInt(1).put(new byte[2]);
+        wav.put(ascii("data")).putInt(dataSize);
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(wav.array(), obj);
+        assertEquals("audio/x-wav", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(3, obj.getLong("duration"));
+        assertEquals(byteRate * 8, obj.getLong("bitrate"));
+        assertEquals("audio/raw", obj.getString("codecs"));
+    }
+
+    @Test
+    public void readsMp4MovieAndVideoTrack() throws Exception {
+        ByteBuffer mvhd = ByteBuffer.allocate(100);
+        mvhd.putInt(12, 1000).putInt(16, 90500);
+        ByteBuffer tkhd = ByteBuffer.allocate(84);
+        // Matrix of a 90 degree rotation
+        tkhd.putInt(40, 0).putInt(44, 0x10000);
+        tkhd.putInt(76, 1920 << 16).putInt(80, 1080 << 16);
+        ByteBuffer hdlr = ByteBuffer.allocate(24);
+        hdlr.position(8);
+        hdlr.put(ascii("vide"));
+        ByteBuffer stsd = ByteBuffer.allocate(16);
+        stsd.putInt(4, 1).putInt(8, 16);
+        stsd.position(12);
+        stsd.put(ascii("avc1"));
+
+        byte[] trak = box(
+            "trak",
+            box("tkhd", tkhd.array()),
+            box("mdia", box("hdlr", hdlr.array()), box("minf", box("stbl", box("stsd", stsd.array()))))
+        );
+        byte[] ftyp = box("ftyp", ascii("isom"), new byte[4]);
+        byte[] file = concat(ftyp, box("mdat", new byte[1000]), box("moov", box("mvhd", mvhd.array()), trak));
+
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(file, obj);
+        assertEquals("video/mp4", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(90, obj.getLong("duration"));
+        assertEquals(file.length * 8000L / 90500, obj.getLong("bitrate"));
+        assertEquals("video/avc", obj.getString("codecs"));
+        assertEquals(1920, obj.getInt("width"));
+        assertEquals(1080, obj.getInt("height"));
+        assertEquals(90, obj.getInt("rotation"));
+    }
+
+    @Test
+    public void readsExactAdtsDurationOfShortStream() throws Exception {
+        // 100 frames of 1024 samples at 8 kHz
+        byte[] adts = adts(100);
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(adts, obj);
+        assertEquals("audio/aac", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(12, obj.getLong("duration"));
+        assertEquals(adts.length * 8000L / 12800, obj.getLong("bitrate"));
+        assertEquals("audio/mp4a-latm", obj.getString("codecs"));
+    }
+
+    @Test
+    public void skipsLeadingId3Tag() throws Exception {
+        byte[] adts = adts(100);
+        byte[] tag = id3(200);
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(concat(tag, adts), obj);
+        assertEquals("audio/aac", result.mimeType);
+        assertTrue(result.parsed);
+        assertEquals(12, obj.getLong("duration"));
+        assertEquals(adts.length * 8000L / 12800, obj.getLong("bitrate"));
+    }
+
+    @Test
+    public void leavesMp3BehindId3TagToTheProbe() throws Exception {
+        byte[] mp3 = { (byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64, 0, 0, 0, 0 };
+        FormatDetector.Result result = detect(concat(id3(50), mp3), new JSObject());
+        assertEquals("audio/mpeg", result.mimeType);
+        assertFalse(result.parsed);
+    }
+
+    @Test
+    public void estimatesLongAdtsStreamFromBoundedScan() throws Exception {
+        // 1000 frames, 128 s; the frames past the scanned ones are never read
+        byte[] adts = adts(1000);
+        for (int i = 300 * ADTS_FRAME_LENGTH; i < adts.length; i++) {
+            adts[i] = 0;
+        }
+        JSObject obj = new JSObject();
+        FormatDetector.Result result = detect(adts, obj);
+        assertTrue(result.parsed);
+        assertEquals(128, obj.getLong("duration"));
+        assertEquals(ADTS_FRAME_LENGTH * 8000L / 128, obj.getLong("bitrate"));
+    }
+
+    @Test
+    public void returnsNullForUnknownContent() throws Exception {
+        FormatDetector.Result result = detect(new byte[64], new JSObject());
+        assertNull(result.mimeType);
+        assertFalse(result.parsed);
+    }
+
+    private FormatDetector.Result detect(byte[] content, JSObject obj) throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        return FormatDetector.detect(file, obj);
+    }
+
+    private static byte[] adts(int frames) {
+        byte[] adts = new byte[frames * ADTS_FRAME_LENGTH];
+        for (int i = 0; i < frames; i++) {
+            int offset = i * ADTS_FRAME_LENGTH;
+            adts[offset] = (byte) 0xFF;
+            adts[offset + 1] = (byte) 0xF1;
+            // AAC LC, mono
+            adts[offset + 2] = (byte) ((1 << 6) | (ADTS_RATE_8000 << 2));
+            adts[offset + 3] = (byte) ((1 << 6) | ((ADTS_FRAME_LENGTH >> 11) & 0x03));
+            adts[offset + 4] = (byte) ((ADTS_FRAME_LENGTH >> 3) & 0xFF);
+            adts[offset + 5] = (byte) (((ADTS_FRAME_LENGTH & 0x07) << 5) | 0x1F);
+            adts[offset + 6] = (byte) 0xFC;
+        }
+        return adts;
+    }
+
+    private static byte[] id3(int size) {
+        byte[] tag = new byte[10 + size];
+        tag[0] = 'I';
+        tag[1] = 'D';
+        tag[2] = '3';
+        tag[3] = 4;
+        // Synchsafe size, 7 bits per byte
+        tag[8] = (byte) (size >> 7);
+        tag[9] = (byte) (size & 0x7F);
+        return tag;
+    }
+
+    private static byte[] box(String type, byte[]... children) throws IOException {
+        byte[] payload = concat(children);
+        ByteBuffer box = ByteBuffer.allocate(8 + payload.length);
+        box.putInt(box.capacity()).put(ascii(type)).put(payload);
+        return box.array();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.write(part);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class GalleryExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private FakeMediaProvider provider;
+
+    @Before
+    public void setUp() throws IOException {
+        provider = Robolectric.setupContentProvider(FakeMediaProvider.class, MediaStore.AUTHORITY);
+        provider.directory = folder.newFolder("media");
+    }
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void insertsPendingRowsThenCommitsThemInOneBatch() throws Exception {
+        byte[] image = content(70000);
+        byte[] video = content(300000);
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        items.add(item(write("photo.jpg", image), "image/jpeg"));
+        items.add(item(write("clip.mp4", video), "video/mp4"));
+
+        Export export = export("export1", "gallery-1", items, "My App");
+
+        JSArray results = export.results;
+        assertEquals(2, results.length());
+        Uri imageUri = Uri.parse(result(results, 0).getString("uri"));
+        Uri videoUri = Uri.parse(result(results, 1).getString("uri"));
+        assertEquals(items.get(0).fullPath, result(results, 0).getString("fullPath"));
+
+        FakeMediaProvider.Row imageRow = provider.rows.get(imageUri);
+        assertEquals("photo.jpg", imageRow.values.getAsString(MediaStore.MediaColumns.DISPLAY_NAME));
+        assertEquals("image/jpeg", imageRow.values.getAsString(MediaStore.MediaColumns.MIME_TYPE));
+        assertEquals("Pictures/My App", imageRow.values.getAsString(MediaStore.MediaColumns.RELATIVE_PATH));
+        assertEquals("Movies/My App", provider.rows.get(videoUri).values.getAsString(MediaStore.MediaColumns.RELATIVE_PATH));
+        // Inserted pending, the copy happened while pending, then one batch published both
+        assertEquals(1, imageRow.insertedPending);
+        assertTrue(imageRow.writtenWhilePending);
+        assertEquals(0, (int) imageRow.values.getAsInteger(MediaStore.MediaColumns.IS_PENDING));
+        assertEquals(0, (int) provider.rows.get(videoUri).values.getAsInteger(MediaStore.MediaColumns.IS_PENDING));
+        assertEquals(1, provider.batches.get());
+        assertEquals(0, provider.singleUpdates.get());
+        assertArrayEquals(image, Files.readAllBytes(imageRow.data.toPath()));
+        assertArrayEquals(video, Files.readAllBytes(provider.rows.get(videoUri).data.toPath()));
+
+        assertEquals(2, export.progress.size());
+        long lastBytes = 0;
+        for (int i = 0; i < export.progress.size(); i++) {
+            JSObject progress = export.progress.get(i);
+            assertEquals("export1", progress.getString("exportId"));
+            assertEquals("gallery-1", progress.getString("correlationId"));
+            assertEquals(i + 1, progress.getInt("completed"));
+            assertEquals(2, progress.getInt("total"));
+            assertEquals(image.length + video.length, progress.getLong("totalBytes"));
+            assertTrue(progress.getLong("bytes") >= lastBytes);
+            lastBytes = progress.getLong("bytes");
+        }
+        assertEquals(image.length + video.length, lastBytes);
+    }
+
+    @Test
+    public void deletesRowOfFailedCopy() throws Exception {
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        items.add(item(write("good.jpg", content(1000)), "image/jpeg"));
+        items.add(item(write("unwritable.jpg", content(1000)), "image/jpeg"));
+
+        Export export = export("export2", null, items, null);
+
+        assertNotNull(result(export.results, 0).getString("uri"));
+        assertNull(result(export.results, 0).getString("error"));
+        assertNull(result(export.results, 1).getString("uri"));
+        assertNotNull(result(export.results, 1).getString("error"));
+        // The failed row was inserted, then deleted by the same batch that published the other one
+        assertEquals(2, provider.inserted.get());
+        assertEquals(1, provider.rows.size());
+        assertEquals(1, provider.batches.get());
+        assertEquals(2, export.progress.size());
+    }
+
+    @Test
+    public void commitsRowByRowWhenBatchIsRefused() throws Exception {
+        provider.refuseBatch = true;
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        items.add(item(write("a.jpg", content(500)), "image/jpeg"));
+        items.add(item(write("unwritable.mp4", content(500)), "video/mp4"));
+        items.add(item(write("c.m4a", content(500)), "audio/mp4"));
+
+        Export export = export("export3", null, items, null);
+
+        assertEquals(0, provider.batches.get());
+        assertEquals(2, provider.singleUpdates.get());
+        assertEquals(1, provider.singleDeletes.get());
+        assertEquals(2, provider.rows.size());
+        for (FakeMediaProvider.Row row : provider.rows.values()) {
+            assertEquals(0, (int) row.values.getAsInteger(MediaStore.MediaColumns.IS_PENDING));
+        }
+        assertNotNull(result(export.results, 0).getString("uri"));
+        assertNotNull(result(export.results, 1).getString("error"));
+        assertEquals("Music", provider.rows.get(Uri.parse(result(export.results, 2).getString("uri"))).values.getAsString(MediaStore.MediaColumns.RELATIVE_PATH));
+    }
+
+    @Test
+    public void reportsInvalidItemsWithoutInsertingThem() throws Exception {
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        items.add(new GalleryExporter.Item(null, null, null));
+        items.add(item(new File(folder.getRoot(), "missing.jpg"), "image/jpeg"));
+        items.add(item(write("notes.txt", content(10)), "text/plain"));
+
+        Export export = export("export4", null, items, null);
+
+        assertEquals("File path is required", result(export.results, 0).getString("error"));
+        assertEquals("File not found", result(export.results, 1).getString("error"));
+        assertEquals("Unsupported media type: text/plain", result(export.results, 2).getString("error"));
+        assertEquals(0, provider.inserted.get());
+        assertTrue(export.progress.isEmpty());
+    }
+
+    @Test
+    public void exportsManyFiles() throws Exception {
+        int count = 60;
+        List<GalleryExporter.Item> items = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] data = content(1000 + i * 997);
+            contents.add(data);
+            items.add(item(write("photo" + i + ".jpg", data), "image/jpeg"));
+        }
+
+        Export export = export("export5", null, items, "Burst");
+
+        assertEquals(count, export.results.length());
+        assertEquals(count, export.progress.size());
+        assertEquals(count, provider.rows.size());
+        assertEquals(1, provider.batches.get());
+        for (int i = 0; i < count; i++) {
+            JSObject result = result(export.results, i);
+            assertEquals(items.get(i).fullPath, result.getString("fullPath"));
+            FakeMediaProvider.Row row = provider.rows.get(Uri.parse(result.getString("uri")));
+            assertEquals("photo" + i + ".jpg", row.values.getAsString(MediaStore.MediaColumns.DISPLAY_NAME));
+            assertEquals(0, (int) row.values.getAsInteger(MediaStore.MediaColumns.IS_PENDING));
+            assertArrayEquals(contents.get(i), Files.readAllBytes(row.data.toPath()));
+        }
+        assertEquals(count, export.progress.get(count - 1).getInt("completed"));
+    }
+
+    private Export export(String exportId, String correlationId, List<GalleryExporter.Item> items, String album)
+        throws InterruptedException {
+        GalleryExporter exporter = new GalleryExporter(RuntimeEnvironment.getApplication().getContentResolver(), executor, 3);
+        Export export = new Export();
+        exporter.export(exportId, correlationId, items, album, export);
+        assertTrue("Export did not complete", export.done.await(10, TimeUnit.SECONDS));
+        return export;
+    }
+
+    private static JSObject result(JSArray results, int index) throws Exception {
+        return (JSObject) results.get(index);
+    }
+
+    private static GalleryExporter.Item item(File file, String mimeType) {
+        return new GalleryExporter.Item("file://" + file.getAbsolutePath(), file, mimeType);
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(data);
+        }
+        return file;
+    }
+
+    private static byte[] content(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static class Export implements GalleryExporter.Listener {
+
+        final List<JSObject> progress = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        JSArray results;
+
+        @Override
+        public synchronized void onProgress(JSObject progress) {
+            this.progress.add(progress);
+        }
+
+        @Override
+        public synchronized void onComplete(JSArray results) {
+            this.results = results;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Stands in for the media provider: rows live in memory, their files in
+     * a temporary directory. Files named "unwritable" cannot be opened.
+     */
+    public static class FakeMediaProvider extends ContentProvider {
+
+        static class Row {
+
+            final ContentValues values;
+            final File data;
+            final int insertedPending;
+            volatile boolean writtenWhilePending;
+
+            Row(ContentValues values, File data) {
+                this.values = values;
+                this.data = data;
+                Integer pending = values.getAsInteger(MediaStore.MediaColumns.IS_PENDING);
+                this.insertedPending = pending != null ? pending : 0;
+            }
+        }
+
+        final Map<Uri, Row> rows = new ConcurrentHashMap<>();
+        final AtomicInteger inserted = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger singleUpdates = new AtomicInteger();
+        final AtomicInteger singleDeletes = new AtomicInteger();
+        private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> false);
+        volatile File directory;
+        volatile boolean refuseBatch = false;
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            long id = inserted.incrementAndGet();
+            Uri row = ContentUris.withAppendedId(uri, id);
+            rows.put(row, new Row(new ContentValues(values), new File(directory, id + "-" + values.getAsString(MediaStore.MediaColumns.DISPLAY_NAME))));
+            return row;
+        }
+
+        @Override
+        public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+            Row row = rows.get(uri);
+            if (row == null || row.data.getName().contains("unwritable")) {
+                throw new FileNotFoundException("Cannot write " + uri);
+            }
+            Integer pending = row.values.getAsInteger(MediaStore.MediaColumns.IS_PENDING);
+            row.writtenWhilePending = pending != null && pending == 1;
+            return ParcelFileDescriptor.open(row.data, ParcelFileDescriptor.parseMode(mode));
+        }
+
+        @Override
+        public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+            if (refuseBatch) {
+                throw new OperationApplicationException("Batch refused");
+            }
+            batches.incrementAndGet();
+            inBatch.set(true);
+            try {
+                return super.applyBatch(operations);
+            } finally {
+                inBatch.set(false);
+            }
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            Row row = rows.get(uri);
+            if (row == null) {
+                return 0;
+            }
+            if (!inBatch.get()) {
+                singleUpdates.incrementAndGet();
+            }
+            row.values.putAll(values);
+            return 1;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            if (!inBatch.get()) {
+                singleDeletes.incrementAndGet();
+            }
+            return rows.remove(uri) != null ? 1 : 0;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JpegExifTest {
+
+    // Layout of the fixture's TIFF structure, offsets from the byte order mark
+    private static final int IFD0 = 8;
+    private static final int EXIF_IFD = 74;
+    private static final int GPS_IFD = 92;
+    private static final int MAKE_VALUE = 146;
+    private static final int DATE_VALUE = 152;
+    private static final int LATITUDE_VALUE = 172;
+    private static final int LONGITUDE_VALUE = 196;
+    private static final int TIFF_SIZE = 220;
+    // SOI, then a 16 byte APP0, then the APP1 marker, length and "Exif\0\0"
+    private static final int TIFF_START = 2 + 18 + 4 + 6;
+
+    private static final byte[] IMAGE_DATA = { (byte) 0xFF, (byte) 0xDA, 0, 2, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9 };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsFieldsInBothByteOrders() throws Exception {
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+            File file = write(jpeg(tiff(order), null));
+            JSObject fields = JpegExif.process(file, true, null);
+            assertNotNull(order.toString(), fields);
+            assertEquals("Canon", fields.getString("make"));
+            assertEquals("EOS", fields.getString("model"));
+            assertEquals(6, fields.getInt("orientation"));
+            assertEquals("2024:01:02 03:04:05", fields.getString("dateTimeOriginal"));
+            assertEquals(37.5, fields.getDouble("latitude"), 1e-9);
+            assertEquals(-122.25, fields.getDouble("longitude"), 1e-9);
+        }
+    }
+
+    @Test
+    public void removesAnEntryInPlace() throws Exception {
+        byte[] original = jpeg(tiff(ByteOrder.BIG_ENDIAN), null);
+        File file = write(original);
+        JSObject before = JpegExif.process(file, true, tags(JpegExif.MAKE));
+        assertEquals("Canon", before.getString("make"));
+
+        byte[] stripped = Files.readAllBytes(file.toPath());
+        assertEquals(original.length, stripped.length);
+        assertFalse(contains(stripped, "Canon"));
+        assertArrayEquals(IMAGE_DATA, Arrays.copyOfRange(stripped, stripped.length - IMAGE_DATA.length, stripped.length));
+
+        JSObject after = JpegExif.process(file, true, null);
+        assertFalse(after.has("make"));
+        assertEquals("EOS", after.getString("model"));
+        assertEquals(6, after.getInt("orientation"));
+        assertEquals("2024:01:02 03:04:05", after.getString("dateTimeOriginal"));
+        assertEquals(37.5, after.getDouble("latitude"), 1e-9);
+    }
+
+    @Test
+    public void wipesTheGpsDirectory() throws Exception {
+        File file = write(jpeg(tiff(ByteOrder.LITTLE_ENDIAN), null));
+        JpegExif.process(file, false, tags(JpegExif.GPS));
+
+        byte[] stripped = Files.readAllBytes(file.toPath());
+        // The directory and its rational values are zeroed, the pointer to it removed
+        assertArrayEquals(new byte[MAKE_VALUE - GPS_IFD], range(stripped, GPS_IFD, MAKE_VALUE));
+        assertArrayEquals(new byte[48], range(stripped, LATITUDE_VALUE, LATITUDE_VALUE + 48));
+        assertEquals(4, stripped[TIFF_START + IFD0]);
+
+        JSObject after = JpegExif.process(file, true, null);
+        assertFalse(after.has("latitude"));
+        assertFalse(after.has("longitude"));
+        assertEquals("Canon", after.getString("make"));
+        assertEquals("2024:01:02 03:04:05", after.getString("dateTimeOriginal"));
+    }
+
+    @Test
+    public void blanksGpsPropertiesOfTheXmpPacket() throws Exception {
+        String xmp =
+            "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">" +
+            "<rdf:Description xmlns:e='http://ns.adobe.com/exif/1.0/' xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\"" +
+            " e:GPSLatitude='37,30.0N' e:GPSVersionID=\"2.2.0.0\" xmp:CreatorTool=\"Camera\">" +
+            "<e:GPSLongitude>122,15.0W</e:GPSLongitude><e:GPSAltitude/><e:DateTimeOriginal>2024-01-02</e:DateTimeOriginal>" +
+            "</rdf:Description></rdf:RDF></x:xmpmeta>";
+        byte[] original = jpeg(tiff(ByteOrder.BIG_ENDIAN), xmp);
+        File file = write(original);
+        JpegExif.process(file, false, tags(JpegExif.GPS));
+
+        byte[] stripped = Files.readAllBytes(file.toPath());
+        assertEquals(original.length, stripped.length);
+        String packet = new String(stripped, StandardCharsets.ISO_8859_1);
+        assertTrue(packet.contains("e:GPSLatitude='        '"));
+        assertTrue(packet.contains("e:GPSVersionID=\"       \""));
+        assertTrue(packet.contains("<e:GPSLongitude>         </e:GPSLongitude><e:GPSAltitude/>"));
+        assertTrue(packet.contains("xmp:CreatorTool=\"Camera\""));
+        assertTrue(packet.contains("<e:DateTimeOriginal>2024-01-02</e:DateTimeOriginal>"));
+    }
+
+    @Test
+    public void blanksXmpGpsWithoutExifSegment() throws Exception {
+        String xmp = "<rdf:Description xmlns:exif=\"http://ns.adobe.com/exif/1.0/\" exif:GPSLatitude=\"37,30.0N\"/>";
+        File file = write(jpeg(null, xmp));
+        assertNull(JpegExif.process(file, true, tags(JpegExif.GPS)));
+        assertFalse(contains(Files.readAllBytes(file.toPath()), "37,30.0N"));
+    }
+
+    @Test
+    public void ignoresOffsetsOutsideTheSegment() throws Exception {
+        int[][] corruptions = {
+            // IFD0 offset, entry count of IFD0, Exif IFD pointer, Make value offset, GPS latitude value offset
+            { 4, 0x7FFFFFF0 },
+            { IFD0, 0xFFFF << 16 },
+            { IFD0 + 2 + 12 * 3 + 8, 0xFFFFFFF0 },
+            { IFD0 + 2 + 8, TIFF_SIZE - 2 },
+            { GPS_IFD + 2 + 12 + 8, 0x7FFFFFFF },
+        };
+        for (int[] corruption : corruptions) {
+            ByteBuffer tiff = ByteBuffer.wrap(tiff(ByteOrder.BIG_ENDIAN));
+            if (corruption[0] == IFD0) {
+                tiff.putShort(IFD0, (short) (corruption[1] >>> 16));
+            } else {
+                tiff.putInt(corruption[0], corruption[1]);
+            }
+            File file = write(jpeg(tiff.array(), null));
+            JSObject fields = JpegExif.process(file, true, tags(JpegExif.GPS, JpegExif.MAKE, JpegExif.DATE_TIME_ORIGINAL));
+            assertNotNull(fields);
+        }
+    }
+
+    @Test
+    public void ignoresTruncatedFiles() throws Exception {
+        byte[] jpeg = jpeg(tiff(ByteOrder.LITTLE_ENDIAN), null);
+        // Within the Exif segment, within a segment header, right after a marker
+        for (int length : new int[] { TIFF_START + 100, 21, 3 }) {
+            File file = write(Arrays.copyOf(jpeg, length));
+            assertNull(JpegExif.process(file, true, tags(JpegExif.GPS)));
+            assertEquals(length, file.length());
+        }
+        assertNull(JpegExif.process(write(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16 }), true, null));
+        assertNull(JpegExif.process(write(new byte[] { 'G', 'I', 'F', '8', '9', 'a' }), true, null));
+    }
+
+    @Test(timeout = 10000)
+    public void readsOnlyTheSegmentOfAHugeFile() throws Exception {
+        File file = write(jpeg(tiff(ByteOrder.BIG_ENDIAN), null));
+        long size = 4L * 1024 * 1024 * 1024;
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            // Sparse, reading it whole would take far longer than the timeout
+            output.setLength(size);
+            output.seek(size - 1);
+            output.write(0xD9);
+        }
+        JSObject fields = JpegExif.process(file, true, tags(JpegExif.GPS));
+        assertEquals("Canon", fields.getString("make"));
+        assertEquals(37.5, fields.getDouble("latitude"), 1e-9);
+        assertFalse(JpegExif.process(file, true, null).has("latitude"));
+        assertEquals(size, file.length());
+    }
+
+    @Test
+    public void returnsNullWithoutExif() throws Exception {
+        assertNull(JpegExif.process(write(jpeg(null, null)), true, tags(JpegExif.GPS)));
+    }
+
+    /**
+     * Builds a TIFF structure with Make, Model, Orientation, an Exif IFD with
+     * DateTimeOriginal and a GPS IFD at 37.5 N, 122.25 W.
+     */
+    private static byte[] tiff(ByteOrder order) {
+        ByteBuffer tiff = ByteBuffer.allocate(TIFF_SIZE).order(order);
+        tiff.put(order == ByteOrder.LITTLE_ENDIAN ? ascii("II") : ascii("MM")).putShort((short) 42).putInt(IFD0);
+
+        tiff.position(IFD0);
+        tiff.putShort((short) 5);
+        entry(tiff, 0x010F, 2, 6, MAKE_VALUE);
+        tiff.putShort((short) 0x0110).putShort((short) 2).putInt(4).put(ascii("EOS\0"));
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+        entry(tiff, 0x8769, 4, 1, EXIF_IFD);
+        entry(tiff, 0x8825, 4, 1, GPS_IFD);
+        tiff.putInt(0);
+
+        tiff.putShort((short) 1);
+        entry(tiff, 0x9003, 2, 20, DATE_VALUE);
+        tiff.putInt(0);
+
+        tiff.putShort((short) 4);
+        tiff.putShort((short) 1).putShort((short) 2).putInt(2).put(ascii("N\0\0\0"));
+        entry(tiff, 2, 5, 3, LATITUDE_VALUE);
+        tiff.putShort((short) 3).putShort((short) 2).putInt(2).put(ascii("W\0\0\0"));
+        entry(tiff, 4, 5, 3, LONGITUDE_VALUE);
+        tiff.putInt(0);
+
+        tiff.put(ascii("Canon\0")).put(ascii("2024:01:02 03:04:05\0"));
+        tiff.putInt(37).putInt(1).putInt(30).putInt(1).putInt(0).putInt(1);
+        tiff.putInt(122).putInt(1).putInt(15).putInt(1).putInt(0).putInt(1);
+        return tiff.array();
+    }
+
+    private static void entry(ByteBuffer tiff, int tag, int type, int count, int value) {
+        tiff.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static byte[] jpeg(byte[] tiff, String xmp) throws IOException {
+        ByteBuffer jpeg = ByteBuffer.allocate(64 * 1024);
+        jpeg.put((byte) 0xFF).put((byte) 0xD8);
+        jpeg.put((byte) 0xFF).put((byte) 0xE0).putShort((short) 16).put(ascii("JFIF\0")).put(new byte[9]);
+        if (tiff != null) {
+            jpeg.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + 6 + tiff.length)).put(ascii("Exif\0\0")).put(tiff);
+        }
+        if (xmp != null) {
+            byte[] header = ascii("http://ns.adobe.com/xap/1.0/\0");
+            byte[] packet = xmp.getBytes(StandardCharsets.UTF_8);
+            jpeg.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + header.length + packet.length)).put(header).put(packet);
+        }
+        jpeg.put(IMAGE_DATA);
+        return Arrays.copyOf(jpeg.array(), jpeg.position());
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        return file;
+    }
+
+    private static Set<String> tags(String... tags) {
+        return new HashSet<>(Arrays.asList(tags));
+    }
+
+    private static byte[] range(byte[] jpeg, int from, int to) {
+        return Arrays.copyOfRange(jpeg, TIFF_START + from, TIFF_START + to);
+    }
+
+    private static boolean contains(byte[] content, String value) {
+        return new String(content, StandardCharsets.ISO_8859_1).contains(value);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import com.getcapacitor.JSObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowMediaExtractor;
+import org.robolectric.shadows.ShadowMediaMetadataRetriever;
+import org.robolectric.shadows.util.DataSource;
+
+@RunWith(RobolectricTestRunner.class)
+public class MediaProbeTest {
+
+    @Test
+    public void mapsVideoMetadata() throws Exception {
+        String path = "/media/video.mp4";
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_DURATION, "12345");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_BITRATE, "2000000");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, "1920");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT, "1080");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION, "90");
+        addTrack(path, "video/avc");
+        addTrack(path, "audio/mp4a-latm");
+
+        JSObject obj = MediaProbe.probe(path, new JSObject(), true);
+        // Duration is reported in whole seconds
+        assertEquals(12, obj.getLong("duration"));
+        assertEquals(2000000, obj.getLong("bitrate"));
+        assertEquals(1920, obj.getLong("width"));
+        assertEquals(1080, obj.getLong("height"));
+        assertEquals(90, obj.getLong("rotation"));
+        assertEquals("video/avc,audio/mp4a-latm", obj.getString("codecs"));
+    }
+
+    @Test
+    public void leavesOutVideoFieldsForAudio() throws Exception {
+        String path = "/media/audio.m4a";
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_DURATION, "3999");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_BITRATE, "128000");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, "640");
+        addTrack(path, "audio/mp4a-latm");
+
+        JSObject obj = MediaProbe.probe(path, new JSObject(), false);
+        assertEquals(3, obj.getLong("duration"));
+        assertEquals(128000, obj.getLong("bitrate"));
+        assertEquals("audio/mp4a-latm", obj.getString("codecs"));
+        assertFalse(obj.has("width"));
+        assertFalse(obj.has("height"));
+        assertFalse(obj.has("rotation"));
+    }
+
+    @Test
+    public void defaultsMissingAndInvalidValuesToZero() throws Exception {
+        String path = "/media/partial.mp4";
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_BITRATE, "not a number");
+        addMetadata(path, MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, " 720 ");
+
+        JSObject obj = MediaProbe.probe(path, new JSObject(), true);
+        assertEquals(0, obj.getLong("duration"));
+        assertEquals(0, obj.getLong("bitrate"));
+        assertEquals(720, obj.getLong("width"));
+        assertEquals(0, obj.getLong("height"));
+        assertEquals(0, obj.getLong("rotation"));
+        // No tracks were registered, so the extractor has nothing to report
+        assertEquals("", obj.getString("codecs"));
+    }
+
+    @Test
+    public void keepsDefaultsWhenRetrieverFails() throws Exception {
+        String path = "/media/corrupt.mp4";
+        ShadowMediaMetadataRetriever.addException(DataSource.toDataSource(path), new IllegalArgumentException("corrupt"));
+        addTrack(path, "video/avc");
+
+        JSObject obj = new JSObject();
+        obj.put("duration", 0);
+        MediaProbe.probe(path, obj, true);
+        assertEquals(0, obj.getLong("duration"));
+        assertFalse(obj.has("width"));
+        assertEquals("video/avc", obj.getString("codecs"));
+    }
+
+    @Test
+    public void skipsTracksWithoutMimeType() throws Exception {
+        String path = "/media/tracks.mp4";
+        addTrack(path, "video/hevc");
+        ShadowMediaExtractor.addTrack(DataSource.toDataSource(path), new MediaFormat(), new byte[0]);
+        addTrack(path, "audio/opus");
+
+        JSObject obj = MediaProbe.probe(path, new JSObject(), false);
+        assertEquals("video/hevc,audio/opus", obj.getString("codecs"));
+    }
+
+    private static void addMetadata(String path, int key, String value) {
+        ShadowMediaMetadataRetriever.addMetadata(DataSource.toDataSource(path), key, value);
+    }
+
+    private static void addTrack(String path, String mime) {
+        MediaFormat format = new MediaFormat();
+        format.setString(MediaFormat.KEY_MIME, mime);
+        ShadowMediaExtractor.addTrack(DataSource.toDataSource(path), format, new byte[0]);
+    }
+}
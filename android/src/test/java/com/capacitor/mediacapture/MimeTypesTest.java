@@ -0,0 +1,61 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class MimeTypesTest {
+
+    @Test
+    public void sniffsKnownMp4Brands() {
+        for (String brand : new String[] { "isom", "iso2", "iso6", "mp41", "mp42", "avc1", "dash", "M4V " }) {
+            assertEquals(brand, "video/mp4", MimeTypes.sniff(ftyp(brand), 16));
+        }
+    }
+
+    @Test
+    public void sniffsOtherIsoFamilies() {
+        assertEquals("audio/mp4", MimeTypes.sniff(ftyp("M4A "), 16));
+        assertEquals("video/quicktime", MimeTypes.sniff(ftyp("qt  "), 16));
+        assertEquals("video/3gpp", MimeTypes.sniff(ftyp("3gp4"), 16));
+        assertEquals("video/3gpp2", MimeTypes.sniff(ftyp("3g2a"), 16));
+        assertEquals("image/heic", MimeTypes.sniff(ftyp("heic"), 16));
+    }
+
+    @Test
+    public void leavesUnknownBrandsToTheExtension() {
+        for (String brand : new String[] { "avif", "avis", "M4B ", "crx ", "f4v ", "zzzz" }) {
+            assertNull(brand, MimeTypes.sniff(ftyp(brand), 16));
+        }
+        assertEquals("image/avif", MimeTypes.fromPath("/cache/photo.AVIF"));
+        assertEquals("audio/mp4", MimeTypes.fromPath("/cache/book.m4b"));
+    }
+
+    private static byte[] ftyp(String brand) {
+        byte[] header = new byte[16];
+        header[3] = 16;
+        System.arraycopy("ftyp".getBytes(StandardCharsets.US_ASCII), 0, header, 4, 4);
+        System.arraycopy(brand.getBytes(StandardCharsets.US_ASCII), 0, header, 8, 4);
+        return header;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReadStreamManagerTest {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    // Ends with a partial chunk
+    private static final long LARGE_SIZE = 24L * CHUNK_SIZE + 4321;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void streamsLargeFileChunkByChunk() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+        ReadStreamManager.Stream stream = manager.open(file, CHUNK_SIZE);
+        assertEquals(LARGE_SIZE, stream.size);
+
+        long expectedOffset = 0;
+        int chunks = 0;
+        while (true) {
+            ReadStreamManager.Chunk chunk = manager.read(manager.acquire(stream.id), -1, 0);
+            assertEquals(expectedOffset, chunk.offset);
+            long remaining = LARGE_SIZE - expectedOffset;
+            assertEquals(Math.min(CHUNK_SIZE, remaining), chunk.length);
+            assertEquals(marker(chunk.offset), chunk.data[0]);
+            expectedOffset += chunk.length;
+            chunks++;
+            assertEquals(expectedOffset >= LARGE_SIZE, chunk.eof);
+            if (chunk.eof) {
+                break;
+            }
+        }
+        assertEquals(LARGE_SIZE, expectedOffset);
+        assertEquals(25, chunks);
+        assertEquals(0, manager.getPending(stream));
+
+        // Reads past the end return an empty chunk rather than failing
+        ReadStreamManager.Chunk end = manager.read(manager.acquire(stream.id), -1, 0);
+        assertEquals(0, end.length);
+        assertTrue(end.eof);
+        manager.closeAll();
+    }
+
+    @Test
+    public void readsAtExplicitOffsets() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+        ReadStreamManager.Stream stream = manager.open(file, CHUNK_SIZE);
+
+        long offset = 7L * CHUNK_SIZE;
+        ReadStreamManager.Chunk chunk = manager.read(manager.acquire(stream.id), offset, 16);
+        assertEquals(offset, chunk.offset);
+        assertEquals(16, chunk.length);
+        assertEquals(marker(offset), chunk.data[0]);
+        assertFalse(chunk.eof);
+
+        // The next sequential read continues after the explicit one
+        chunk = manager.read(manager.acquire(stream.id), -1, 0);
+        assertEquals(offset + 16, chunk.offset);
+        manager.closeAll();
+    }
+
+    @Test
+    public void clampsReadLengthToChunkSize() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+        ReadStreamManager.Stream stream = manager.open(file, CHUNK_SIZE);
+
+        ReadStreamManager.Chunk chunk = manager.read(manager.acquire(stream.id), 0, 4 * CHUNK_SIZE);
+        assertEquals(CHUNK_SIZE, chunk.length);
+        assertEquals(CHUNK_SIZE, chunk.data.length);
+        manager.closeAll();
+    }
+
+    @Test
+    public void acceptsChunkSizesUpToMaximum() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+
+        ReadStreamManager.Stream stream = manager.open(file, ReadStreamManager.MAX_CHUNK_SIZE);
+        ReadStreamManager.Chunk chunk = manager.read(manager.acquire(stream.id), -1, 0);
+        assertEquals(ReadStreamManager.MAX_CHUNK_SIZE, chunk.length);
+
+        for (int chunkSize : new int[] { 0, -1, ReadStreamManager.MAX_CHUNK_SIZE + 1 }) {
+            try {
+                manager.open(file, chunkSize);
+                fail("Expected chunk size " + chunkSize + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        manager.closeAll();
+    }
+
+    @Test
+    public void refusesReadsBeyondPendingLimit() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+        ReadStreamManager.Stream stream = manager.open(file, CHUNK_SIZE);
+
+        manager.acquire(stream.id);
+        manager.acquire(stream.id);
+        assertEquals(2, manager.getPending(stream));
+        try {
+            manager.acquire(stream.id);
+            fail("Expected the third pending read to be refused");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, manager.getPending(stream));
+
+        // Completing a read frees its slot
+        manager.read(stream, -1, 0);
+        assertEquals(1, manager.getPending(stream));
+        assertSame(stream, manager.acquire(stream.id));
+        manager.closeAll();
+    }
+
+    @Test
+    public void closeReleasesPooledChannelWithLastStream() throws Exception {
+        File file = createSparseFile(LARGE_SIZE);
+        ReadStreamManager manager = new ReadStreamManager(2);
+        ReadStreamManager.Stream first = manager.open(file, CHUNK_SIZE);
+        ReadStreamManager.Stream second = manager.open(file, CHUNK_SIZE);
+        assertSame(first.channel, second.channel);
+
+        assertTrue(manager.close(first.id));
+        assertTrue(second.channel.isOpen());
+        assertNull(manager.acquire(first.id));
+        assertFalse(manager.close(first.id));
+
+        assertTrue(manager.close(second.id));
+        assertFalse(second.channel.isOpen());
+
+        // A new stream on the same file gets a fresh channel
+        ReadStreamManager.Stream third = manager.open(file, CHUNK_SIZE);
+        assertTrue(third.channel.isOpen());
+        manager.closeAll();
+        assertFalse(third.channel.isOpen());
+        assertNull(manager.acquire(third.id));
+    }
+
+    private static byte marker(long offset) {
+        return (byte) (1 + (offset / CHUNK_SIZE) % 127);
+    }
+
+    /** A sparse file with a marker byte at the start of every chunk. */
+    private File createSparseFile(long size) throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+                raf.seek(offset);
+                raf.write(marker(offset));
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import org.junit.Test;
+
+public class TranscodeGraphTest {
+
+    @Test
+    public void propagatesEndOfStreamThroughTheGraph() throws Exception {
+        FakeTrack video = new FakeTrack(0, 33333, 66666);
+        FakeMuxer muxer = new FakeMuxer();
+        Graph graph = new Graph(video, null, muxer);
+        graph.run();
+
+        assertEquals(Arrays.asList(0L, 33333L, 66666L, -1L), graph.decoder.queued);
+        assertTrue(graph.decoder.endOfStreamQueued);
+        assertTrue(graph.encoder.endOfStreamSignalled);
+        assertEquals(Arrays.asList("video"), muxer.tracks);
+        assertEquals(Arrays.asList("v0", "v33333", "v66666"), muxer.written);
+    }
+
+    @Test
+    public void writesAudioBeforeTheVideoFrameThatFollowsIt() throws Exception {
+        FakeTrack video = new FakeTrack(0, 33333, 66666);
+        FakeTrack audio = new FakeTrack(0, 20000, 40000, 60000, 80000, 100000);
+        FakeMuxer muxer = new FakeMuxer();
+        new Graph(video, audio, muxer).run();
+
+        assertEquals(Arrays.asList("video", "audio"), muxer.tracks);
+        // Audio past the last video frame is flushed once the encoder is done
+        assertEquals(
+            Arrays.asList("a0", "v0", "a20000", "v33333", "a40000", "a60000", "v66666", "a80000", "a100000"),
+            muxer.written
+        );
+    }
+
+    @Test
+    public void reportsProgressOnceFromTheEncodedTimes() throws Exception {
+        FakeTrack video = new FakeTrack(0, 25000, 50000, 50000, 75000);
+        List<Double> progress = new ArrayList<>();
+        new Graph(video, null, new FakeMuxer(), 100000).run(progress::add);
+        assertEquals(Arrays.asList(0.0, 0.25, 0.5, 0.75), progress);
+    }
+
+    @Test
+    public void abandonsAGraphThatStopsMoving() {
+        Graph graph = new Graph(new FakeTrack(0, 33333), null, new FakeMuxer());
+        graph.decoder.stalled = true;
+        try {
+            graph.run();
+            fail("Expected the transcode to stall");
+        } catch (IOException e) {
+            assertEquals("Transcode stalled", e.getMessage());
+        }
+        // The format change and codec config moved, every pass after them was idle
+        assertEquals(TranscodeGraph.MAX_IDLE_PASSES + 1, graph.encoder.idlePolls);
+    }
+
+    @Test
+    public void failsWhenTheEncoderProducedNoOutput() {
+        Graph graph = new Graph(new FakeTrack(0, 33333), new FakeTrack(0), new FakeMuxer());
+        graph.encoder.formatPending = false;
+        try {
+            graph.run();
+            fail("Expected the transcode to fail");
+        } catch (IOException e) {
+            assertEquals("The encoder produced no output", e.getMessage());
+        }
+        assertTrue(graph.muxer.written.isEmpty());
+    }
+
+    private static final class Graph {
+
+        final FakeDecoder decoder = new FakeDecoder();
+        final FakeEncoder encoder = new FakeEncoder();
+        final FakeMuxer muxer;
+        private final TranscodeGraph<String> graph;
+
+        Graph(FakeTrack video, FakeTrack audio, FakeMuxer muxer) {
+            this(video, audio, muxer, 0);
+        }
+
+        Graph(FakeTrack video, FakeTrack audio, FakeMuxer muxer, long durationUs) {
+            this.muxer = muxer;
+            if (audio != null) {
+                audio.format = "audio";
+            }
+            graph = new TranscodeGraph<>(video, audio, decoder, encoder::render, encoder, muxer, durationUs, ByteBuffer.allocate(16));
+        }
+
+        void run() throws IOException {
+            graph.run(null);
+        }
+
+        void run(TranscodeGraph.Listener listener) throws IOException {
+            graph.run(listener);
+        }
+    }
+
+    /** Samples at the given times, all of them sync samples. */
+    private static final class FakeTrack implements TranscodeGraph.Track<String> {
+
+        private final long[] times;
+        private int index = 0;
+        String format = "source";
+
+        FakeTrack(long... times) {
+            this.times = times;
+        }
+
+        @Override
+        public String getFormat() {
+            return format;
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer buffer) {
+            return index < times.length ? 8 : -1;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return index < times.length ? times[index] : -1;
+        }
+
+        @Override
+        public boolean isSyncSample() {
+            return true;
+        }
+
+        @Override
+        public void advance() {
+            index++;
+        }
+    }
+
+    /** Base of the fake codecs: one buffer index, output handed out in queue order. */
+    private abstract static class FakeCodec implements TranscodeGraph.Codec<String> {
+
+        final Deque<TranscodeGraph.BufferInfo> output = new ArrayDeque<>();
+        boolean stalled = false;
+        int idlePolls = 0;
+
+        @Override
+        public int dequeueInputBuffer(long timeoutUs) {
+            return stalled ? TranscodeGraph.INFO_TRY_AGAIN_LATER : 0;
+        }
+
+        @Override
+        public ByteBuffer getInputBuffer(int index) {
+            return ByteBuffer.allocate(16);
+        }
+
+        @Override
+        public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int dequeueOutputBuffer(TranscodeGraph.BufferInfo info, long timeoutUs) {
+            TranscodeGraph.BufferInfo next = output.poll();
+            if (next == null) {
+                idlePolls++;
+                return TranscodeGraph.INFO_TRY_AGAIN_LATER;
+            }
+            info.set(next.offset, next.size, next.presentationTimeUs, next.flags);
+            return 0;
+        }
+
+        @Override
+        public ByteBuffer getOutputBuffer(int index) {
+            return ByteBuffer.allocate(16);
+        }
+
+        @Override
+        public String getOutputFormat() {
+            return "video";
+        }
+
+        @Override
+        public void releaseOutputBuffer(int index, boolean render) {}
+
+        @Override
+        public void signalEndOfInputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        void emit(int size, long presentationTimeUs, int flags) {
+            TranscodeGraph.BufferInfo info = new TranscodeGraph.BufferInfo();
+            info.set(0, size, presentationTimeUs, flags);
+            output.add(info);
+        }
+    }
+
+    /** Decodes every sample into one frame and ends the stream like MediaCodec. */
+    private static final class FakeDecoder extends FakeCodec {
+
+        final List<Long> queued = new ArrayList<>();
+        boolean endOfStreamQueued = false;
+
+        @Override
+        public void queueInputBuffer(int index, int size, long presentationTimeUs, int flags) {
+            if ((flags & TranscodeGraph.FLAG_END_OF_STREAM) != 0) {
+                queued.add(-1L);
+                endOfStreamQueued = true;
+                emit(0, 0, TranscodeGraph.FLAG_END_OF_STREAM);
+            } else {
+                queued.add(presentationTimeUs);
+                emit(size, presentationTimeUs, 0);
+            }
+        }
+    }
+
+    /** Encodes every rendered frame, announcing its format and a codec config buffer first. */
+    private static final class FakeEncoder extends FakeCodec {
+
+        boolean formatPending = true;
+        boolean endOfStreamSignalled = false;
+
+        FakeEncoder() {
+            emit(4, 0, TranscodeGraph.FLAG_CODEC_CONFIG);
+        }
+
+        void render(long presentationTimeUs) {
+            emit(8, presentationTimeUs, TranscodeGraph.FLAG_KEY_FRAME);
+        }
+
+        @Override
+        public int dequeueOutputBuffer(TranscodeGraph.BufferInfo info, long timeoutUs) {
+            if (formatPending) {
+                formatPending = false;
+                return TranscodeGraph.INFO_OUTPUT_FORMAT_CHANGED;
+            }
+            return super.dequeueOutputBuffer(info, timeoutUs);
+        }
+
+        @Override
+        public void signalEndOfInputStream() {
+            endOfStreamSignalled = true;
+            emit(0, 0, TranscodeGraph.FLAG_END_OF_STREAM);
+        }
+    }
+
+    private static final class FakeMuxer implements TranscodeGraph.Muxer<String> {
+
+        final List<String> tracks = new ArrayList<>();
+        final List<String> written = new ArrayList<>();
+        private boolean started = false;
+
+        @Override
+        public int addTrack(String format) {
+            if (started) {
+                throw new IllegalStateException("Muxer already started");
+            }
+            tracks.add(format);
+            return tracks.size() - 1;
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        @Override
+        public void writeSampleData(int track, ByteBuffer data, TranscodeGraph.BufferInfo info) {
+            if (!started) {
+                throw new IllegalStateException("Muxer not started");
+            }
+            written.add(tracks.get(track).charAt(0) + String.valueOf(info.presentationTimeUs));
+        }
+    }
+}
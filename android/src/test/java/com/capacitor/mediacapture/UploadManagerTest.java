@@ -0,0 +1,270 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UploadManagerTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final BlockingQueue<JSObject> events = new LinkedBlockingQueue<>();
+    private ScheduledExecutorService executor;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        executor = Executors.newScheduledThreadPool(4);
+        directory = folder.newFolder("uploads");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void uploadsChunksConcurrently() throws Exception {
+        byte[] content = content(10 * CHUNK_SIZE + 100);
+        File file = write("clip.mp4", content);
+        byte[] received = new byte[content.length];
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Thread.sleep(100);
+                    long offset = rangeStart(request);
+                    byte[] body = request.getBody().readByteArray();
+                    synchronized (received) {
+                        System.arraycopy(body, 0, received, (int) offset, body.length);
+                    }
+                    active.decrementAndGet();
+                    return new MockResponse().setResponseCode(200);
+                }
+            }
+        );
+
+        String id = newManager().start(file, url(), null, CHUNK_SIZE, 3);
+        JSObject done = awaitState(UploadManager.STATE_COMPLETED);
+
+        assertEquals(id, done.getString("uploadId"));
+        assertEquals(content.length, done.getLong("bytesSent"));
+        assertArrayEquals(content, received);
+        assertEquals(11, server.getRequestCount());
+        assertTrue(maxActive.get() <= 3);
+        assertTrue(maxActive.get() >= 2);
+        assertFalse(new File(directory, id + ".json").exists());
+    }
+
+    @Test
+    public void doesNotPersistHeaders() throws Exception {
+        File file = write("clip.mp4", content(CHUNK_SIZE));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        JSONObject headers = new JSONObject();
+        headers.put("Authorization", "Bearer secret-token");
+
+        String id = newManager().start(file, url(), headers, CHUNK_SIZE, 1);
+        String state = new String(Files.readAllBytes(new File(directory, id + ".json").toPath()), StandardCharsets.UTF_8);
+        assertFalse(state.contains("secret-token"));
+        assertTrue(new JSONObject(state).getBoolean("headersRequired"));
+
+        RecordedRequest request = server.takeRequest(10, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("Bearer secret-token", request.getHeader("Authorization"));
+        assertEquals(id, request.getHeader("X-Upload-Id"));
+        awaitState(UploadManager.STATE_COMPLETED);
+    }
+
+    @Test
+    public void resumesWithMissingChunksOnly() throws Exception {
+        byte[] content = content(5 * CHUNK_SIZE);
+        File file = write("clip.mp4", content);
+        writeState("restored", file, false, 0, 1, 2);
+        List<Long> offsets = new ArrayList<>();
+        server.setDispatcher(
+            new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    synchronized (offsets) {
+                        offsets.add(rangeStart(request));
+                    }
+                    return new MockResponse().setResponseCode(200);
+                }
+            }
+        );
+
+        newManager().resumePending();
+        JSObject done = awaitState(UploadManager.STATE_COMPLETED);
+
+        assertEquals("restored", done.getString("uploadId"));
+        assertEquals(content.length, done.getLong("bytesSent"));
+        assertEquals(2, server.getRequestCount());
+        assertTrue(offsets.contains(3L * CHUNK_SIZE));
+        assertTrue(offsets.contains(4L * CHUNK_SIZE));
+    }
+
+    @Test
+    public void pausesRestoredUploadUntilHeadersAreSupplied() throws Exception {
+        File file = write("clip.mp4", content(2 * CHUNK_SIZE));
+        writeState("restored", file, true);
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        UploadManager manager = newManager();
+        manager.resumePending();
+        awaitState(UploadManager.STATE_PAUSED);
+        assertEquals(0, server.getRequestCount());
+
+        JSONObject fresh = new JSONObject();
+        fresh.put("Authorization", "Bearer fresh-token");
+        assertFalse(manager.resume("unknown", fresh));
+        assertTrue(manager.resume("restored", fresh));
+        awaitState(UploadManager.STATE_COMPLETED);
+        assertEquals("Bearer fresh-token", server.takeRequest().getHeader("Authorization"));
+        assertEquals("Bearer fresh-token", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void failsRightAwayOnClientError() throws Exception {
+        File file = write("clip.mp4", content(CHUNK_SIZE));
+        server.enqueue(new MockResponse().setResponseCode(403));
+
+        String id = newManager().start(file, url(), null, CHUNK_SIZE, 1);
+        JSObject failed = awaitState(UploadManager.STATE_FAILED);
+
+        assertTrue(failed.getString("error").contains("403"));
+        assertEquals(1, server.getRequestCount());
+        assertFalse(new File(directory, id + ".json").exists());
+    }
+
+    @Test
+    public void retriesRateLimitedChunk() throws Exception {
+        File file = write("clip.mp4", content(CHUNK_SIZE));
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        newManager().start(file, url(), null, CHUNK_SIZE, 1);
+        awaitState(UploadManager.STATE_COMPLETED);
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private UploadManager newManager() {
+        return new UploadManager(directory, executor, events::add);
+    }
+
+    private String url() {
+        return server.url("/upload").toString();
+    }
+
+    private JSObject awaitState(String state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            JSObject event = events.poll(100, TimeUnit.MILLISECONDS);
+            if (event != null && state.equals(event.getString("state"))) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + state + " event");
+    }
+
+    private void writeState(String id, File file, boolean headersRequired, int... completed) throws Exception {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("path", file.getAbsolutePath());
+        json.put("url", url());
+        json.put("headersRequired", headersRequired);
+        json.put("chunkSize", CHUNK_SIZE);
+        json.put("concurrency", 2);
+        json.put("size", file.length());
+        json.put("lastModified", file.lastModified());
+        JSONArray indexes = new JSONArray();
+        for (int index : completed) {
+            indexes.put(index);
+        }
+        json.put("completed", indexes);
+        try (FileOutputStream out = new FileOutputStream(new File(directory, id + ".json"))) {
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private static long rangeStart(RecordedRequest request) {
+        Matcher matcher = RANGE.matcher(request.getHeader("Content-Range"));
+        assertTrue(matcher.matches());
+        return Long.parseLong(matcher.group(1));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+   Licensed to the Apache Software Foundation (ASF) under one
+   or more contributor license agreements.  See the NOTICE file
+   distributed with this work for additional information
+   regarding copyright ownership.  The ASF licenses this file
+   to you under the Apache License, Version 2.0 (the
+   "License"); you may not use this file except in compliance
+   with the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing,
+   software distributed under the License is distributed on an
+   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+   KIND, either express or implied.  See the License for the
+   specific language governing permissions and limitations
+   under the License.
+*/
+package com.capacitor.mediacapture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.media.MediaFormat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class VideoCompressorTest {
+
+    @Test
+    public void scalesToFitTheLimits() {
+        assertSize(1280, 720, 1920, 1080, 0, 1280, 0);
+        assertSize(1280, 720, 1920, 1080, 0, 0, 720);
+        assertSize(960, 540, 1920, 1080, 0, 1280, 540);
+    }
+
+    @Test
+    public void neverScalesUp() {
+        assertSize(1920, 1080, 1920, 1080, 0, 4000, 4000);
+        assertSize(1920, 1080, 1920, 1080, 0, 0, 0);
+    }
+
+    @Test
+    public void appliesTheLimitsToTheDisplayedOrientation() {
+        // A portrait recording stored as landscape frames with a rotation
+        assertSize(1280, 720, 1920, 1080, 90, 720, 1280);
+        assertSize(1280, 720, 1920, 1080, 270, 720, 0);
+        assertSize(640, 360, 1920, 1080, 180, 640, 0);
+    }
+
+    @Test
+    public void keepsTheStoredOrientationOfRotatedSources() {
+        // The decoder renders the frames as stored, the orientation hint rotates them on playback
+        assertSize(1920, 1080, 1920, 1080, 90, 0, 0);
+        assertSize(1920, 1080, 1920, 1080, 270, 4000, 4000);
+    }
+
+    @Test
+    public void takesTheRotationOutOfTheDecoderFormat() {
+        MediaFormat format = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, 1920, 1080);
+        format.setInteger("rotation-degrees", 90);
+        assertEquals(90, VideoCompressor.takeRotation(format));
+        // A decoder configured with the format must not rotate the frames a second time
+        assertEquals(0, format.getInteger("rotation-degrees"));
+        assertEquals(1920, format.getInteger(MediaFormat.KEY_WIDTH));
+        assertEquals(1080, format.getInteger(MediaFormat.KEY_HEIGHT));
+    }
+
+    @Test
+    public void leavesUnrotatedFormatsAlone() {
+        MediaFormat format = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, 1280, 720);
+        assertEquals(0, VideoCompressor.takeRotation(format));
+        assertFalse(format.containsKey("rotation-degrees"));
+    }
+
+    @Test
+    public void roundsDownToEvenDimensions() {
+        // 641 / 1920 scales the height to 360.56
+        assertSize(640, 360, 1920, 1080, 0, 641, 0);
+        assertSize(1920, 1078, 1921, 1079, 0, 0, 0);
+        assertSize(2, 2, 1920, 1080, 0, 1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeLimits() {
+        new VideoCompressor.Options(-1, 0, VideoCompressor.DEFAULT_BITRATE);
+    }
+
+    private static void assertSize(int width, int height, int sourceWidth, int sourceHeight, int rotation, int maxWidth, int maxHeight) {
+        VideoCompressor.Options options = new VideoCompressor.Options(maxWidth, maxHeight, VideoCompressor.DEFAULT_BITRATE);
+        assertArrayEquals(new int[] { width, height }, VideoCompressor.getOutputSize(sourceWidth, sourceHeight, rotation, options));
+    }
+}
@@ -1,3 +1,5 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
 export interface MediaCapturePlugin {
   /**
    * Launch audio recorder application for recording audio clip(s).
@@ -30,8 +32,211 @@ export interface MediaCapturePlugin {
    * @returns Promise with media file format data
    */
   getFormatData(mediaFile: MediaFile): Promise<MediaFileData>;
+
+  /**
+   * Get format data for several media files at once.
+   * Files are probed in parallel and results are returned in input order.
+   * A file that cannot be probed gets an `error` instead of failing the batch.
+   * Android and Web only.
+   *
+   * @param options - The media files to get format data for
+   * @returns Promise with one result per input file
+   */
+  getFormatDataBatch(
+    options: FormatDataBatchOptions,
+  ): Promise<FormatDataBatchResult>;
+
+  /**
+   * Get the hit/miss counters of the format data cache.
+   * Android only.
+   *
+   * @returns Promise with the cache statistics
+   */
+  getFormatDataCacheStats(): Promise<FormatDataCacheStats>;
+
+  /**
+   * Get the size of the capture cache directory.
+   * Android only.
+   *
+   * @returns Promise with the cache statistics
+   */
+  getCacheStats(): Promise<CacheStats>;
+
+  /**
+   * Evict cached captures until the cache fits in the given size.
+   * Files captured in the current session are kept.
+   * Android only.
+   *
+   * @param options - Options for trimming the cache
+   * @returns Promise with the trim result
+   */
+  trimCache(options?: TrimCacheOptions): Promise<TrimCacheResult>;
+
+  /**
+   * Get a JPEG thumbnail of an image or video.
+   * Thumbnails are cached in memory and on disk.
+   * Android only.
+   *
+   * @param options - The file and thumbnail size
+   * @returns Promise with the thumbnail
+   */
+  getThumbnail(options: ThumbnailOptions): Promise<ThumbnailResult>;
+
+  /**
+   * Open a file for chunked reading, so large captures can be consumed
+   * without sending the whole file over the bridge at once.
+   * Android only.
+   *
+   * @param options - The file and chunk size
+   * @returns Promise with the stream handle
+   */
+  openReadStream(options: OpenReadStreamOptions): Promise<ReadStream>;
+
+  /**
+   * Read the next chunk of a stream. Rejects with code `STREAM_BUSY` when the
+   * stream already has too many pending reads.
+   * Android only.
+   *
+   * @param options - The stream and the range to read
+   * @returns Promise with the chunk
+   */
+  readChunk(options: ReadChunkOptions): Promise<ReadChunkResult>;
+
+  /**
+   * Close a stream opened with `openReadStream`.
+   * Android only.
+   *
+   * @param options - The stream to close
+   */
+  closeStream(options: CloseStreamOptions): Promise<void>;
+
+  /**
+   * Upload a file natively in chunks, with several chunks in flight.
+   * Progress is reported through the `uploadProgress` event. Uploads are
+   * persisted and resume after an app restart.
+   * Android only.
+   *
+   * @param options - The file, target URL and upload settings
+   * @returns Promise with the upload id
+   */
+  startUpload(options: StartUploadOptions): Promise<StartUploadResult>;
+
+  /**
+   * Continue an upload restored after an app restart. Headers are not stored
+   * on the device, so an upload started with `headers` comes back `paused`
+   * until they are supplied again.
+   * Android only.
+   *
+   * @param options - The upload to resume and its request headers
+   */
+  resumeUpload(options: ResumeUploadOptions): Promise<void>;
+
+  /**
+   * Cancel an upload started with `startUpload`.
+   * Android only.
+   *
+   * @param options - The upload to cancel
+   */
+  cancelUpload(options: CancelUploadOptions): Promise<void>;
+
+  /**
+   * List the uploads in progress, including those resumed after a restart.
+   * Android only.
+   *
+   * @returns Promise with the uploads in progress
+   */
+  getUploads(): Promise<{ uploads: UploadProgress[] }>;
+
+  /**
+   * Listen for upload progress, completion and failure.
+   * Android only.
+   */
+  addListener(
+    eventName: 'uploadProgress',
+    listenerFunc: (progress: UploadProgress) => void,
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * Re-encode videos to H.264 at a smaller size and bitrate. Files are
+   * compressed one after another with the same hardware codecs, and the
+   * originals are kept. Progress is reported through the
+   * `compressProgress` event.
+   * Android only.
+   *
+   * @param options - The files to compress and the target size and bitrate
+   * @returns Promise with one result per file
+   */
+  compressVideo(options: CompressVideoOptions): Promise<CompressVideoResult>;
+
+  /**
+   * Listen for the progress of `compressVideo` and of captures taken with
+   * the `compress` option.
+   * Android only.
+   */
+  addListener(
+    eventName: 'compressProgress',
+    listenerFunc: (progress: CompressProgress) => void,
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * Publish files to the shared photo, video and music collections.
+   * All entries are created first and only become visible once every copy
+   * has finished. Progress is reported through the `exportProgress` event.
+   * Android only.
+   *
+   * @param options - The files to export and the album to put them in
+   * @returns Promise with one result per file
+   */
+  exportToGallery(options: ExportToGalleryOptions): Promise<ExportToGalleryResult>;
+
+  /**
+   * Listen for the progress of `exportToGallery`, emitted once per file.
+   * Android only.
+   */
+  addListener(
+    eventName: 'exportProgress',
+    listenerFunc: (progress: ExportProgress) => void,
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * Get the latency histograms of the capture stages.
+   * Android only.
+   *
+   * @returns Promise with one histogram per stage
+   */
+  getMetrics(): Promise<CaptureMetrics>;
+
+  /**
+   * Clear the latency histograms of the capture stages.
+   * Android only.
+   */
+  resetMetrics(): Promise<void>;
+
+  /**
+   * Listen for individual capture stage timings. Only emitted when the
+   * `emitMetrics` plugin config is enabled.
+   * Android only.
+   */
+  addListener(
+    eventName: 'captureMetric',
+    listenerFunc: (sample: CaptureMetricSample) => void,
+  ): Promise<PluginListenerHandle>;
+
+  /**
+   * Listen for files captured by a session started with `stream: true`.
+   * Android only.
+   */
+  addListener(
+    eventName: 'mediaCaptured',
+    listenerFunc: (event: MediaCapturedEvent) => void,
+  ): Promise<PluginListenerHandle>;
 }
 
+/**
+ * Supported checksum algorithms
+ */
+export type ChecksumAlgorithm = 'sha256' | 'crc32';
+
 /**
  * Options for capturing audio
  */
@@ -46,6 +251,151 @@ export interface CaptureAudioOptions {
    * Maximum duration of an audio clip in seconds.
    */
   duration?: number;
+
+  /**
+   * Checksum to compute while the capture is stored, returned as
+   * `MediaFile.checksum`.
+   * Android only.
+   */
+  checksum?: ChecksumAlgorithm;
+
+  /**
+   * With a `limit` above 1, deliver every file as a `mediaCaptured` event as
+   * soon as it is stored, and resolve with only a summary (`count` and
+   * `sessionId`, empty `files`) once the session ends.
+   * Android only.
+   */
+  stream?: boolean;
+
+  /**
+   * Echoed as `correlationId` on every `mediaCaptured` event and on the
+   * streamed summary, so listeners can tell concurrent sessions apart
+   * before the call resolves with its `sessionId`.
+   * Android only.
+   */
+  correlationId?: string;
+
+  /**
+   * Re-encode each recording before it is returned. Recorder apps often
+   * produce WAV or AMR files; this turns them into compact AAC or Opus.
+   * The original recording is replaced by the transcoded file. If
+   * transcoding fails, the original is returned with `transcodeError` set.
+   * Android only.
+   */
+  transcode?: AudioTranscodeOptions;
+}
+
+/**
+ * Target format of a recording transcode
+ */
+export interface AudioTranscodeOptions {
+  /**
+   * `'aac'` (default) writes AAC-LC in an `.m4a` file, `'opus'` writes Opus
+   * in an `.ogg` file. Opus requires Android 10 or later.
+   */
+  format?: 'aac' | 'opus';
+
+  /**
+   * The target bitrate in bits per second. Default is 64000.
+   */
+  bitrate?: number;
+
+  /**
+   * The output sample rate in Hz. Defaults to the source rate for AAC and
+   * 48000 for Opus, which only supports 8000, 12000, 16000, 24000 and 48000.
+   */
+  sampleRate?: number;
+
+  /**
+   * The output channel count, 1 or 2. Defaults to the source layout.
+   */
+  channels?: number;
+}
+
+/**
+ * Statistics of a transcode
+ */
+export interface TranscodeInfo {
+  /**
+   * The size of the original file, in bytes
+   */
+  originalSize: number;
+
+  /**
+   * The original size divided by the transcoded size
+   */
+  compressionRatio: number;
+
+  /**
+   * The time the transcode took, in milliseconds
+   */
+  elapsedMs: number;
+}
+
+/**
+ * How captures are taken.
+ */
+export type CaptureMode = 'external' | 'embedded';
+
+/**
+ * EXIF tags that can be stripped from a captured image. `'gps'` removes the
+ * whole GPS directory and blanks the GPS properties of the XMP packet.
+ */
+export type ExifTag = 'gps' | 'make' | 'model' | 'software' | 'dateTime' | 'dateTimeOriginal' | 'dateTimeDigitized';
+
+/**
+ * EXIF fields of a captured image. Fields missing from the image are absent.
+ */
+export interface ExifData {
+  /**
+   * The EXIF orientation, 1 to 8
+   */
+  orientation?: number;
+
+  /**
+   * The camera manufacturer
+   */
+  make?: string;
+
+  /**
+   * The camera model
+   */
+  model?: string;
+
+  /**
+   * The software that wrote the image
+   */
+  software?: string;
+
+  /**
+   * When the file was last changed, as `YYYY:MM:DD HH:MM:SS`
+   */
+  dateTime?: string;
+
+  /**
+   * When the photo was taken, as `YYYY:MM:DD HH:MM:SS`
+   */
+  dateTimeOriginal?: string;
+
+  /**
+   * When the photo was digitized, as `YYYY:MM:DD HH:MM:SS`
+   */
+  dateTimeDigitized?: string;
+
+  /**
+   * The latitude in decimal degrees, negative in the southern hemisphere
+   */
+  latitude?: number;
+
+  /**
+   * The longitude in decimal degrees, negative west of Greenwich
+   */
+  longitude?: number;
+
+  /**
+   * The altitude in meters, negative below sea level
+   */
+  altitude?: number;
 }
 
 /**
@@ -59,9 +409,79 @@ export interface CaptureImageOptions {
 
   /**
    * The quality of saved image in range [0-100]. Default is 100.
+   * Below 100 the image is re-encoded at this quality after capture.
    * Android only.
    */
   quality?: number;
+
+  /**
+   * Maximum width of the saved image in pixels. Larger images are downscaled,
+   * keeping the aspect ratio and EXIF orientation.
+   * Android only.
+   */
+  maxWidth?: number;
+
+  /**
+   * Maximum height of the saved image in pixels. Larger images are downscaled,
+   * keeping the aspect ratio and EXIF orientation.
+   * Android only.
+   */
+  maxHeight?: number;
+
+  /**
+   * Checksum to compute while the capture is stored, returned as
+   * `MediaFile.checksum`.
+   * Android only.
+   */
+  checksum?: ChecksumAlgorithm;
+
+  /**
+   * With a `limit` above 1, deliver every file as a `mediaCaptured` event as
+   * soon as it is stored, and resolve with only a summary (`count` and
+   * `sessionId`, empty `files`) once the session ends.
+   * Android only.
+   */
+  stream?: boolean;
+
+  /**
+   * Echoed as `correlationId` on every `mediaCaptured` event and on the
+   * streamed summary, so listeners can tell concurrent sessions apart
+   * before the call resolves with its `sessionId`.
+   * Android only.
+   */
+  correlationId?: string;
+
+  /**
+   * Pre-generate a thumbnail of this size (in pixels) for every capture, so
+   * a later `getThumbnail` call with the same size is served from cache.
+   * Android only.
+   */
+  thumbnailSize?: number;
+
+  /**
+   * `'external'` (default) launches the device camera app for every item.
+   * `'embedded'` keeps one in-app camera session open and captures all
+   * items in a row without a camera UI, storing each item in the background
+   * while the next one is taken. Requires the app to depend on CameraX.
+   * Android only.
+   */
+  mode?: CaptureMode;
+
+  /**
+   * Return the EXIF fields of every image as `MediaFile.exif`. The fields
+   * are read as the image was captured, before any tag is stripped or the
+   * image is resized.
+   * Android only.
+   */
+  exif?: boolean;
+
+  /**
+   * EXIF tags to remove from every image before it is returned, e.g.
+   * `['gps']` before uploading. Only the EXIF segment (and the XMP packet
+   * for `'gps'`) is rewritten, the image data is left untouched.
+   * Android only.
+   */
+  stripExif?: ExifTag[];
 }
 
 /**
@@ -84,58 +504,155 @@ export interface CaptureVideoOptions {
    * iOS only.
    */
   quality?: number;
-}
 
-/**
- * Encapsulates properties of a media capture file
- */
-export interface MediaFile {
   /**
-   * The name of the file, without path information
+   * Checksum to compute while the capture is stored, returned as
+   * `MediaFile.checksum`.
+   * Android only.
    */
-  name: string;
+  checksum?: ChecksumAlgorithm;
 
   /**
-   * The full path of the file, including the name
+   * With a `limit` above 1, deliver every file as a `mediaCaptured` event as
+   * soon as it is stored, and resolve with only a summary (`count` and
+   * `sessionId`, empty `files`) once the session ends.
+   * Android only.
    */
-  fullPath: string;
+  stream?: boolean;
 
   /**
-   * The MIME type of the file
+   * Echoed as `correlationId` on every `mediaCaptured` event and on the
+   * streamed summary, so listeners can tell concurrent sessions apart
+   * before the call resolves with its `sessionId`.
+   * Android only.
    */
-  type: string;
+  correlationId?: string;
 
   /**
-   * The date and time that the file was last modified
+   * Pre-generate a thumbnail of this size (in pixels) for every capture, so
+   * a later `getThumbnail` call with the same size is served from cache.
+   * Android only.
    */
-  lastModifiedDate: number;
+  thumbnailSize?: number;
 
   /**
-   * The size of the file, in bytes
+   * `'external'` (default) launches the device camera app for every item.
+   * `'embedded'` keeps one in-app camera session open and captures all
+   * items in a row without a camera UI, storing each item in the background
+   * while the next one is taken.
+   * Embedded video capture requires `duration`; each clip is recorded for
+   * that long, and the app must depend on CameraX.
+   * Android only.
    */
-  size: number;
+  mode?: CaptureMode;
+
+  /**
+   * Re-encode each clip to a smaller size and bitrate before it is
+   * returned, replacing the original recording. A clip that fails to
+   * compress is returned uncompressed with `transcodeError` set. Not
+   * supported with `mode: 'embedded'`, which records at the requested
+   * `quality` directly.
+   * Android only.
+   */
+  compress?: VideoCompressOptions;
 }
 
 /**
- * Encapsulates format information about a media file
+ * Target size and bitrate of a video compression
  */
-export interface MediaFileData {
+export interface VideoCompressOptions {
   /**
-   * The actual format of the audio and video content
+   * The maximum width of the displayed video. The aspect ratio is kept.
    */
-  codecs?: string;
+  maxWidth?: number;
 
   /**
-   * The average bitrate of the content. The value is zero for images.
+   * The maximum height of the displayed video. The aspect ratio is kept.
    */
-  bitrate?: number;
+  maxHeight?: number;
 
   /**
-   * The height of the image or video in pixels. The value is zero for audio clips.
+   * The target video bitrate in bits per second. Default is 2000000.
+   * Audio is copied unchanged.
    */
-  height?: number;
+  bitrate?: number;
+}
 
-  /**
+/**
+ * Encapsulates properties of a media capture file
+ */
+export interface MediaFile {
+  /**
+   * The name of the file, without path information
+   */
+  name: string;
+
+  /**
+   * The full path of the file, including the name
+   */
+  fullPath: string;
+
+  /**
+   * The MIME type of the file
+   */
+  type: string;
+
+  /**
+   * The date and time that the file was last modified
+   */
+  lastModifiedDate: number;
+
+  /**
+   * The size of the file, in bytes
+   */
+  size: number;
+
+  /**
+   * The lower-case hex digest of the file, when a checksum was requested.
+   * Android only.
+   */
+  checksum?: string;
+
+  /**
+   * Transcode statistics, when the capture was transcoded.
+   * Android only.
+   */
+  transcode?: TranscodeInfo;
+
+  /**
+   * Why re-encoding the capture failed. The file is then the original,
+   * untranscoded capture.
+   * Android only.
+   */
+  transcodeError?: string;
+
+  /**
+   * The EXIF fields of an image, when requested with `exif`.
+   * Android only.
+   */
+  exif?: ExifData;
+}
+
+/**
+ * Encapsulates format information about a media file
+ */
+export interface MediaFileData {
+  /**
+   * The actual format of the audio and video content
+   */
+  codecs?: string;
+
+  /**
+   * The average bitrate of the content. The value is zero for images.
+   */
+  bitrate?: number;
+
+  /**
+   * The height of the image or video in pixels. The value is zero for audio clips.
+   */
+  height?: number;
+
+  /**
    * The width of the image or video in pixels. The value is zero for audio clips.
    */
   width?: number;
@@ -144,18 +661,753 @@ export interface MediaFileData {
    * The length of the video or sound clip in seconds. The value is zero for images.
    */
   duration?: number;
+
+  /**
+   * The clockwise rotation of the video in degrees (0, 90, 180 or 270).
+   * Android only.
+   */
+  rotation?: number;
 }
 
 /**
- * Result returned from capture methods
+ * Options for getting format data of several files
  */
-export interface MediaFileResult {
+export interface FormatDataBatchOptions {
   /**
-   * Array of captured media files
+   * The media files to get format data for
    */
   files: MediaFile[];
 }
 
+/**
+ * Format data of a single file in a batch
+ */
+export interface FormatDataBatchEntry {
+  /**
+   * The full path of the file, as passed in
+   */
+  fullPath: string;
+
+  /**
+   * The format data, when the file could be probed
+   */
+  data?: MediaFileData;
+
+  /**
+   * The error message, when the file could not be probed
+   */
+  error?: string;
+}
+
+/**
+ * Result returned from getFormatDataBatch
+ */
+export interface FormatDataBatchResult {
+  /**
+   * One entry per input file, in input order
+   */
+  results: FormatDataBatchEntry[];
+}
+
+/**
+ * Statistics of the format data cache
+ */
+export interface FormatDataCacheStats {
+  /**
+   * Number of lookups answered from the cache
+   */
+  hits: number;
+
+  /**
+   * Number of lookups that had to probe the file
+   */
+  misses: number;
+
+  /**
+   * Number of entries dropped to stay within the byte budget
+   */
+  evictions: number;
+
+  /**
+   * Number of cached entries
+   */
+  entries: number;
+
+  /**
+   * Approximate memory used by the cached entries, in bytes
+   */
+  bytes: number;
+
+  /**
+   * The configured memory budget, in bytes
+   */
+  maxBytes: number;
+}
+
+/**
+ * Statistics of the capture cache directory
+ */
+export interface CacheStats {
+  /**
+   * Total size of the cached captures, in bytes
+   */
+  bytes: number;
+
+  /**
+   * Number of cached captures
+   */
+  files: number;
+
+  /**
+   * Number of files protected from eviction in this session
+   */
+  protectedFiles: number;
+
+  /**
+   * The configured size quota, in bytes
+   */
+  quotaBytes: number;
+
+  /**
+   * The configured maximum age, in seconds
+   */
+  maxAge: number;
+}
+
+/**
+ * Options for trimming the capture cache
+ */
+export interface TrimCacheOptions {
+  /**
+   * The size to trim the cache to, in bytes. Defaults to the configured quota.
+   */
+  maxBytes?: number;
+}
+
+/**
+ * Result returned from trimCache
+ */
+export interface TrimCacheResult {
+  /**
+   * Number of files deleted
+   */
+  deletedFiles: number;
+
+  /**
+   * Number of bytes freed
+   */
+  freedBytes: number;
+
+  /**
+   * Size of the cache after trimming, in bytes
+   */
+  bytes: number;
+}
+
+/**
+ * Options for getting a thumbnail
+ */
+export interface ThumbnailOptions {
+  /**
+   * The full path of the image or video
+   */
+  fullPath: string;
+
+  /**
+   * The MIME type of the file. Detected from the path when omitted.
+   */
+  type?: string;
+
+  /**
+   * The maximum width and height of the thumbnail in pixels. Default is 256.
+   */
+  size?: number;
+}
+
+/**
+ * Result returned from getThumbnail
+ */
+export interface ThumbnailResult {
+  /**
+   * The full path of the cached thumbnail JPEG
+   */
+  fullPath: string;
+
+  /**
+   * The thumbnail as a `data:image/jpeg;base64,...` URL
+   */
+  dataUrl: string;
+
+  /**
+   * The width of the thumbnail in pixels
+   */
+  width: number;
+
+  /**
+   * The height of the thumbnail in pixels
+   */
+  height: number;
+}
+
+/**
+ * Options for opening a read stream
+ */
+export interface OpenReadStreamOptions {
+  /**
+   * The full path of the file to read
+   */
+  fullPath: string;
+
+  /**
+   * The maximum number of bytes per chunk. Default is 524288, at most 8 MB.
+   */
+  chunkSize?: number;
+}
+
+/**
+ * An open read stream
+ */
+export interface ReadStream {
+  /**
+   * The identifier to pass to `readChunk` and `closeStream`
+   */
+  streamId: string;
+
+  /**
+   * The size of the file, in bytes
+   */
+  size: number;
+
+  /**
+   * The chunk size of the stream, in bytes
+   */
+  chunkSize: number;
+}
+
+/**
+ * Options for reading a chunk
+ */
+export interface ReadChunkOptions {
+  /**
+   * The stream to read from
+   */
+  streamId: string;
+
+  /**
+   * The position to read from. Defaults to the end of the previous chunk.
+   */
+  offset?: number;
+
+  /**
+   * The number of bytes to read. Defaults to, and is capped at, the chunk size.
+   */
+  length?: number;
+}
+
+/**
+ * A chunk read from a stream
+ */
+export interface ReadChunkResult {
+  /**
+   * The chunk bytes, base64 encoded
+   */
+  data: string;
+
+  /**
+   * The position of the chunk in the file
+   */
+  offset: number;
+
+  /**
+   * The number of bytes read
+   */
+  bytesRead: number;
+
+  /**
+   * Whether the end of the file was reached
+   */
+  eof: boolean;
+
+  /**
+   * Number of reads still pending on the stream
+   */
+  pending: number;
+}
+
+/**
+ * Options for closing a stream
+ */
+export interface CloseStreamOptions {
+  /**
+   * The stream to close
+   */
+  streamId: string;
+}
+
+/**
+ * Options for starting an upload
+ */
+export interface StartUploadOptions {
+  /**
+   * The full path of the file to upload
+   */
+  fullPath: string;
+
+  /**
+   * The URL every chunk is sent to with a PUT request carrying
+   * `Content-Range` and `X-Upload-Id` headers
+   */
+  url: string;
+
+  /**
+   * Extra request headers, e.g. for authorization. They are kept in memory
+   * only: after an app restart the upload is `paused` until they are passed
+   * to `resumeUpload`.
+   */
+  headers?: { [key: string]: string };
+
+  /**
+   * The size of each chunk in bytes. Default is 1048576.
+   */
+  chunkSize?: number;
+
+  /**
+   * The number of chunks in flight at once. Default is 3.
+   */
+  concurrency?: number;
+}
+
+/**
+ * Result returned from startUpload
+ */
+export interface StartUploadResult {
+  /**
+   * The upload identifier, also sent as the `X-Upload-Id` header
+   */
+  uploadId: string;
+}
+
+/**
+ * Options for resuming a paused upload
+ */
+export interface ResumeUploadOptions {
+  /**
+   * The upload to resume
+   */
+  uploadId: string;
+
+  /**
+   * The request headers, as passed to `startUpload`
+   */
+  headers?: { [key: string]: string };
+}
+
+/**
+ * Options for cancelling an upload
+ */
+export interface CancelUploadOptions {
+  /**
+   * The upload to cancel
+   */
+  uploadId: string;
+}
+
+/**
+ * Progress of an upload
+ */
+export interface UploadProgress {
+  /**
+   * The upload identifier
+   */
+  uploadId: string;
+
+  /**
+   * The full path of the uploaded file
+   */
+  fullPath: string;
+
+  /**
+   * The number of bytes acknowledged by the server
+   */
+  bytesSent: number;
+
+  /**
+   * The size of the file, in bytes
+   */
+  totalBytes: number;
+
+  /**
+   * The state of the upload. `paused` uploads wait for `resumeUpload`.
+   */
+  state: 'uploading' | 'paused' | 'completed' | 'failed' | 'cancelled';
+
+  /**
+   * The error message, when the upload failed
+   */
+  error?: string;
+}
+
+/**
+ * Options for compressing videos
+ */
+export interface CompressVideoOptions extends VideoCompressOptions {
+  /**
+   * The videos to compress
+   */
+  files: MediaFile[];
+}
+
+/**
+ * Compression result of a single video
+ */
+export interface CompressVideoEntry {
+  /**
+   * The full path of the source video, as passed in
+   */
+  fullPath: string;
+
+  /**
+   * The compressed video, with `transcode` statistics, when compression succeeded
+   */
+  file?: MediaFile;
+
+  /**
+   * The error message, when the video could not be compressed
+   */
+  error?: string;
+}
+
+/**
+ * Result returned from compressVideo
+ */
+export interface CompressVideoResult {
+  /**
+   * The compression identifier, as sent with the `compressProgress` events
+   */
+  compressId: string;
+
+  /**
+   * One entry per input file, in input order
+   */
+  results: CompressVideoEntry[];
+}
+
+/**
+ * Progress of a video compression
+ */
+export interface CompressProgress {
+  /**
+   * The `compressVideo` call, or the capture session, the video belongs to
+   */
+  compressId: string;
+
+  /**
+   * The full path of the video being compressed
+   */
+  fullPath: string;
+
+  /**
+   * The index of the video in the batch or capture session
+   */
+  index: number;
+
+  /**
+   * The number of videos in the batch, or the capture `limit`
+   */
+  total: number;
+
+  /**
+   * The fraction of the video compressed, in range [0-1]
+   */
+  progress: number;
+}
+
+/**
+ * Options for exporting files to the gallery
+ */
+export interface ExportToGalleryOptions {
+  /**
+   * The media files to export. Images go to Pictures, videos to Movies and
+   * audio to Music.
+   */
+  files: MediaFile[];
+
+  /**
+   * The album (sub-directory) to create the files in
+   */
+  album?: string;
+
+  /**
+   * Echoed as `correlationId` on every `exportProgress` event and on the
+   * result, so listeners can tell concurrent exports apart before the call
+   * resolves with its `exportId`.
+   */
+  correlationId?: string;
+}
+
+/**
+ * Export result of a single file
+ */
+export interface ExportToGalleryEntry {
+  /**
+   * The full path of the file, as passed in
+   */
+  fullPath: string;
+
+  /**
+   * The content URI of the exported file, when the export succeeded
+   */
+  uri?: string;
+
+  /**
+   * The error message, when the file could not be exported
+   */
+  error?: string;
+}
+
+/**
+ * Result returned from exportToGallery
+ */
+export interface ExportToGalleryResult {
+  /**
+   * The export identifier, as sent with the `exportProgress` events
+   */
+  exportId: string;
+
+  /**
+   * The `correlationId` passed to `exportToGallery`, if any
+   */
+  correlationId?: string;
+
+  /**
+   * One entry per input file, in input order
+   */
+  results: ExportToGalleryEntry[];
+}
+
+/**
+ * Progress of an export, emitted after each file is copied
+ */
+export interface ExportProgress {
+  /**
+   * The export identifier, matching `ExportToGalleryResult.exportId`
+   */
+  exportId: string;
+
+  /**
+   * The `correlationId` passed to `exportToGallery`, if any
+   */
+  correlationId?: string;
+
+  /**
+   * The full path of the file that was just copied
+   */
+  fullPath: string;
+
+  /**
+   * The number of files copied so far
+   */
+  completed: number;
+
+  /**
+   * The number of files being copied
+   */
+  total: number;
+
+  /**
+   * The number of bytes copied so far
+   */
+  bytes: number;
+
+  /**
+   * The size of all files being copied, in bytes
+   */
+  totalBytes: number;
+}
+
+/**
+ * Latency histogram of a capture stage
+ */
+export interface StageHistogram {
+  /**
+   * Number of samples
+   */
+  count: number;
+
+  /**
+   * Sum of all samples, in milliseconds
+   */
+  totalMs: number;
+
+  /**
+   * Longest sample, in milliseconds
+   */
+  maxMs: number;
+
+  /**
+   * Mean sample, in milliseconds
+   */
+  meanMs: number;
+
+  /**
+   * Median, as the upper bound of its bucket, in milliseconds
+   */
+  p50Ms: number;
+
+  /**
+   * 90th percentile, as the upper bound of its bucket, in milliseconds
+   */
+  p90Ms: number;
+
+  /**
+   * 99th percentile, as the upper bound of its bucket, in milliseconds
+   */
+  p99Ms: number;
+
+  /**
+   * Sample counts per bucket. Bucket `i` holds samples below `2^i` microseconds.
+   */
+  buckets: number[];
+}
+
+/**
+ * Latency histograms of the capture stages
+ */
+export interface CaptureMetrics {
+  /**
+   * From the capture call to the permission callback
+   */
+  permission: StageHistogram;
+
+  /**
+   * Launching the external capture activity
+   */
+  intentLaunch: StageHistogram;
+
+  /**
+   * Time spent in the external capture activity
+   */
+  externalActivity: StageHistogram;
+
+  /**
+   * Synchronous handling of the activity result
+   */
+  activityCallback: StageHistogram;
+
+  /**
+   * Copying a recording into the cache
+   */
+  audioCopy: StageHistogram;
+
+  /**
+   * Transcoding a recording
+   */
+  audioTranscode: StageHistogram;
+
+  /**
+   * Compressing a video
+   */
+  videoCompress: StageHistogram;
+
+  /**
+   * Reading and stripping EXIF tags of an image
+   */
+  exif: StageHistogram;
+
+  /**
+   * Downscaling and recompressing an image
+   */
+  imageProcessing: StageHistogram;
+
+  /**
+   * Computing a requested checksum
+   */
+  checksum: StageHistogram;
+
+  /**
+   * Building the MediaFile result
+   */
+  createMediaFile: StageHistogram;
+
+  /**
+   * Resolving the MIME type of a capture
+   */
+  mimeLookup: StageHistogram;
+
+  /**
+   * From the capture call to the call resolving
+   */
+  total: StageHistogram;
+}
+
+/**
+ * A single capture stage timing
+ */
+export interface CaptureMetricSample {
+  /**
+   * The stage name, one of the keys of `CaptureMetrics`
+   */
+  stage: keyof CaptureMetrics;
+
+  /**
+   * The stage duration, in milliseconds
+   */
+  durationMs: number;
+}
+
+/**
+ * Result returned from capture methods
+ */
+export interface MediaFileResult {
+  /**
+   * Array of captured media files. Empty for streamed sessions.
+   */
+  files: MediaFile[];
+
+  /**
+   * Number of captured media files.
+   * Android only.
+   */
+  count?: number;
+
+  /**
+   * Identifies the `mediaCaptured` events of a streamed session.
+   * Android only.
+   */
+  sessionId?: string;
+
+  /**
+   * The `correlationId` passed to a streamed capture call.
+   * Android only.
+   */
+  correlationId?: string;
+}
+
+/**
+ * A file delivered by a streamed capture session
+ */
+export interface MediaCapturedEvent {
+  /**
+   * The session the file belongs to, matching `MediaFileResult.sessionId`
+   */
+  sessionId: string;
+
+  /**
+   * The `correlationId` passed to the capture call, if any
+   */
+  correlationId?: string;
+
+  /**
+   * Position of the file within the session, starting at 0
+   */
+  index: number;
+
+  /**
+   * The captured file
+   */
+  file: MediaFile;
+}
+
 /**
  * Error codes for media capture
  */
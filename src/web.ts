@@ -8,6 +8,29 @@ import type {
   MediaFile,
   MediaFileResult,
   MediaFileData,
+  FormatDataBatchOptions,
+  FormatDataBatchResult,
+  FormatDataCacheStats,
+  CacheStats,
+  TrimCacheOptions,
+  TrimCacheResult,
+  ThumbnailOptions,
+  ThumbnailResult,
+  OpenReadStreamOptions,
+  ReadStream,
+  ReadChunkOptions,
+  ReadChunkResult,
+  CloseStreamOptions,
+  StartUploadOptions,
+  StartUploadResult,
+  ResumeUploadOptions,
+  CancelUploadOptions,
+  UploadProgress,
+  CompressVideoOptions,
+  CompressVideoResult,
+  ExportToGalleryOptions,
+  ExportToGalleryResult,
+  CaptureMetrics,
 } from './definitions';
 import { CaptureError } from './definitions';
 
@@ -252,4 +275,98 @@ export class MediaCaptureWeb extends WebPlugin implements MediaCapturePlugin {
       }
     });
   }
+
+  async getFormatDataBatch(
+    options: FormatDataBatchOptions,
+  ): Promise<FormatDataBatchResult> {
+    console.log('getFormatDataBatch', options);
+
+    const results = await Promise.all(
+      options.files.map((file) =>
+        this.getFormatData(file).then(
+          (data) => ({ fullPath: file.fullPath, data }),
+          (error) => ({
+            fullPath: file.fullPath,
+            error: error?.message || 'Error getting format data',
+          }),
+        ),
+      ),
+    );
+
+    return { results };
+  }
+
+  async getFormatDataCacheStats(): Promise<FormatDataCacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getCacheStats(): Promise<CacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async trimCache(options?: TrimCacheOptions): Promise<TrimCacheResult> {
+    console.log('trimCache', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getThumbnail(options: ThumbnailOptions): Promise<ThumbnailResult> {
+    console.log('getThumbnail', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async openReadStream(options: OpenReadStreamOptions): Promise<ReadStream> {
+    console.log('openReadStream', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async readChunk(options: ReadChunkOptions): Promise<ReadChunkResult> {
+    console.log('readChunk', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async closeStream(options: CloseStreamOptions): Promise<void> {
+    console.log('closeStream', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async startUpload(options: StartUploadOptions): Promise<StartUploadResult> {
+    console.log('startUpload', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async resumeUpload(options: ResumeUploadOptions): Promise<void> {
+    console.log('resumeUpload', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancelUpload(options: CancelUploadOptions): Promise<void> {
+    console.log('cancelUpload', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getUploads(): Promise<{ uploads: UploadProgress[] }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async compressVideo(
+    options: CompressVideoOptions,
+  ): Promise<CompressVideoResult> {
+    console.log('compressVideo', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async exportToGallery(
+    options: ExportToGalleryOptions,
+  ): Promise<ExportToGalleryResult> {
+    console.log('exportToGallery', options);
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getMetrics(): Promise<CaptureMetrics> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async resetMetrics(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
 }